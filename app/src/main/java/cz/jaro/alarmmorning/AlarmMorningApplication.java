@@ -25,27 +25,69 @@ public class AlarmMorningApplication extends Application {
         super.onCreate();
         appContext = this;
 
-        // Add values to crash logs
+        // Add values to crash logs. The values are computed only when a crash happens: a process is often started only to handle a broadcast (e.g. the
+        // system alarm) and computing the values on every start would delay it.
+        Thread.setDefaultUncaughtExceptionHandler(new CrashContextHandler(Thread.getDefaultUncaughtExceptionHandler()));
+    }
+
+    /**
+     * Adds values to the crash log and then passes the exception to the original handler (that is installed by Crashlytics).
+     */
+    private static class CrashContextHandler implements Thread.UncaughtExceptionHandler {
 
-        // Database dump
-        GlobalManager globalManager = GlobalManager.getInstance();
-        FirebaseCrashlytics crashlytics = FirebaseCrashlytics.getInstance();
-        crashlytics.setCustomKey("database_dump", globalManager.dumpDB());
+        /**
+         * Maximal time (in milliseconds) to wait for the values. The values are computed in a separate thread, so that a crash that happened while the database
+         * was locked is still reported.
+         */
+        private static final long TIMEOUT = 2000;
 
-        // Setup data for Crashlytics
-        Analytics analytics = new Analytics();
-        analytics.setContext(appContext);
-        JSONObject configuration = analytics.createConfiguration();
+        private final Thread.UncaughtExceptionHandler defaultHandler;
+
+        CrashContextHandler(Thread.UncaughtExceptionHandler defaultHandler) {
+            this.defaultHandler = defaultHandler;
+        }
 
-        Iterator<?> keys = configuration.keys();
-        while (keys.hasNext()) {
-            String key = (String) keys.next();
+        @Override
+        public void uncaughtException(Thread thread, Throwable throwable) {
+            Thread contextThread = new Thread(AlarmMorningApplication::setCrashContext, "CrashContext");
+            contextThread.start();
             try {
-                Object value = configuration.get(key);
-                crashlytics.setCustomKey(key, value.toString());
-            } catch (JSONException e) {
-                MyLog.w("Cannot get value for key " + key);
+                contextThread.join(TIMEOUT);
+            } catch (InterruptedException e) {
+                MyLog.w("Interrupted while adding values to crash log", e);
+            }
+
+            if (defaultHandler != null) {
+                defaultHandler.uncaughtException(thread, throwable);
+            }
+        }
+    }
+
+    private static void setCrashContext() {
+        try {
+            FirebaseCrashlytics crashlytics = FirebaseCrashlytics.getInstance();
+
+            // Database dump
+            GlobalManager globalManager = GlobalManager.getInstance();
+            crashlytics.setCustomKey("database_dump", globalManager.dumpDB());
+
+            // Setup data for Crashlytics
+            Analytics analytics = new Analytics();
+            analytics.setContext(appContext);
+            JSONObject configuration = analytics.createConfiguration();
+
+            Iterator<?> keys = configuration.keys();
+            while (keys.hasNext()) {
+                String key = (String) keys.next();
+                try {
+                    Object value = configuration.get(key);
+                    crashlytics.setCustomKey(key, value.toString());
+                } catch (JSONException e) {
+                    MyLog.w("Cannot get value for key " + key);
+                }
             }
+        } catch (Throwable t) {
+            MyLog.w("Cannot add values to crash log", t);
         }
     }
 
@@ -0,0 +1,76 @@
+package cz.jaro.alarmmorning;
+
+import java.util.Calendar;
+import java.util.Set;
+
+import cz.jaro.alarmmorning.model.AppAlarm;
+import cz.jaro.alarmmorning.model.Day;
+import cz.jaro.alarmmorning.model.OneTimeAlarm;
+
+/**
+ * The data needed to decide the state of an alarm (see {@link GlobalManager#getState(AppAlarm, AlarmStateContext)}).
+ * <p>
+ * The data is loaded once (by {@link GlobalManager#newStateContext(Calendar)}) and then reused for the states of many alarms, e.g. when searching for the
+ * next alarm. The context must not be kept after the computation, as it doesn't reflect subsequent changes.
+ */
+public class AlarmStateContext {
+
+    private final Calendar now;
+
+    private final AppAlarm ringingAlarm;
+
+    private final int ringingAlarmState;
+
+    /**
+     * Keys of the dismissed alarms, see {@link #key(String, String)}.
+     */
+    private final Set<String> dismissedAlarms;
+
+    AlarmStateContext(Calendar now, AppAlarm ringingAlarm, int ringingAlarmState, Set<String> dismissedAlarms) {
+        this.now = now;
+        this.ringingAlarm = ringingAlarm;
+        this.ringingAlarmState = ringingAlarmState;
+        this.dismissedAlarms = dismissedAlarms;
+    }
+
+    static String key(String alarmType, String alarmId) {
+        return alarmType + "/" + alarmId;
+    }
+
+    /**
+     * @return The time when the context was created.
+     */
+    public Calendar getNow() {
+        return now;
+    }
+
+    /**
+     * @return The persisted state of the last alarm.
+     */
+    int getRingingAlarmState() {
+        return ringingAlarmState;
+    }
+
+    /**
+     * Checks whether the alarm is the last alarm (the one that runs, possibly is snoozed and was dismissed or cancelled).
+     *
+     * @param appAlarm An alarm
+     * @return true if the alarm is the last alarm
+     */
+    boolean isRingingAlarm(AppAlarm appAlarm) {
+        return ringingAlarm != null &&
+                (appAlarm instanceof Day && ringingAlarm instanceof Day && (ringingAlarm.getDate()).equals(appAlarm.getDate())) ||
+                (appAlarm instanceof OneTimeAlarm && ringingAlarm instanceof OneTimeAlarm && (((OneTimeAlarm) ringingAlarm).getId() == ((OneTimeAlarm) appAlarm).getId()));
+    }
+
+    /**
+     * Checks whether the alarm is in the set of dismissed alarms.
+     *
+     * @param appAlarm An alarm
+     * @return true if the alarm was dismissed
+     */
+    boolean isDismissedAlarm(AppAlarm appAlarm) {
+        return dismissedAlarms.contains(key(appAlarm.getClass().getSimpleName(), appAlarm.getPersistenceId()));
+    }
+
+}
@@ -82,6 +82,7 @@ public class Analytics {
 
     public static final String TARGET_TEST_PANIC = "Test panic";
     public static final String TARGET_WIZARD = "Wizard";
+    public static final String TARGET_RING_LATENCY = "Ring latency";
 
     public static final String TARGET_MENU_ACTION_CLOSE = "Menu action: Open";
     public static final String TARGET_MENU_ACTION_OPEN = "Menu action: Close";
@@ -101,6 +102,7 @@ public class Analytics {
     public static final String GENERAL_KEY__ACCELEROMETER_HISTORY = "Accelerometer history";
     public static final String GENERAL_KEY__PROXIMITY_HISTORY = "Proximity history";
     public static final String GENERAL_KEY__SENSORS_HISTORY = "Sensors history";
+    public static final String GENERAL_KEY__RING_LATENCY = "Ring latency";
 
     // TODO Commented because of error in getting location - see comment in setLocation()
 //    private Task<Location> locationTask;
@@ -168,6 +170,11 @@ public class Analytics {
         Snooze,
         Dismiss,
 
+        /**
+         * Use when the latency of ringing was measured. (Logged separately from {@link #Ring}, so that the rings are not counted twice.)
+         */
+        Ring_latency,
+
         Skipped_alarm,
 
         /**
@@ -515,6 +522,8 @@ public class Analytics {
 
             put(confPreferences, SettingsActivity.PREF_NEAR_FUTURE_TIME, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_NEAR_FUTURE_TIME, SettingsActivity.PREF_NEAR_FUTURE_TIME_DEFAULT));
 
+            put(confPreferences, SettingsActivity.PREF_HORIZON_DAYS, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_HORIZON_DAYS, SettingsActivity.PREF_HORIZON_DAYS_DEFAULT));
+
             put(confPreferences, SettingsActivity.PREF_NAP_ENABLED, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_NAP_ENABLED, SettingsActivity.PREF_NAP_ENABLED_DEFAULT));
 
             put(confPreferences, SettingsActivity.PREF_NAP_TIME, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_NAP_TIME, SettingsActivity.PREF_NAP_TIME_DEFAULT));
@@ -555,6 +564,8 @@ public class Analytics {
 
             put(confPreferences, SettingsActivity.PREF_CHECK_ALARM_TIME_GAP, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME_GAP, SettingsActivity.PREF_CHECK_ALARM_TIME_GAP_DEFAULT));
 
+            put(confPreferences, SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK_DEFAULT));
+
             put(confPreferences, SettingsActivity.PREF_NIGHTTIME_BELL, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_NIGHTTIME_BELL, SettingsActivity.PREF_NIGHTTIME_BELL_DEFAULT));
 
             put(confPreferences, SettingsActivity.PREF_NIGHTTIME_BELL_AT, () -> SharedPreferencesHelper.load(SettingsActivity.PREF_NIGHTTIME_BELL_AT, SettingsActivity.PREF_NIGHTTIME_BELL_AT_DEFAULT));
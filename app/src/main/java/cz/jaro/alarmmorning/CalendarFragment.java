@@ -45,13 +45,12 @@ import cz.jaro.alarmmorning.clock.Clock;
 import cz.jaro.alarmmorning.graphics.RecyclerViewWithContextMenu;
 import cz.jaro.alarmmorning.graphics.SimpleDividerItemDecoration;
 import cz.jaro.alarmmorning.graphics.TimePickerDialogWithDisable;
+import cz.jaro.alarmmorning.model.AlarmSnapshot;
 import cz.jaro.alarmmorning.model.AppAlarm;
 import cz.jaro.alarmmorning.model.Day;
 import cz.jaro.alarmmorning.model.Defaults;
 import cz.jaro.alarmmorning.model.OneTimeAlarm;
 
-import static cz.jaro.alarmmorning.GlobalManager.HORIZON_DAYS;
-import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.beginningOfToday;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.onTheSameDate;
 
@@ -123,20 +122,17 @@ public class CalendarFragment extends Fragment implements View.OnClickListener,
 
     private void loadItems() {
         GlobalManager globalManager = GlobalManager.getInstance();
-        Calendar now = clock().now();
 
         items = new ArrayList<>();
 
+        AlarmSnapshot snapshot = globalManager.getSnapshot();
+
         // Add days
-        for (int i = 0; i < HORIZON_DAYS; i++) {
-            Calendar date = addDaysClone(now, i);
-            Day day = globalManager.loadDay(date);
-            items.add(day);
-        }
+        List<Day> days = snapshot.getDays();
+        items.addAll(days);
 
         // Add one time alarms
-        Calendar beginningOfToday = beginningOfToday(now);
-        List<OneTimeAlarm> oneTimeAlarms = globalManager.loadOneTimeAlarms(beginningOfToday, null);
+        List<OneTimeAlarm> oneTimeAlarms = snapshot.getOneTimeAlarms();
         items.addAll(oneTimeAlarms);
 
         Collections.sort(items);
@@ -507,39 +503,49 @@ public class CalendarFragment extends Fragment implements View.OnClickListener,
         return -1;
     }
 
+    /*
+     * The alarms are changed on the alarm engine thread, while the UI keeps using the items (e.g. binds them to views). Therefore the engine gets copies of
+     * the items.
+     */
+
     private void modifyDayAlarm(Day day) {
         Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Calendar);
         GlobalManager globalManager = GlobalManager.getInstance();
 
-        globalManager.modifyDayAlarm(day, analytics);
+        Day dayCopy = day.clone();
+        globalManager.submit(() -> globalManager.modifyDayAlarm(dayCopy, analytics));
     }
 
     private void createOneTimeAlarm(OneTimeAlarm oneTimeAlarm) {
         Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Calendar);
         GlobalManager globalManager = GlobalManager.getInstance();
 
-        globalManager.createOneTimeAlarm(oneTimeAlarm, analytics);
+        OneTimeAlarm oneTimeAlarmCopy = oneTimeAlarm.clone();
+        globalManager.submit(() -> globalManager.createOneTimeAlarm(oneTimeAlarmCopy, analytics));
     }
 
     private void deleteOneTimeAlarm(OneTimeAlarm oneTimeAlarm) {
         Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Calendar);
         GlobalManager globalManager = GlobalManager.getInstance();
 
-        globalManager.deleteOneTimeAlarm(oneTimeAlarm, analytics);
+        OneTimeAlarm oneTimeAlarmCopy = oneTimeAlarm.clone();
+        globalManager.submit(() -> globalManager.deleteOneTimeAlarm(oneTimeAlarmCopy, analytics));
     }
 
     private void modifyOneTimeAlarmDateTime(OneTimeAlarm oneTimeAlarm) {
         Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Calendar);
         GlobalManager globalManager = GlobalManager.getInstance();
 
-        globalManager.modifyOneTimeAlarmDateTime(oneTimeAlarm, analytics);
+        OneTimeAlarm oneTimeAlarmCopy = oneTimeAlarm.clone();
+        globalManager.submit(() -> globalManager.modifyOneTimeAlarmDateTime(oneTimeAlarmCopy, analytics));
     }
 
     private void modifyOneTimeAlarmName(OneTimeAlarm oneTimeAlarm) {
         Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Calendar);
         GlobalManager globalManager = GlobalManager.getInstance();
 
-        globalManager.modifyOneTimeAlarmName(oneTimeAlarm, analytics);
+        OneTimeAlarm oneTimeAlarmCopy = oneTimeAlarm.clone();
+        globalManager.submit(() -> globalManager.modifyOneTimeAlarmName(oneTimeAlarmCopy, analytics));
     }
 
     private int findPosition(OneTimeAlarm oneTimeAlarm) {
@@ -92,8 +92,17 @@ public class DefaultsActivity extends AppCompatActivity implements View.OnCreate
     private void save(Defaults defaults) {
         Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Defaults);
 
+        // The defaults are saved on the background thread, while the user may continue changing the defaults
+        Defaults defaultsCopy = defaults.clone();
+
         GlobalManager globalManager = GlobalManager.getInstance();
-        globalManager.modifyDefault(defaults, analytics);
+        globalManager.submit(() -> globalManager.modifyDefault(defaultsCopy, analytics), () -> {
+            if (isDestroyed())
+                return;
+
+            int position = dayOfWeekToPosition(defaultsCopy.getDayOfWeek());
+            invalidateAndHighlight(position);
+        });
     }
 
     /*
@@ -150,9 +159,6 @@ public class DefaultsActivity extends AppCompatActivity implements View.OnCreate
 
         save(defaults);
 
-        int position = dayOfWeekToPosition(defaults.getDayOfWeek());
-        invalidateAndHighlight(position);
-
         showDialogChangeOtherDays();
     }
 
@@ -258,15 +264,28 @@ public class DefaultsActivity extends AppCompatActivity implements View.OnCreate
     private final View.OnClickListener snackbarClickListener = new View.OnClickListener() {
         @Override
         public void onClick(View v) {
+            List<Defaults> defaultsCopies = new ArrayList<>();
             for (int dayOfWeek : otherWeekdaysWithTheSameAlarmTime) {
                 Defaults defaults2 = defaults.clone();
                 defaults2.setDayOfWeek(dayOfWeek);
-
-                save(defaults2);
-
-                int position = dayOfWeekToPosition(dayOfWeek);
-                invalidateAndHighlight(position);
+                defaultsCopies.add(defaults2);
             }
+
+            // All the weekdays are saved in one batch (one transaction, one system alarm update and one widget update)
+            GlobalManager globalManager = GlobalManager.getInstance();
+            globalManager.submit(() -> globalManager.batch(() -> {
+                for (Defaults defaults2 : defaultsCopies) {
+                    Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Defaults);
+                    globalManager.modifyDefault(defaults2, analytics);
+                }
+            }), () -> {
+                if (isDestroyed())
+                    return;
+
+                for (Defaults defaults2 : defaultsCopies) {
+                    invalidateAndHighlight(dayOfWeekToPosition(defaults2.getDayOfWeek()));
+                }
+            });
         }
     };
 
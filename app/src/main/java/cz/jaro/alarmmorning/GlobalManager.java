@@ -4,7 +4,10 @@ import android.appwidget.AppWidgetManager;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
 import android.preference.PreferenceManager;
+import android.text.TextUtils;
 import android.widget.RemoteViews;
 
 import androidx.annotation.VisibleForTesting;
@@ -15,30 +18,41 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import cz.jaro.alarmmorning.calendar.CalendarUtils;
 import cz.jaro.alarmmorning.checkalarmtime.CheckAlarmTime;
 import cz.jaro.alarmmorning.clock.Clock;
+import cz.jaro.alarmmorning.clock.FixedClock;
 import cz.jaro.alarmmorning.clock.SystemClock;
 import cz.jaro.alarmmorning.holiday.HolidayHelper;
 import cz.jaro.alarmmorning.model.AlarmDataSource;
+import cz.jaro.alarmmorning.model.AlarmSnapshot;
+import cz.jaro.alarmmorning.model.AlarmTimeline;
 import cz.jaro.alarmmorning.model.AppAlarm;
 import cz.jaro.alarmmorning.model.AppAlarmFilter;
 import cz.jaro.alarmmorning.model.Day;
 import cz.jaro.alarmmorning.model.Defaults;
+import cz.jaro.alarmmorning.model.DismissedAlarm;
 import cz.jaro.alarmmorning.model.OneTimeAlarm;
+import cz.jaro.alarmmorning.model.StoredHolidays;
 
 import static cz.jaro.alarmmorning.SystemAlarm.ACTION_ALARM_TIME_OF_EARLY_DISMISSED_ALARM;
 import static cz.jaro.alarmmorning.SystemAlarm.ACTION_RING_IN_NEAR_FUTURE;
 import static cz.jaro.alarmmorning.SystemAlarm.ACTION_SET_SYSTEM_ALARM;
-import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDay;
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.addMilliSeconds;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.addMinutesClone;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.beginningOfToday;
@@ -81,8 +95,16 @@ import static cz.jaro.alarmmorning.calendar.CalendarUtils.roundDown;
  */
 public class GlobalManager {
 
+    /**
+     * Default number of days (from today) in which the Day alarms are considered, see {@link #getHorizonDays()}.
+     */
     public static final int HORIZON_DAYS = 30;
 
+    /**
+     * Number of one-time alarms loaded at once when looking for the next one-time alarm.
+     */
+    private static final int NEXT_ONE_TIME_ALARMS_PAGE_SIZE = 8;
+
     /*
      * Technical information
      * =====================
@@ -124,24 +146,259 @@ public class GlobalManager {
 
     private static GlobalManager instance;
 
+    /**
+     * The single thread that performs the changes submitted by {@link #submit(Runnable)}.
+     */
+    private static ExecutorService engine;
+
+    /**
+     * The threads that perform the independent tasks submitted to {@link #background()}.
+     */
+    private static ExecutorService background;
+
     private final AlarmDataSource dataSource;
 
+    private final AlarmTimeline timeline;
+
+    /**
+     * The alarms as seen by the UI. Replaced (not modified) after the alarms change.
+     */
+    private volatile AlarmSnapshot snapshot;
+
+    /**
+     * Guards {@link #alarmsVersion} and {@link #snapshotChanged}. Unlike the GlobalManager lock, it is never held during a change of the alarms, so the UI
+     * doesn't wait for the alarm engine.
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Incremented after each change of the alarms. A snapshot that was built without the GlobalManager lock is published only if the alarms didn't change
+     * meanwhile.
+     */
+    private int alarmsVersion;
+
+    /**
+     * True if the alarms changed since the last published snapshot.
+     */
+    private boolean snapshotChanged;
+
+    /**
+     * Nesting level of {@link #batch(Runnable)}. Zero if no batch is in progress.
+     */
+    private int batchDepth;
+    private boolean batchEnding;
+    private boolean batchAlarmSet;
+    private boolean batchUpdateWidget;
+    private final Map<String, Intent> batchCalendarActivityIntents = new LinkedHashMap<>();
+
+    /**
+     * The next action as registered by the {@link SystemAlarm}. Null if not known yet (e.g. after the start of the app).
+     */
+    private NextAction registeredNextAction;
+
+    /**
+     * Number of changes after which the next action was recomputed, and number of changes for which the recomputation was skipped as the change could not
+     * affect the next action.
+     */
+    private int recomputationsPerformed;
+    private int recomputationsSkipped;
+
+    /**
+     * The alarm for which the data needed for ringing were prepared, see {@link #warmUp(AppAlarm)}. Kept only in memory, as the prepared data are in memory too.
+     */
+    private volatile AppAlarm warmedUpAlarm;
+
     private GlobalManager() {
         Context context = AlarmMorningApplication.getAppContext();
         dataSource = new AlarmDataSource(context);
         dataSource.open();
+        timeline = new AlarmTimeline(dataSource);
     }
 
     public static synchronized GlobalManager getInstance() {
-        if (instance == null)
+        if (instance == null) {
             instance = new GlobalManager();
+            instance.afterDatabaseUpgrade();
+        }
         return instance;
     }
 
+    /**
+     * Perform the steps that follow the upgrade (or creation) of the database. Called after the instance is created, as the steps use the instance.
+     */
+    private void afterDatabaseUpgrade() {
+        if (dataSource.isHolidayTableCreated()) {
+            MyLog.i("Filling the holiday table created by the database upgrade");
+            updateHolidayTableInBackground();
+        }
+    }
+
     public Clock clock() {
         return new SystemClock();
     }
 
+    /*
+     * Alarm engine
+     * ============
+     *
+     * All the changes of alarms (database, SharedPreferences, system alarms) are done in methods that are synchronized on the GlobalManager. Therefore, the
+     * changes from several threads (e.g. receivers that fire at the same time) don't interleave.
+     *
+     * The UI submits the changes to the single background thread (the alarm engine), so that the UI is not blocked by the database and system calls. The UI
+     * reads the alarms from the snapshot published by the alarm engine.
+     */
+
+    /**
+     * Return the executor that performs the submitted changes.
+     *
+     * @return Executor
+     */
+    public Executor engine() {
+        synchronized (GlobalManager.class) {
+            if (engine == null) {
+                engine = Executors.newSingleThreadExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "AlarmEngine");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return engine;
+        }
+    }
+
+    /**
+     * Return the executor that performs the tasks that don't change alarms (e.g. copying files) concurrently.
+     *
+     * @return Executor
+     */
+    public Executor background() {
+        synchronized (GlobalManager.class) {
+            if (background == null) {
+                background = Executors.newCachedThreadPool(runnable -> {
+                    Thread thread = new Thread(runnable, "Background");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            return background;
+        }
+    }
+
+    /**
+     * Perform a change of alarms on the alarm engine thread. After the change, a new snapshot is published.
+     *
+     * @param change The change, typically calls one of the modifying methods of GlobalManager.
+     * @return Future that completes when the change is done
+     */
+    public Future<?> submit(Runnable change) {
+        FutureTask<Void> task = new FutureTask<>(() -> {
+            change.run();
+            publishSnapshotIfChanged();
+        }, null);
+        engine().execute(task);
+        return task;
+    }
+
+    /**
+     * Perform a change of alarms on the alarm engine thread and then call the callback on the main thread.
+     *
+     * @param change   The change, typically calls one of the modifying methods of GlobalManager.
+     * @param callback Called on the main thread after the change is done.
+     */
+    public void submit(Runnable change, Runnable callback) {
+        Handler handler = new Handler(Looper.getMainLooper());
+        engine().execute(() -> {
+            try {
+                change.run();
+                publishSnapshotIfChanged();
+            } finally {
+                handler.post(callback);
+            }
+        });
+    }
+
+    /**
+     * Return the snapshot of alarms from today for the next {@link #getHorizonDays()} days.
+     * <p>
+     * The snapshot is published by the thread that changes the alarms (the alarm engine for the changes done in the UI) before the change is announced, so the
+     * UI gets the last published snapshot without waiting for the GlobalManager lock. Only if there is no current snapshot (after the start of the app, after
+     * midnight or while a change is not announced yet), the snapshot is built on the calling thread.
+     *
+     * @return Snapshot
+     */
+    public AlarmSnapshot getSnapshot() {
+        AlarmSnapshot snapshot = this.snapshot;
+
+        int version;
+        synchronized (snapshotLock) {
+            if (snapshot != null && !snapshotChanged && snapshot.isFrom(clock().now())) {
+                return snapshot;
+            }
+            version = alarmsVersion;
+        }
+
+        snapshot = buildSnapshot();
+
+        synchronized (snapshotLock) {
+            if (version == alarmsVersion) {
+                this.snapshot = snapshot;
+                snapshotChanged = false;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Must be called after each change of the alarms. The new snapshot is published before the change is announced to the calendar activity, see {@link
+     * #publishSnapshotIfChanged()}.
+     */
+    private void onAlarmsChanged() {
+        synchronized (snapshotLock) {
+            alarmsVersion++;
+            snapshotChanged = true;
+        }
+    }
+
+    /**
+     * Publish a new snapshot if the alarms changed since the last published snapshot. Postponed until the end of batch.
+     */
+    private synchronized void publishSnapshotIfChanged() {
+        if (0 < batchDepth)
+            return;
+
+        boolean changed;
+        synchronized (snapshotLock) {
+            changed = snapshotChanged;
+        }
+        if (changed) {
+            publishSnapshot();
+        }
+    }
+
+    private synchronized void publishSnapshot() {
+        AlarmSnapshot snapshot = buildSnapshot();
+
+        // The snapshot is built under the GlobalManager lock, so it contains all the changes
+        synchronized (snapshotLock) {
+            this.snapshot = snapshot;
+            snapshotChanged = false;
+        }
+    }
+
+    private AlarmSnapshot buildSnapshot() {
+        MyLog.v("buildSnapshot()");
+
+        Calendar from = beginningOfToday(clock().now());
+        int horizonDays = getHorizonDays();
+
+        // Only the stored Days are loaded, the other Days are created by the snapshot on access
+        Defaults[] defaultsArray = dataSource.loadDefaults();
+        List<Day> storedDays = dataSource.loadStoredDays(from, addDaysClone(from, horizonDays));
+        List<OneTimeAlarm> oneTimeAlarms = loadOneTimeAlarms(from, null);
+
+        return new AlarmSnapshot(from, horizonDays, defaultsArray, storedDays, oneTimeAlarms);
+    }
+
     /**
      * Excludes today's alarm if it was dismissed (both before and after alarm time). Includes today's alarm that is ringing or snoozed.
      *
@@ -156,9 +413,11 @@ public class GlobalManager {
 
             appAlarm = getRingingAlarm();
         } else {
-            appAlarm = getNextAlarm(clock(), appAlarm2 -> {
+            Clock clock = clock();
+            AlarmStateContext context = newStateContext(clock.now());
+            appAlarm = getNextAlarm(clock, appAlarm2 -> {
                 MyLog.v("   checking filter condition for " + appAlarm2);
-                int state = getState(appAlarm2);
+                int state = getState(appAlarm2, context);
                 return state != STATE_DISMISSED_BEFORE_RINGING && state != STATE_DISMISSED;
             });
         }
@@ -174,9 +433,11 @@ public class GlobalManager {
     public AppAlarm getNextAlarm() {
         MyLog.v("getNextAlarm()");
 
-        return getNextAlarm(clock(), appAlarm2 -> {
+        Clock clock = clock();
+        AlarmStateContext context = newStateContext(clock.now());
+        return getNextAlarm(clock, appAlarm2 -> {
             MyLog.v("   checking filter condition for " + appAlarm2);
-            int state = getState(appAlarm2);
+            int state = getState(appAlarm2, context);
             return state != STATE_DISMISSED_BEFORE_RINGING && state != STATE_DISMISSED && state != STATE_RINGING && state != STATE_SNOOZED;
         });
     }
@@ -270,6 +531,12 @@ public class GlobalManager {
     public static final String PERSIST_ALARM_TYPE = "persist_alarm_type";
     public static final String PERSIST_ALARM_ID = "persist_alarm_id";
 
+    /*
+     * Contains the actions registered in advance by SystemAlarm (when {@link SettingsActivity#PREF_SYSTEM_ALARM_PIPELINE} is on).
+     */
+    private static final String PERSIST_ACTION_QUEUE = "persist_system_alarm_action_queue";
+    private static final String ACTION_QUEUE_SEPARATOR = ";";
+
     /*
      * Contains info about the last alarm. Last alarm is the one that runs, possibly is snoozed and was dismissed or cancelled.
      */
@@ -280,7 +547,7 @@ public class GlobalManager {
     private static final String PERSIST_LAST_SNOOZE_COUNT = "persist_last_snooze_count";
 
     /*
-     * Contains info about the dismissed alarms.
+     * Contained info about the dismissed alarms. Since the database version 4, the dismissed alarms are stored in the database. Used only for migration.
      */
     private static final String PERSIST_DISMISSED = "persist_dismissed_2"; // There vas a change in format in versionCode = 15, and we don't want to use one key with different formats. Therefore we use the suffix number.
 
@@ -314,6 +581,8 @@ public class GlobalManager {
     void setNextAction(NextAction nextAction) {
         MyLog.v("setNextAction(action=" + nextAction.action + ", time=" + nextAction.time.getTime() + ", appAlarm=" + nextAction.appAlarm + ")");
 
+        registeredNextAction = nextAction;
+
         SharedPreferencesHelper.save(PERSIST_ACTION, nextAction.action);
         SharedPreferencesHelper.save(PERSIST_TIME, nextAction.time.getTimeInMillis());
         if (nextAction.appAlarm == null) {
@@ -324,6 +593,25 @@ public class GlobalManager {
         }
     }
 
+    /**
+     * Returns the actions registered in advance. The first action is the next action.
+     *
+     * @return The actions, each encoded by {@link SystemAlarm}
+     */
+    List<String> getNextActionQueue() {
+        MyLog.v("getNextActionQueue()");
+
+        String queue = (String) SharedPreferencesHelper.load(PERSIST_ACTION_QUEUE, "");
+
+        return queue.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(queue.split(ACTION_QUEUE_SEPARATOR)));
+    }
+
+    void setNextActionQueue(List<String> queue) {
+        MyLog.v("setNextActionQueue(queue=" + queue + ")");
+
+        SharedPreferencesHelper.save(PERSIST_ACTION_QUEUE, TextUtils.join(ACTION_QUEUE_SEPARATOR, queue));
+    }
+
     // Persisted state
     // ===============
 
@@ -424,34 +712,47 @@ public class GlobalManager {
     }
 
     /**
-     * Returns the alarm times of dismissed alarms.
+     * Returns the dismissed alarms.
      *
-     * @return Alarm times of dismissed alarms.
+     * @return Dismissed alarms.
      */
     public Set<AppAlarm> getDismissedAlarms() {
         MyLog.v("getDismissedAlarm()");
 
-        try {
-            JSONArray jsonArray = JSONSharedPreferences.loadJSONArray(PERSIST_DISMISSED);
+        List<DismissedAlarm> dismissedAlarmRecords = dataSource.loadDismissedAlarms(null);
 
-            Set<AppAlarm> dismissedAlarms = new HashSet<>(jsonArray.length());
-            for (int i = 0; i < jsonArray.length(); i++) {
-                JSONObject obj = (JSONObject) jsonArray.get(i);
+        Set<AppAlarm> dismissedAlarms = new HashSet<>(dismissedAlarmRecords.size());
+        for (DismissedAlarm dismissedAlarmRecord : dismissedAlarmRecords) {
+            AppAlarm dimissedAlarm = load(dismissedAlarmRecord.getAlarmType(), dismissedAlarmRecord.getAlarmId());
 
-                String alarmType = obj.getString(STRING_PERSIST_TYPE);
-                String alarmId = obj.getString(STRING_PERSIST_ID);
+            if (dimissedAlarm != null) // This  is needed as an dissabled one-time alarm may already be removed
+                dismissedAlarms.add(dimissedAlarm);
+        }
 
-                AppAlarm dimissedAlarm = load(alarmType, alarmId);
+        return dismissedAlarms;
+    }
 
-                if (dimissedAlarm != null) // This  is needed as an dissabled one-time alarm may already be removed
-                    dismissedAlarms.add(dimissedAlarm);
-            }
+    /**
+     * Returns the nearest dismissed alarm with the alarm time after {@code now}.
+     * <p>
+     * The dismissed alarms are searched by the index on the alarm time, so only the nearest alarms are loaded.
+     *
+     * @param now Current time
+     * @return The nearest dismissed alarm in the future, or null if there is no such alarm.
+     */
+    public AppAlarm getNextDismissedAlarm(Calendar now) {
+        MyLog.v("getNextDismissedAlarm()");
 
-            return dismissedAlarms;
-        } catch (JSONException e) {
-            MyLog.w("Error getting dismissed alarms", e);
-            return new HashSet<>();
+        List<DismissedAlarm> dismissedAlarmRecords = dataSource.loadDismissedAlarms(now);
+
+        for (DismissedAlarm dismissedAlarmRecord : dismissedAlarmRecords) {
+            AppAlarm dimissedAlarm = load(dismissedAlarmRecord.getAlarmType(), dismissedAlarmRecord.getAlarmId());
+
+            if (dimissedAlarm != null) // This  is needed as an dissabled one-time alarm may already be removed
+                return dimissedAlarm;
         }
+
+        return null;
     }
 
     /**
@@ -463,81 +764,131 @@ public class GlobalManager {
      * @return True if an alarm was dismissed at the alarm time.
      */
     public boolean isDismissedAlarm(AppAlarm appAlarm) {
-        Set<AppAlarm> dismissedAlarms = getDismissedAlarms();
-        return dismissedAlarms.contains(appAlarm);
+        return dataSource.isDismissedAlarm(appAlarm.getClass().getSimpleName(), appAlarm.getPersistenceId());
     }
 
-    interface SetOperation {
-        void modify(Set<AppAlarm> dismissedAlarms);
+    private static DismissedAlarm toDismissedAlarm(AppAlarm appAlarm) {
+        DismissedAlarm dismissedAlarm = new DismissedAlarm();
+        dismissedAlarm.setAlarmType(appAlarm.getClass().getSimpleName());
+        dismissedAlarm.setAlarmId(appAlarm.getPersistenceId());
+        dismissedAlarm.setAlarmTime(appAlarm.getDateTime().getTimeInMillis());
+        return dismissedAlarm;
     }
 
-    private static <T extends Comparable<? super T>> List<T> asSortedList(Collection<T> c) {
-        List<T> list = new ArrayList<>(c);
-        java.util.Collections.sort(list);
-        return list;
+    /**
+     * Remove elements for yesterday and before.
+     */
+    private void pruneDismissedAlarms() {
+        Calendar beginningOfToday = beginningOfToday(clock().now());
+        int count = dataSource.deleteDismissedAlarmsOlderThan(beginningOfToday);
+        if (0 < count)
+            MyLog.d("Removed " + count + " old dismissed alarms from the set of dismissed alarms");
     }
 
-    private void modifyDismissedAlarm(SetOperation setOperation) {
-        MyLog.v("modifyDismissedAlarm()");
-
-        Set<AppAlarm> dismissedAlarms = getDismissedAlarms();
+    /**
+     * Update the alarm time of the dismissed Day. The alarm time of a Day changes when the Day is modified (while the Day stays on the same date).
+     *
+     * @param day The modified Day
+     */
+    private void updateDismissedAlarmTime(Day day) {
+        DismissedAlarm dismissedAlarmRecord = dataSource.loadDismissedAlarm(Day.class.getSimpleName(), day.getPersistenceId());
+        if (dismissedAlarmRecord != null) {
+            updateDismissedAlarmTime(dismissedAlarmRecord);
+        }
+    }
 
-        // Remove elements for yesterday and before
-        Calendar beginningOfToday = beginningOfToday(clock().now());
-        for (Iterator<AppAlarm> iterator = dismissedAlarms.iterator(); iterator.hasNext(); ) {
-            AppAlarm dismissedAlarm = iterator.next();
-            if (dismissedAlarm.getDateTime().before(beginningOfToday)) {
-                MyLog.d("Removing an old dismissed alarm from the set of dismissed alarms: " + dismissedAlarm);
-                iterator.remove();
+    /**
+     * Update the alarm times of the dismissed Days on a day of week. The alarm time of a Day changes when the Defaults are modified.
+     *
+     * @param dayOfWeek Day of week of the modified Defaults
+     */
+    private void updateDismissedAlarmTimes(int dayOfWeek) {
+        for (DismissedAlarm dismissedAlarmRecord : dataSource.loadDismissedAlarms(null)) {
+            if (dismissedAlarmRecord.getAlarmType().equals(Day.class.getSimpleName())
+                    && Analytics.dateStringToCalendar(dismissedAlarmRecord.getAlarmId()).get(Calendar.DAY_OF_WEEK) == dayOfWeek) {
+                updateDismissedAlarmTime(dismissedAlarmRecord);
             }
         }
+    }
 
-        // Modify set
-        setOperation.modify(dismissedAlarms);
+    /**
+     * Store the current alarm time of the dismissed alarm. The alarm time is stored in milliseconds since epoch, which depends on the time zone.
+     *
+     * @param dismissedAlarmRecord The record of the dismissed alarm
+     */
+    private void updateDismissedAlarmTime(DismissedAlarm dismissedAlarmRecord) {
+        AppAlarm dismissedAlarm = load(dismissedAlarmRecord.getAlarmType(), dismissedAlarmRecord.getAlarmId());
+        if (dismissedAlarm == null) // This  is needed as an dissabled one-time alarm may already be removed
+            return;
 
-        // MyLog
-        List<AppAlarm> sortedDismissedAlarms = asSortedList(dismissedAlarms);
-        MyLog.v("There are " + dismissedAlarms.size() + " dismissed alarms at");
-        for (AppAlarm appAlarm : sortedDismissedAlarms) {
-            MyLog.v("   " + appAlarm);
+        long alarmTime = dismissedAlarm.getDateTime().getTimeInMillis();
+        if (dismissedAlarmRecord.getAlarmTime() != alarmTime) {
+            dismissedAlarmRecord.setAlarmTime(alarmTime);
+            dataSource.saveDismissedAlarm(dismissedAlarmRecord);
         }
+    }
 
-        try {
-            // Create the object to persist
-            JSONArray jsonArray = new JSONArray();
-            for (AppAlarm dismissedAlarm : sortedDismissedAlarms) {
-                JSONObject obj = new JSONObject();
-                obj.put(STRING_PERSIST_TYPE, dismissedAlarm.getClass().getSimpleName());
-                obj.put(STRING_PERSIST_ID, dismissedAlarm.getPersistenceId());
-
-                jsonArray.put(jsonArray.length(), obj);
-            }
+    /**
+     * This event is triggered when the system time or time zone changes. The alarm times of all the dismissed alarms are updated, since they are stored in
+     * milliseconds since epoch.
+     */
+    public synchronized void onTimeOrTimeZoneChange() {
+        MyLog.d("onTimeOrTimeZoneChange()");
 
-            // Save
-            JSONSharedPreferences.saveJSONArray(PERSIST_DISMISSED, jsonArray);
-        } catch (JSONException e) {
-            MyLog.w("Cannot convert to JSON, therefore cannot store dismissed alarms", e);
+        for (DismissedAlarm dismissedAlarmRecord : dataSource.loadDismissedAlarms(null)) {
+            updateDismissedAlarmTime(dismissedAlarmRecord);
         }
     }
 
-    public void addDismissedAlarm(AppAlarm appAlarm) {
+    public synchronized void addDismissedAlarm(AppAlarm appAlarm) {
         MyLog.v("addDismissedAlarm(appAlarm=" + appAlarm + ")");
 
-        modifyDismissedAlarm(dismissedAlarms ->
-                dismissedAlarms.add(appAlarm)
-        );
+        pruneDismissedAlarms();
+
+        dataSource.saveDismissedAlarm(toDismissedAlarm(appAlarm));
     }
 
     private void removeDismissedAlarm(AppAlarm appAlarm) {
         MyLog.v("removeDismissedAlarm(appAlarm=" + appAlarm + ")");
 
-        modifyDismissedAlarm(dismissedAlarms -> {
-                    if (dismissedAlarms.contains(appAlarm)) {
-                        MyLog.d("Removing a dismissed alarm from the set of dismissed alarms: " + appAlarm);
-                        dismissedAlarms.remove(appAlarm);
-                    }
+        pruneDismissedAlarms();
+
+        int count = dataSource.deleteDismissedAlarm(appAlarm.getClass().getSimpleName(), appAlarm.getPersistenceId());
+        if (0 < count)
+            MyLog.d("Removing a dismissed alarm from the set of dismissed alarms: " + appAlarm);
+    }
+
+    /**
+     * Migrate the dismissed alarms from the preferences (where they were stored before the database version 4) to the database.
+     * <p>
+     * The preference is removed afterwards, so the migration is done only once.
+     */
+    public synchronized void migrateDismissedAlarms() {
+        MyLog.v("migrateDismissedAlarms()");
+
+        try {
+            JSONArray jsonArray = JSONSharedPreferences.loadJSONArray(PERSIST_DISMISSED);
+
+            for (int i = 0; i < jsonArray.length(); i++) {
+                JSONObject obj = (JSONObject) jsonArray.get(i);
+
+                String alarmType = obj.getString(STRING_PERSIST_TYPE);
+                String alarmId = obj.getString(STRING_PERSIST_ID);
+
+                AppAlarm dimissedAlarm = load(alarmType, alarmId);
+
+                if (dimissedAlarm != null) { // This  is needed as an dissabled one-time alarm may already be removed
+                    MyLog.d("Migrating a dismissed alarm " + dimissedAlarm);
+                    dataSource.saveDismissedAlarm(toDismissedAlarm(dimissedAlarm));
                 }
-        );
+            }
+        } catch (JSONException e) {
+            MyLog.w("Error migrating dismissed alarms", e);
+        }
+
+        JSONSharedPreferences.remove(PERSIST_DISMISSED);
+
+        pruneDismissedAlarms();
     }
 
     /**
@@ -559,19 +910,28 @@ public class GlobalManager {
      * @return The state of the alarm
      */
     public int getState(AppAlarm appAlarm) {
-        MyLog.v("getState(appAlarm=" + appAlarm + ")");
+        return getState(appAlarm, newStateContext(clock().now()));
+    }
 
-        // Condition 1
-        AppAlarm ringingAlarm = getRingingAlarm();
+    /**
+     * Decides the state of the alarm, see {@link #getState(AppAlarm)}.
+     * <p>
+     * Use this method when deciding the states of many alarms. The ringing alarm, the set of dismissed alarms and the current time are then loaded only once
+     * (in the {@code context}) instead of once per alarm.
+     *
+     * @param appAlarm An alarm
+     * @param context  The data for deciding the state
+     * @return The state of the alarm
+     */
+    public int getState(AppAlarm appAlarm, AlarmStateContext context) {
+        MyLog.v("getState(appAlarm=" + appAlarm + ")");
 
-        MyLog.v("   saved alarm time is " + ringingAlarm);
+        Calendar now = context.getNow();
 
-        if (ringingAlarm != null &&
-            (appAlarm instanceof Day && ringingAlarm instanceof Day && (ringingAlarm.getDate()).equals(appAlarm.getDate())) ||
-            (appAlarm instanceof OneTimeAlarm && ringingAlarm instanceof OneTimeAlarm && (((OneTimeAlarm) ringingAlarm).getId() == ((OneTimeAlarm) appAlarm).getId()))
-        ) {
-            if (isDismissedAlarm(appAlarm)) {
-                if (appAlarm.getDateTime().before(clock().now())) {
+        // Condition 1
+        if (context.isRingingAlarm(appAlarm)) {
+            if (context.isDismissedAlarm(appAlarm)) {
+                if (appAlarm.getDateTime().before(now)) {
                     MyLog.v("   is ringing & is among dismissed & is in past => DISMISSED");
                     return STATE_DISMISSED;
                 } else {
@@ -582,13 +942,12 @@ public class GlobalManager {
 
             MyLog.v("   using saved state alarm time");
 
-            return getState();
+            return context.getRingingAlarmState();
         }
 
         // Condition 2
-        Set<AppAlarm> dismissedAlarms = getDismissedAlarms();
-        if (dismissedAlarms.contains(appAlarm)) {
-            if (appAlarm.getDateTime().before(clock().now())) {
+        if (context.isDismissedAlarm(appAlarm)) {
+            if (appAlarm.getDateTime().before(now)) {
                 MyLog.v("   is among dismissed & is in past => DISMISSED");
                 return STATE_DISMISSED;
             } else {
@@ -598,7 +957,7 @@ public class GlobalManager {
         }
 
         // Condition 3
-        if (appAlarm.getDateTime().before(clock().now())) {
+        if (appAlarm.getDateTime().before(now)) {
             MyLog.v("   is in past => DISMISSED");
             return STATE_DISMISSED;
         } else {
@@ -608,6 +967,29 @@ public class GlobalManager {
         }
     }
 
+    /**
+     * Load the data for deciding the states of alarms: the ringing alarm (and its state) and the set of dismissed alarms.
+     *
+     * @param now Current time
+     * @return The context for {@link #getState(AppAlarm, AlarmStateContext)}
+     */
+    public AlarmStateContext newStateContext(Calendar now) {
+        MyLog.v("newStateContext()");
+
+        AppAlarm ringingAlarm = getRingingAlarm();
+        MyLog.v("   saved alarm time is " + ringingAlarm);
+
+        int ringingAlarmState = getState();
+
+        List<DismissedAlarm> dismissedAlarmRecords = dataSource.loadDismissedAlarms(null);
+        Set<String> dismissedAlarms = new HashSet<>(dismissedAlarmRecords.size());
+        for (DismissedAlarm dismissedAlarmRecord : dismissedAlarmRecords) {
+            dismissedAlarms.add(AlarmStateContext.key(dismissedAlarmRecord.getAlarmType(), dismissedAlarmRecord.getAlarmId()));
+        }
+
+        return new AlarmStateContext(now, ringingAlarm, ringingAlarmState, dismissedAlarms);
+    }
+
     /*
      * External events
      * ===============
@@ -620,7 +1002,7 @@ public class GlobalManager {
      * <p/>
      * This method should NOT be called when user sets the alarm time. Instead, call {@link #onAlarmSet()}.
      */
-    public void firstSetAlarm() {
+    public synchronized void firstSetAlarm() {
         MyLog.d("firstSetAlarm()");
 
         Context context = AlarmMorningApplication.getAppContext();
@@ -741,6 +1123,11 @@ public class GlobalManager {
 
         SystemAlarm systemAlarm = SystemAlarm.getInstance(context);
         systemAlarm.onDateChange();
+
+        // The snapshot for the new date is ready before the UI needs it
+        engine().execute(this::publishSnapshot);
+
+        updateHolidayTableInBackground();
     }
 
     /**
@@ -775,6 +1162,17 @@ public class GlobalManager {
         return dataSource.loadDay(date);
     }
 
+    /**
+     * Returns the Days for all the dates in a range.
+     *
+     * @param from the first date of the range (including)
+     * @param to   the last date of the range (excluding)
+     * @return List of Days, ordered by date.
+     */
+    public List<Day> loadDays(Calendar from, Calendar to) {
+        return dataSource.loadDays(from, to);
+    }
+
     public Defaults loadDefault(int dayOfWeek) {
         return dataSource.loadDefault(dayOfWeek);
     }
@@ -809,6 +1207,18 @@ public class GlobalManager {
         return dataSource.loadOneTimeAlarms(from, to);
     }
 
+    /**
+     * Returns the list of one-time alarms with the nearest alarm times, ordered by the alarm time.
+     *
+     * @param from   Only one-time alarms with alarm time on or after {@code from} are returned.
+     * @param offset Number of (nearest) one-time alarms to skip.
+     * @param count  Maximal number of returned one-time alarms.
+     * @return List of one-time alarms.
+     */
+    public List<OneTimeAlarm> loadNextOneTimeAlarms(Calendar from, int offset, int count) {
+        return dataSource.loadNextOneTimeAlarms(from, offset, count);
+    }
+
     private void save(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
         Context context = AlarmMorningApplication.getAppContext();
         analytics.setContext(context);
@@ -824,6 +1234,8 @@ public class GlobalManager {
         Calendar to = clock().now();
         CalendarUtils.addDays(to, -7);
         dataSource.deleteOneTimeAlarmsOlderThan(to);
+
+        onAlarmsChanged();
     }
 
     private void remove(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
@@ -836,6 +1248,8 @@ public class GlobalManager {
         MyLog.i("Delete one-time alarm at " + oneTimeAlarm.getDateTime().getTime());
 
         dataSource.deleteOneTimeAlarm(oneTimeAlarm);
+
+        onAlarmsChanged();
     }
 
     /*
@@ -850,18 +1264,55 @@ public class GlobalManager {
     private void onAlarmSet() {
         MyLog.d("onAlarmSet()");
 
+        onAlarmSet(true);
+    }
+
+    /**
+     * This event is triggered when the user changes a single alarm. Unlike {@link #onAlarmSet()}, the next action is recomputed only if the change may affect
+     * it.
+     *
+     * @param appAlarm     the changed alarm
+     * @param alarmTimeOld the alarm time before the change, or null if the alarm did not exist
+     * @param alarmTimeNew the alarm time after the change, or null if the alarm does not exist anymore
+     */
+    private void onAlarmSet(AppAlarm appAlarm, Calendar alarmTimeOld, Calendar alarmTimeNew) {
+        MyLog.d("onAlarmSet(appAlarm=" + appAlarm + ")");
+
+        onAlarmSet(mayAffectNextAction(appAlarm, alarmTimeOld, alarmTimeNew));
+    }
+
+    private void onAlarmSet(boolean recompute) {
+        onAlarmsChanged();
+
+        if (0 < batchDepth) {
+            MyLog.v("Postponing until the end of batch");
+            batchAlarmSet = true;
+            return;
+        }
+
         Context context = AlarmMorningApplication.getAppContext();
-        SystemAlarm systemAlarm = SystemAlarm.getInstance(context);
 
-        if (systemAlarm.nextActionShouldChange()) {
-            // cancel the current alarm
-            try {
-                onAlarmCancel(getNextAction().appAlarm);
-            } catch (IllegalArgumentException e) {
-                MyLog.d("There is no persisted alarm to cancel", e);
-            }
+        if (recompute) {
+            recomputationsPerformed++;
+
+            SystemAlarm systemAlarm = SystemAlarm.getInstance(context);
+            NextAction nextAction = systemAlarm.calcNextAction();
 
-            onAlarmSetNew(systemAlarm);
+            if (systemAlarm.nextActionShouldChange(nextAction)) {
+                // cancel the current alarm
+                try {
+                    onAlarmCancel(getNextAction().appAlarm);
+                } catch (IllegalArgumentException e) {
+                    MyLog.d("There is no persisted alarm to cancel", e);
+                }
+
+                onAlarmSetNew(systemAlarm, nextAction);
+            } else {
+                registeredNextAction = nextAction;
+            }
+        } else {
+            recomputationsSkipped++;
+            MyLog.v("The change cannot affect the next action");
         }
 
         CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(context);
@@ -870,20 +1321,19 @@ public class GlobalManager {
         updateCalendarActivity(context, AlarmMorningActivity.ACTION_ALARM_SET, null);
     }
 
-    private void onAlarmSetNew(SystemAlarm systemAlarm) {
+    private void onAlarmSetNew(SystemAlarm systemAlarm, NextAction nextAction) {
         MyLog.d("onAlarmSetNew()");
 
         Context context = AlarmMorningApplication.getAppContext();
 
         // register next system alarm
-        systemAlarm.onAlarmSet();
+        systemAlarm.onAlarmSet(nextAction);
 
         SystemAlarmClock systemAlarmClock = SystemAlarmClock.getInstance(context);
         systemAlarmClock.onAlarmSet();
 
         updateWidget(context);
 
-        NextAction nextAction = systemAlarm.calcNextAction();
         switch (nextAction.action) {
             case ACTION_SET_SYSTEM_ALARM:
             case ACTION_RING_IN_NEAR_FUTURE:
@@ -900,7 +1350,72 @@ public class GlobalManager {
         }
     }
 
-    public void onNearFuture(AppAlarm appAlarm) {
+    /**
+     * Decide cheaply (without loading the alarms) whether a change of a single alarm may affect the registered next action.
+     * <p>
+     * Only the next action that waits for a future alarm (either to ring or to show the notification in near future) is considered. A change of an alarm
+     * that is after such an alarm (both before and after the change) can never matter. Any other change (e.g. of an earlier alarm, that replaces the current
+     * next alarm) may matter.
+     *
+     * @param appAlarm     the changed alarm
+     * @param alarmTimeOld the alarm time before the change, or null if the alarm did not exist
+     * @param alarmTimeNew the alarm time after the change, or null if the alarm does not exist anymore
+     * @return false if the change can not affect the next action
+     */
+    private boolean mayAffectNextAction(AppAlarm appAlarm, Calendar alarmTimeOld, Calendar alarmTimeNew) {
+        NextAction nextAction = registeredNextAction;
+        if (nextAction == null || nextAction.appAlarm == null)
+            return true;
+
+        long alarmTime = nextAction.appAlarm.getDateTime().getTimeInMillis();
+        switch (nextAction.action) {
+            case SystemAlarm.ACTION_RING:
+                // Otherwise the alarm is snoozed
+                if (nextAction.time.getTimeInMillis() != alarmTime)
+                    return true;
+                // Otherwise the notification in near future would be next
+                if (useNearFutureTime() && clock().now().before(getNearFutureTime(nextAction.appAlarm.getDateTime())))
+                    return true;
+                break;
+            case ACTION_RING_IN_NEAR_FUTURE:
+                if (nextAction.time.getTimeInMillis() != getNearFutureTime(nextAction.appAlarm.getDateTime()).getTimeInMillis())
+                    return true;
+                break;
+            default:
+                return true;
+        }
+
+        if (!clock().now().before(nextAction.time))
+            return true;
+
+        if (isRingingOrSnoozed())
+            return true;
+
+        if (nextAction.appAlarm.equals(appAlarm))
+            return true;
+
+        return !isAfter(alarmTimeOld, alarmTime) || !isAfter(alarmTimeNew, alarmTime);
+    }
+
+    private static boolean isAfter(Calendar time, long alarmTime) {
+        return time == null || alarmTime < time.getTimeInMillis();
+    }
+
+    /**
+     * @return Number of changes after which the next action was recomputed.
+     */
+    public int getRecomputationsPerformed() {
+        return recomputationsPerformed;
+    }
+
+    /**
+     * @return Number of changes for which the recomputation of the next action was skipped.
+     */
+    public int getRecomputationsSkipped() {
+        return recomputationsSkipped;
+    }
+
+    public synchronized void onNearFuture(AppAlarm appAlarm) {
         MyLog.d("onNearFuture(appAlarm=" + appAlarm + ")");
 
         onNearFuture(appAlarm, true, false);
@@ -941,6 +1456,51 @@ public class GlobalManager {
 
         SystemNotification systemNotification = SystemNotification.getInstance(context);
         systemNotification.onNearFuture(appAlarm);
+
+        if ((boolean) SharedPreferencesHelper.load(SettingsActivity.PREF_RING_WARM_UP, SettingsActivity.PREF_RING_WARM_UP_DEFAULT)) {
+            engine().execute(() -> warmUp(appAlarm));
+        }
+    }
+
+    /**
+     * Prepare the data that are needed when the alarm rings, so that the work at {@link SystemAlarm#ACTION_RING} is minimal and the ringing starts quickly.
+     * <p>
+     * Opens the database, loads the Defaults and the dismissed alarms, fills the holiday cache (all by computing the action that follows the ringing) and
+     * resolves the ringtone.
+     *
+     * @param appAlarm The alarm that will ring
+     */
+    private void warmUp(AppAlarm appAlarm) {
+        MyLog.d("warmUp(appAlarm=" + appAlarm + ")");
+
+        long start = android.os.SystemClock.elapsedRealtime();
+
+        Context context = AlarmMorningApplication.getAppContext();
+
+        dataSource.loadDefaults();
+        isDismissedAlarm(appAlarm);
+
+        SystemAlarm systemAlarm = SystemAlarm.getInstance(context);
+        systemAlarm.calcNextAction(new FixedClock(appAlarm.getDateTime()));
+
+        RingActivity.warmUp(context);
+
+        warmedUpAlarm = appAlarm;
+
+        MyLog.i("Warm-up took " + (android.os.SystemClock.elapsedRealtime() - start) + " ms");
+    }
+
+    /**
+     * Check whether the data needed for ringing of the alarm were prepared in advance (in this process).
+     *
+     * @param appAlarm The alarm
+     * @return true if the warm-up was done for the alarm
+     */
+    public boolean isWarmedUp(AppAlarm appAlarm) {
+        AppAlarm warmedUpAlarm = this.warmedUpAlarm;
+        return warmedUpAlarm != null && appAlarm != null
+                && warmedUpAlarm.getClass() == appAlarm.getClass()
+                && warmedUpAlarm.getPersistenceId().equals(appAlarm.getPersistenceId());
     }
 
     /**
@@ -951,7 +1511,7 @@ public class GlobalManager {
      * @param appAlarm  The alarm to be dismissed
      * @param analytics Analytics
      */
-    public void onDismissAny(AppAlarm appAlarm, Analytics analytics) {
+    public synchronized void onDismissAny(AppAlarm appAlarm, Analytics analytics) {
         MyLog.d("onDismissAny(appAlarm=" + appAlarm + ")");
 
         Calendar now = clock().now();
@@ -963,7 +1523,7 @@ public class GlobalManager {
         }
     }
 
-    public void onDismissBeforeRinging(AppAlarm appAlarm, Analytics analytics) {
+    public synchronized void onDismissBeforeRinging(AppAlarm appAlarm, Analytics analytics) {
         MyLog.d("onDismissBeforeRinging(appAlarm=" + appAlarm + ")");
 
         setState(STATE_DISMISSED_BEFORE_RINGING, appAlarm);
@@ -999,7 +1559,7 @@ public class GlobalManager {
         }
     }
 
-    public void onAlarmTimeOfEarlyDismissedAlarm(AppAlarm appAlarm) {
+    public synchronized void onAlarmTimeOfEarlyDismissedAlarm(AppAlarm appAlarm) {
         MyLog.d("onAlarmTimeOfEarlyDismissedAlarm(appAlarm=" + appAlarm + ")");
 
         Context context = AlarmMorningApplication.getAppContext();
@@ -1018,7 +1578,9 @@ public class GlobalManager {
         }
     }
 
-    public void onRing(AppAlarm appAlarm) {
+    public synchronized void onRing(AppAlarm appAlarm) {
+        RingLatency.checkpoint(RingLatency.STAGE_GLOBAL_MANAGER);
+
         onRing(appAlarm, false);
     }
 
@@ -1085,7 +1647,7 @@ public class GlobalManager {
         updateCalendarActivity(context, AlarmMorningActivity.ACTION_RING, appAlarm);
     }
 
-    public void onDismiss(AppAlarm appAlarm, Analytics analytics) {
+    public synchronized void onDismiss(AppAlarm appAlarm, Analytics analytics) {
         MyLog.d("onDismiss()");
 
         Context context = AlarmMorningApplication.getAppContext();
@@ -1127,7 +1689,7 @@ public class GlobalManager {
      * @param analytics Analytics with filled {@link Analytics.Channel} and {@link Analytics.ChannelName} fields. Other fields will be filled by this method.
      * @return Time when the alarm will ring again
      */
-    public Calendar onSnooze(AppAlarm appAlarm, Analytics analytics) {
+    public synchronized Calendar onSnooze(AppAlarm appAlarm, Analytics analytics) {
         MyLog.d("onSnooze()");
 
         int snoozeTime = (int) SharedPreferencesHelper.load(SettingsActivity.PREF_SNOOZE_TIME, SettingsActivity.PREF_SNOOZE_TIME_DEFAULT);
@@ -1141,7 +1703,7 @@ public class GlobalManager {
      * @param analytics Analytics with filled {@link Analytics.Channel} and {@link Analytics.ChannelName} fields. Other fields will be filled by this method.
      * @return Time when the alarm will ring again
      */
-    public Calendar onSnooze(AppAlarm appAlarm, int minutes, Analytics analytics) {
+    public synchronized Calendar onSnooze(AppAlarm appAlarm, int minutes, Analytics analytics) {
         MyLog.d("onSnooze(appAlarm=" + appAlarm.getPersistenceId() + ", minutes=" + minutes + ")");
 
         Context context = AlarmMorningApplication.getAppContext();
@@ -1208,7 +1770,81 @@ public class GlobalManager {
      * ====================================
      */
 
-    public void modifyDayAlarm(Day day, Analytics analytics) {
+    /**
+     * Apply several changes of alarms at once.
+     * <p>
+     * The {@code edits} may call the methods that modify the alarms (e.g. {@link #modifyDayAlarm(Day, Analytics)}, {@link #modifyDefault(Defaults,
+     * Analytics)}, {@link #createOneTimeAlarm(OneTimeAlarm, Analytics)}, {@link #deleteOneTimeAlarm(OneTimeAlarm, Analytics)}). The changes are stored in one
+     * database transaction. The subsequent actions (setting the system alarm, updating the widget and notifying the calendar activity) are done only once, at
+     * the end of the batch.
+     * <p>
+     * The batches may be nested; the actions are done at the end of the outermost batch. If the {@code edits} throw an exception, the database changes are
+     * rolled back and the exception is rethrown.
+     *
+     * @param edits The changes of alarms.
+     */
+    public synchronized void batch(Runnable edits) {
+        MyLog.d("batch()");
+
+        if (batchDepth == 0) {
+            dataSource.beginTransaction();
+        }
+        batchDepth++;
+
+        boolean successful = false;
+        try {
+            edits.run();
+            successful = true;
+        } finally {
+            batchDepth--;
+            if (batchDepth == 0) {
+                dataSource.endTransaction(successful);
+                onAlarmsChanged();
+                onBatchEnd(successful);
+            }
+        }
+    }
+
+    /**
+     * @param successful false if the changes were rolled back. Then the calendar activity is not notified about them, but the system alarm and the widget are
+     *                   updated anyway (from the database), since the changes may have been partially applied before the rollback.
+     */
+    private void onBatchEnd(boolean successful) {
+        MyLog.d("onBatchEnd(successful=" + successful + ")");
+
+        Context context = AlarmMorningApplication.getAppContext();
+
+        List<Intent> intents = successful ? new ArrayList<>(batchCalendarActivityIntents.values()) : new ArrayList<>();
+        boolean alarmSet = batchAlarmSet || !successful;
+
+        batchCalendarActivityIntents.clear();
+        batchAlarmSet = false;
+        if (!successful) {
+            batchUpdateWidget = true;
+        }
+
+        publishSnapshotIfChanged();
+        for (Intent intent : intents) {
+            LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
+        }
+
+        // The widget is updated only once, even if the widget update is also requested while setting the system alarm
+        batchEnding = true;
+        try {
+            if (alarmSet) {
+                onAlarmSet();
+            }
+        } finally {
+            batchEnding = false;
+        }
+
+        if (batchUpdateWidget) {
+            batchUpdateWidget = false;
+            updateWidget(context);
+        }
+    }
+
+    public synchronized void modifyDayAlarm(Day day, Analytics analytics) {
         MyLog.d("modifyDayAlarm()");
 
         Context context = AlarmMorningApplication.getAppContext();
@@ -1249,14 +1885,20 @@ public class GlobalManager {
             }
         }
 
+        Calendar alarmTimeOld = dataSource.loadDay(day.getDate()).getDateTime();
+
         dataSource.saveDay(day);
 
+        updateDismissedAlarmTime(day);
+
+        onAlarmsChanged();
+
         updateCalendarActivity(context, AlarmMorningActivity.EVENT_MODIFY_DAY_ALARM, day);
 
-        onAlarmSet();
+        onAlarmSet(day, alarmTimeOld, day.getDateTime());
     }
 
-    public void modifyDefault(Defaults defaults, Analytics analytics) {
+    public synchronized void modifyDefault(Defaults defaults, Analytics analytics) {
         MyLog.d("modifyDefault()");
 
         Context context = AlarmMorningApplication.getAppContext();
@@ -1273,6 +1915,10 @@ public class GlobalManager {
 
         dataSource.saveDefault(defaults);
 
+        updateDismissedAlarmTimes(defaults.getDayOfWeek());
+
+        onAlarmsChanged();
+
         onAlarmSet();
     }
 
@@ -1282,7 +1928,7 @@ public class GlobalManager {
      * @param oneTimeAlarm One-time alarm to create.
      * @param analytics    Analytics
      */
-    public void createOneTimeAlarm(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
+    public synchronized void createOneTimeAlarm(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
         MyLog.d("createOneTimeAlarm()");
 
         save(oneTimeAlarm, analytics);
@@ -1290,7 +1936,7 @@ public class GlobalManager {
         Context context = AlarmMorningApplication.getAppContext();
         updateCalendarActivity(context, AlarmMorningActivity.EVENT_CREATE_ONE_TIME_ALARM, oneTimeAlarm);
 
-        onAlarmSet();
+        onAlarmSet(oneTimeAlarm, null, oneTimeAlarm.getDateTime());
     }
 
     /**
@@ -1299,7 +1945,7 @@ public class GlobalManager {
      * @param oneTimeAlarm One-time alarm to delete.
      * @param analytics    Analytics
      */
-    public void deleteOneTimeAlarm(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
+    public synchronized void deleteOneTimeAlarm(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
         MyLog.d("deleteOneTimeAlarm()");
 
         // If the modified alam is ringing or snooze, then dismiss it
@@ -1326,7 +1972,7 @@ public class GlobalManager {
 
         updateCalendarActivity(context, AlarmMorningActivity.EVENT_DELETE_ONE_TIME_ALARM, oneTimeAlarm);
 
-        onAlarmSet();
+        onAlarmSet(oneTimeAlarm, oneTimeAlarm.getDateTime(), null);
     }
 
     /**
@@ -1335,11 +1981,14 @@ public class GlobalManager {
      * @param oneTimeAlarm The modified one-time alarm.
      * @param analytics    Analytics
      */
-    public void modifyOneTimeAlarmDateTime(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
+    public synchronized void modifyOneTimeAlarmDateTime(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
         MyLog.d("modifyOneTimeAlarmDateTime()");
 
         setState(STATE_FUTURE, oneTimeAlarm);
 
+        OneTimeAlarm oneTimeAlarmOld = loadOneTimeAlarm(oneTimeAlarm.getId());
+        Calendar alarmTimeOld = oneTimeAlarmOld != null ? oneTimeAlarmOld.getDateTime() : null;
+
         save(oneTimeAlarm, analytics);
 
         removeDismissedAlarm(oneTimeAlarm);
@@ -1351,7 +2000,7 @@ public class GlobalManager {
 
         updateCalendarActivity(context, AlarmMorningActivity.EVENT_MODIFY_ONE_TIME_ALARM_DATETIME, oneTimeAlarm);
 
-        onAlarmSet();
+        onAlarmSet(oneTimeAlarm, alarmTimeOld, oneTimeAlarm.getDateTime());
 
         // If the the datetime changed to past then properly dismiss the alarm
         Calendar now = clock().now();
@@ -1367,7 +2016,7 @@ public class GlobalManager {
      * @param oneTimeAlarm The modified one-time alarm.
      * @param analytics    Analytics
      */
-    public void modifyOneTimeAlarmName(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
+    public synchronized void modifyOneTimeAlarmName(OneTimeAlarm oneTimeAlarm, Analytics analytics) {
         MyLog.d("modifyOneTimeAlarmName()");
 
         save(oneTimeAlarm, analytics);
@@ -1405,6 +2054,12 @@ public class GlobalManager {
     private void updateWidget(Context context) {
         MyLog.d("updateWidget()");
 
+        if (0 < batchDepth || batchEnding) {
+            MyLog.v("Postponing until the end of batch");
+            batchUpdateWidget = true;
+            return;
+        }
+
         AppWidgetManager appWidgetManager = AppWidgetManager.getInstance(context);
         RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_layout);
         WidgetProvider.updateContent(context, views);
@@ -1446,6 +2101,17 @@ public class GlobalManager {
             intent.putExtra(PERSIST_ALARM_TYPE, appAlarm.getClass().getSimpleName());
             intent.putExtra(PERSIST_ALARM_ID, appAlarm.getPersistenceId());
         }
+
+        if (0 < batchDepth) {
+            MyLog.v("Postponing until the end of batch");
+            // The same event about the same alarm is sent only once
+            String key = action + (appAlarm != null ? "|" + appAlarm.getClass().getSimpleName() + "|" + appAlarm.getPersistenceId() : "");
+            batchCalendarActivityIntents.remove(key);
+            batchCalendarActivityIntents.put(key, intent);
+            return;
+        }
+
+        publishSnapshotIfChanged();
         LocalBroadcastManager.getInstance(context).sendBroadcast(intent);
     }
 
@@ -1476,11 +2142,83 @@ public class GlobalManager {
      *
      * @param holidayPreference the path identifier of a region
      */
-    public void saveHoliday(String holidayPreference) {
+    public synchronized void saveHoliday(String holidayPreference) {
         MyLog.d("saveHoliday(holidayPreference=" + holidayPreference + ")");
 
         // Save
         SharedPreferencesHelper.save(SettingsActivity.PREF_HOLIDAY, holidayPreference);
+        HolidayHelper.getInstance().invalidate();
+        updateHolidayTableInBackground();
+
+        // Reset alarm
+        onAlarmSet();
+    }
+
+    /**
+     * Return the holidays in a year in a region, as stored in the holiday table.
+     *
+     * @param path path identifier of a region
+     * @param year year
+     * @return The stored holidays, or null if the holidays are not stored
+     */
+    public StoredHolidays loadStoredHolidays(String path, int year) {
+        return dataSource.loadStoredHolidays(path, year);
+    }
+
+    /**
+     * Replace the content of the holiday table.
+     *
+     * @param storedHolidaysList the holidays to be stored
+     */
+    public synchronized void saveHolidayTable(List<StoredHolidays> storedHolidaysList) {
+        MyLog.d("saveHolidayTable(storedHolidaysList=" + storedHolidaysList + ")");
+
+        dataSource.saveHolidayTable(storedHolidaysList);
+    }
+
+    /**
+     * Update the holiday table on the alarm engine thread.
+     * <p>
+     * The holiday table is used to determine holidays without loading jollyday (which parses its configuration, which is slow). The table is updated after
+     * the database upgrade, on the start, when the holiday preference changes and when the year rolls over, so that the ring and boot paths don't load
+     * jollyday.
+     * <p>
+     * Until the table is filled, the holidays are missing. Therefore, the next action is computed again after the table is filled.
+     */
+    public void updateHolidayTableInBackground() {
+        engine().execute(() -> {
+            if (HolidayHelper.getInstance().updateHolidayTable()) {
+                onHolidayTableUpdated();
+            }
+        });
+    }
+
+    private synchronized void onHolidayTableUpdated() {
+        MyLog.d("onHolidayTableUpdated()");
+
+        // The holidays changed, which may change the alarms. This also publishes a new snapshot.
+        onAlarmSet();
+    }
+
+    /**
+     * Return the number of days (from today) in which the Day alarms are considered. This applies to the next alarm and to the calendar.
+     *
+     * @return number of days
+     */
+    public int getHorizonDays() {
+        return (int) SharedPreferencesHelper.load(SettingsActivity.PREF_HORIZON_DAYS, SettingsActivity.PREF_HORIZON_DAYS_DEFAULT);
+    }
+
+    /**
+     * Save the number of days (from today) in which the Day alarms are considered.
+     *
+     * @param horizonDays number of days
+     */
+    public synchronized void saveHorizonDays(int horizonDays) {
+        MyLog.d("saveHorizonDays(horizonDays=" + horizonDays + ")");
+
+        // Save
+        SharedPreferencesHelper.save(SettingsActivity.PREF_HORIZON_DAYS, horizonDays);
 
         // Reset alarm
         onAlarmSet();
@@ -1490,7 +2228,7 @@ public class GlobalManager {
      * Return the alarm time.
      *
      * @param clock clock
-     * @return next alarm time. Return null if the is no alarm in the next {@link #HORIZON_DAYS} days.
+     * @return next alarm time. Return null if the is no alarm in the next {@link #getHorizonDays()} days.
      */
     public Calendar getNextAlarm(Clock clock) {
         AppAlarm appAlarm = getNextAlarm(clock, null);
@@ -1512,7 +2250,7 @@ public class GlobalManager {
      * alarm is returned. This is OK because the important thing is the date and time of next alarm (and not the count or type).
      *
      * @param clock Clock
-     * @return Nearest alarm. Return null if the is no Day alarm in the next {@link #HORIZON_DAYS} days or no one-time alarm in the (unlimited) future.
+     * @return Nearest alarm. Return null if the is no Day alarm in the next {@link #getHorizonDays()} days or no one-time alarm in the (unlimited) future.
      */
     public AppAlarm getNextAlarm(Clock clock, AppAlarmFilter filter) {
         Day day = getNextAlarmDay(clock, filter);
@@ -1539,63 +2277,62 @@ public class GlobalManager {
 
     /**
      * Return the nearest Day with alarm such that the Day matches the filter. The filter that such a Day is enabled and not in past is also checked.
+     * <p>
+     * The Days are read from the {@link AlarmTimeline}, which loads only the pages until the Day is found.
      *
      * @param clock clock
-     * @return nearest Day with alarm. Return null if the is no alarm in the next {@link #HORIZON_DAYS} days.
+     * @return nearest Day with alarm. Return null if the is no alarm in the next {@link #getHorizonDays()} days.
      */
     private Day getNextAlarmDay(Clock clock, AppAlarmFilter filter) {
-        Calendar date = clock.now();
-
-        for (int daysInAdvance = 0; daysInAdvance < HORIZON_DAYS; daysInAdvance++, addDay(date)) {
-            Day day = loadDay(date);
-
-            if (!day.isEnabled()) {
-                continue;
-            }
+        Calendar now = clock.now();
+        Calendar to = addDaysClone(now, getHorizonDays());
 
-            if (day.isPassed(clock)) {
-                continue;
-            }
-
-            if (filter != null && !filter.match(day)) {
-                continue;
-            }
+        Day day = timeline.getNextDay(now, to, appAlarm -> !appAlarm.isPassed(clock) && (filter == null || filter.match(appAlarm)));
 
+        if (day != null) {
             MyLog.v("   The day that satisfies filter is " + day);
-            return day;
+        } else {
+            MyLog.v("   No next alarm defined by Days and Defaults");
         }
-
-        MyLog.v("   No next alarm defined by Days and Defaults");
-        return null;
+        return day;
     }
 
+    /**
+     * Return the nearest one-time alarm such that the one-time alarm matches the filter. The filter that such a one-time alarm is not in past is also
+     * checked.
+     * <p>
+     * The one-time alarms are loaded in pages ordered by the alarm time. Typically, the first page contains the result and the remaining one-time alarms
+     * are not loaded at all.
+     *
+     * @param clock clock
+     * @return nearest one-time alarm. Return null if the is no one-time alarm in the future.
+     */
     private OneTimeAlarm getNextAlarmOneTimeAlarm(Clock clock, AppAlarmFilter filter) {
-        OneTimeAlarm nextOneTimeAlarm = null;
-
         Calendar now = clock.now();
-        List<OneTimeAlarm> oneTimeAlarms = loadOneTimeAlarms(now, null);
 
-        for (OneTimeAlarm oneTimeAlarm : oneTimeAlarms) {
-            if (oneTimeAlarm.isPassed(clock)) {
-                continue;
-            }
+        for (int offset = 0; ; offset += NEXT_ONE_TIME_ALARMS_PAGE_SIZE) {
+            List<OneTimeAlarm> oneTimeAlarms = loadNextOneTimeAlarms(now, offset, NEXT_ONE_TIME_ALARMS_PAGE_SIZE);
 
-            if (filter != null && !filter.match(oneTimeAlarm)) {
-                continue;
-            }
+            for (OneTimeAlarm oneTimeAlarm : oneTimeAlarms) {
+                if (oneTimeAlarm.isPassed(clock)) {
+                    continue;
+                }
 
-            if (nextOneTimeAlarm == null || oneTimeAlarm.getDateTime().before(nextOneTimeAlarm.getDateTime())) {
-                nextOneTimeAlarm = oneTimeAlarm;
+                if (filter != null && !filter.match(oneTimeAlarm)) {
+                    continue;
+                }
+
+                MyLog.v("   The one-time alarm that satisfies filter is " + oneTimeAlarm.getDateTime().getTime());
+                return oneTimeAlarm;
             }
-        }
 
-        if (nextOneTimeAlarm == null) {
-            MyLog.v("   No next alarm defined by one-time alarms");
-        } else {
-            MyLog.v("   The one-time alarm that satisfies filter is " + nextOneTimeAlarm.getDateTime().getTime());
+            if (oneTimeAlarms.size() < NEXT_ONE_TIME_ALARMS_PAGE_SIZE) {
+                break;
+            }
         }
 
-        return nextOneTimeAlarm;
+        MyLog.v("   No next alarm defined by one-time alarms");
+        return null;
     }
 
     /**
@@ -1615,9 +2352,7 @@ public class GlobalManager {
 
         // Add day alarms
 
-        for (Calendar date = (Calendar) from.clone(); date.before(to); addDay(date)) {
-            Day day = loadDay(date);
-
+        for (Day day : timeline.getDays(from, beginningOfTomorrow(to))) {
             if (!day.isEnabled()) {
                 continue;
             }
@@ -1673,7 +2408,7 @@ public class GlobalManager {
      * Reset all the data (database and settings (including the data stored by GlobalManager)) to the initial state.
      */
     @VisibleForTesting
-    public void reset() {
+    public synchronized void reset() {
         resetDatabase();
         resetSettings();
         onAlarmSet();
@@ -1684,6 +2419,8 @@ public class GlobalManager {
      */
     private void resetDatabase() {
         dataSource.resetDatabase();
+
+        onAlarmsChanged();
     }
 
     /**
@@ -1697,6 +2434,9 @@ public class GlobalManager {
 
         // Clear preferences
         SharedPreferencesHelper.clear();
+        registeredNextAction = null;
+        warmedUpAlarm = null;
+        HolidayHelper.getInstance().invalidate();
 
         // Set defaults
         PreferenceManager.setDefaultValues(context, R.xml.preferences, true);
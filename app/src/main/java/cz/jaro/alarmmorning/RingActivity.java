@@ -6,6 +6,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.pm.PackageManager;
+import android.content.res.AssetFileDescriptor;
 import android.content.res.Resources;
 import android.hardware.SensorEvent;
 import android.media.AudioManager;
@@ -184,6 +185,7 @@ public class RingActivity extends AppCompatActivity implements RingInterface {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         MyLog.d("onCreate()");
+        RingLatency.checkpoint(RingLatency.STAGE_ACTIVITY);
         super.onCreate(savedInstanceState);
 
         // skip keyguard
@@ -772,7 +774,7 @@ public class RingActivity extends AppCompatActivity implements RingInterface {
         return false;
     }
 
-    private Uri getRingtoneUri() {
+    private static Uri getRingtoneUri() {
         Uri ringtoneUri;
 
         if (SharedPreferencesHelper.contains(SettingsActivity.PREF_RINGTONE)) {
@@ -785,6 +787,23 @@ public class RingActivity extends AppCompatActivity implements RingInterface {
         return ringtoneUri;
     }
 
+    /**
+     * Resolve and open the ringtone, so that the media provider and the file are ready when the alarm rings. Called in the near future period (see {@link
+     * GlobalManager#isWarmedUp(AppAlarm)}).
+     *
+     * @param context Context
+     */
+    static void warmUp(Context context) {
+        Uri ringtoneUri = getRingtoneUri();
+        if (ringtoneUri != null && !ringtoneUri.toString().isEmpty()) {
+            try (AssetFileDescriptor assetFileDescriptor = context.getContentResolver().openAssetFileDescriptor(ringtoneUri, "r")) {
+                MyLog.v("Ringtone has " + (assetFileDescriptor != null ? assetFileDescriptor.getLength() : -1) + " bytes");
+            } catch (Exception e) {
+                MyLog.d("Unable to open ringtone", e);
+            }
+        }
+    }
+
     private boolean playSound() {
         Uri ringtoneUri = getRingtoneUri();
         return ringtoneUri != null && !ringtoneUri.toString().isEmpty();
@@ -821,11 +840,33 @@ public class RingActivity extends AppCompatActivity implements RingInterface {
             }
 
             if (soundMethod == 0) MyLog.e("Unable to play ringtone");
+
+            logRingLatency();
         } else {
             MyLog.w("Sound is intentionally not playing (disabled in settings)");
         }
     }
 
+    /**
+     * Record the time from receiving the system alarm till starting the sound.
+     */
+    private void logRingLatency() {
+        GlobalManager globalManager = GlobalManager.getInstance();
+        if (!RingLatency.checkpointSound(globalManager.isWarmedUp(appAlarm))) {
+            // The latency of this ringing was not measured (e.g. the activity was restarted), so the last ringing is not logged again
+            return;
+        }
+
+        String ringLatency = RingLatency.lastRingingToJSONString();
+        if (ringLatency != null) {
+            Analytics analytics = new Analytics(this, Analytics.Event.Ring_latency, Analytics.Channel.Activity, Analytics.ChannelName.Ring);
+            analytics.setAppAlarm(appAlarm);
+            analytics.set(Analytics.Param.General_key, Analytics.GENERAL_KEY__RING_LATENCY);
+            analytics.set(Analytics.Param.General_value, ringLatency);
+            analytics.save();
+        }
+    }
+
     private void startSoundAsRingtone(Uri ringtoneUri) {
         MyLog.d("startSoundAsRingtone()");
         ringtone = RingtoneManager.getRingtone(this, ringtoneUri);
@@ -0,0 +1,296 @@
+package cz.jaro.alarmmorning;
+
+import android.os.SystemClock;
+
+import androidx.annotation.VisibleForTesting;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time from receiving the system alarm till starting the sound (the ring latency).
+ * <p>
+ * The ringing goes through several stages (from {@link #STAGE_RECEIVER} to {@link #STAGE_SOUND}). At each stage a checkpoint is recorded: the time since the
+ * system alarm was received. When the sound starts, the checkpoints are added to histograms (one per stage) that are stored in the preferences. The histograms
+ * have fixed buckets, so their size doesn't grow with the number of alarms. The slow stages are visible in the percentiles.
+ */
+public class RingLatency {
+
+    /**
+     * {@link cz.jaro.alarmmorning.receivers.AlarmReceiver#onReceive(android.content.Context, android.content.Intent)}
+     */
+    public static final int STAGE_RECEIVER = 0;
+    /**
+     * {@link SystemAlarm#onSystemAlarm(android.content.Intent)}
+     */
+    public static final int STAGE_SYSTEM_ALARM = 1;
+    /**
+     * {@link GlobalManager#onRing(cz.jaro.alarmmorning.model.AppAlarm)}
+     */
+    public static final int STAGE_GLOBAL_MANAGER = 2;
+    /**
+     * {@link RingActivity#onCreate(android.os.Bundle)}
+     */
+    public static final int STAGE_ACTIVITY = 3;
+    /**
+     * The sound started.
+     */
+    public static final int STAGE_SOUND = 4;
+
+    static final String[] STAGE_NAMES = {"Receiver", "SystemAlarm", "GlobalManager", "RingActivity", "Sound"};
+
+    /**
+     * Name of the histogram of the {@link #STAGE_SOUND} stage split by whether the warm-up was done (see {@link GlobalManager#isWarmedUp(cz.jaro.alarmmorning.model.AppAlarm)}).
+     */
+    static final String HISTOGRAM_WITH_WARM_UP = "Sound with warm-up";
+    static final String HISTOGRAM_WITHOUT_WARM_UP = "Sound without warm-up";
+
+    /**
+     * Upper bounds (in milliseconds) of the buckets of histograms. There is one more bucket (without upper bound) for the longer times.
+     */
+    static final long[] BUCKETS = {10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000};
+
+    /**
+     * Maximal time (in milliseconds) between receiving the system alarm and a checkpoint. A later checkpoint is not related to the received system alarm.
+     */
+    static final long MAX_LATENCY = 60 * 1000;
+
+    private static final String PERSIST_HISTOGRAM = "persist_ring_latency_histogram";
+
+    /**
+     * The time (as returned by {@link SystemClock#elapsedRealtime()}) when the system alarm was received. Zero if there is no ringing in progress.
+     */
+    private static long receiveTime;
+
+    /**
+     * The checkpoints of the ringing in progress, indexed by stage. Minus one if the stage was not reached.
+     */
+    private static final long[] checkpoints = new long[STAGE_NAMES.length];
+
+    /**
+     * The checkpoints of the last ringing whose sound started. Null if there is no such ringing.
+     */
+    private static long[] lastCheckpoints;
+
+    /**
+     * Record a checkpoint of a stage.
+     *
+     * @param stage Stage, one of the STAGE_* constants except {@link #STAGE_SOUND} (use {@link #checkpointSound(boolean)} instead)
+     */
+    public static void checkpoint(int stage) {
+        checkpoint(stage, SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * Record the checkpoint of the {@link #STAGE_SOUND} stage and add the checkpoints of the ringing to the histograms.
+     *
+     * @param warmedUp true if the warm-up was done for the ringing alarm
+     * @return true if the checkpoints were recorded, false if no system alarm was received recently (e.g. the activity was restarted)
+     */
+    public static boolean checkpointSound(boolean warmedUp) {
+        return checkpointSound(warmedUp, SystemClock.elapsedRealtime());
+    }
+
+    @VisibleForTesting
+    static synchronized void checkpoint(int stage, long time) {
+        if (stage == STAGE_RECEIVER) {
+            receiveTime = time;
+            Arrays.fill(checkpoints, -1);
+            checkpoints[STAGE_RECEIVER] = 0;
+        } else if (isInProgress(time)) {
+            checkpoints[stage] = time - receiveTime;
+        }
+    }
+
+    @VisibleForTesting
+    static synchronized boolean checkpointSound(boolean warmedUp, long time) {
+        if (!isInProgress(time)) {
+            MyLog.v("No system alarm was received recently. Not measuring the ring latency.");
+            return false;
+        }
+
+        checkpoints[STAGE_SOUND] = time - receiveTime;
+        receiveTime = 0;
+
+        lastCheckpoints = checkpoints.clone();
+        MyLog.i("Ring latency " + checkpointsToString(lastCheckpoints) + " (" + (warmedUp ? "with" : "without") + " warm-up)");
+
+        try {
+            JSONObject histograms = JSONSharedPreferences.loadJSONObject(PERSIST_HISTOGRAM);
+            for (int stage = STAGE_SYSTEM_ALARM; stage < STAGE_NAMES.length; stage++) {
+                if (0 <= lastCheckpoints[stage]) {
+                    addToHistogram(histograms, STAGE_NAMES[stage], lastCheckpoints[stage]);
+                }
+            }
+            addToHistogram(histograms, warmedUp ? HISTOGRAM_WITH_WARM_UP : HISTOGRAM_WITHOUT_WARM_UP, lastCheckpoints[STAGE_SOUND]);
+            JSONSharedPreferences.saveJSONObject(PERSIST_HISTOGRAM, histograms);
+        } catch (JSONException e) {
+            MyLog.w("Cannot update the ring latency histogram", e);
+        }
+        return true;
+    }
+
+    private static boolean isInProgress(long time) {
+        return receiveTime != 0 && time - receiveTime <= MAX_LATENCY;
+    }
+
+    private static void addToHistogram(JSONObject histograms, String name, long latency) throws JSONException {
+        JSONArray histogram = histograms.optJSONArray(name);
+        if (histogram == null) {
+            histogram = new JSONArray();
+            for (int i = 0; i <= BUCKETS.length; i++) {
+                histogram.put(0);
+            }
+            histograms.put(name, histogram);
+        }
+
+        int bucket = bucket(latency);
+        histogram.put(bucket, histogram.getInt(bucket) + 1);
+    }
+
+    private static int bucket(long latency) {
+        int bucket = 0;
+        while (bucket < BUCKETS.length && BUCKETS[bucket] < latency) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    /**
+     * Return the percentile of a histogram.
+     *
+     * @param counts     Counts in the buckets of the histogram
+     * @param percentile Percentile, between 0 and 100
+     * @return The upper bound (in milliseconds) of the bucket that contains the percentile, or {@link Long#MAX_VALUE} if it's in the last bucket. Return -1
+     * if the histogram is empty.
+     */
+    static long percentile(int[] counts, double percentile) {
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        if (total == 0) {
+            return -1;
+        }
+
+        double threshold = total * percentile / 100;
+        int cumulative = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            cumulative += counts[bucket];
+            if (threshold <= cumulative) {
+                return bucket < BUCKETS.length ? BUCKETS[bucket] : Long.MAX_VALUE;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static String percentileToString(long value) {
+        return value == Long.MAX_VALUE ? ">" + BUCKETS[BUCKETS.length - 1] : "≤" + value;
+    }
+
+    private static String checkpointsToString(long[] checkpoints) {
+        StringBuilder str = new StringBuilder();
+        for (int stage = STAGE_SYSTEM_ALARM; stage < STAGE_NAMES.length; stage++) {
+            if (0 <= checkpoints[stage]) {
+                if (0 < str.length()) str.append(", ");
+                str.append(STAGE_NAMES[stage]).append(" ").append(checkpoints[stage]).append(" ms");
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Return the histograms.
+     *
+     * @return JSON object that maps the name of a stage to the array of counts in the buckets
+     */
+    static JSONObject loadHistograms() {
+        try {
+            return JSONSharedPreferences.loadJSONObject(PERSIST_HISTOGRAM);
+        } catch (JSONException e) {
+            MyLog.w("Cannot load the ring latency histogram", e);
+            return new JSONObject();
+        }
+    }
+
+    private static int[] toCounts(JSONArray histogram) {
+        int[] counts = new int[histogram.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = histogram.optInt(i);
+        }
+        return counts;
+    }
+
+    private static List<String> histogramNames() {
+        List<String> names = new ArrayList<>(Arrays.asList(STAGE_NAMES).subList(STAGE_SYSTEM_ALARM, STAGE_NAMES.length));
+        names.add(HISTOGRAM_WITH_WARM_UP);
+        names.add(HISTOGRAM_WITHOUT_WARM_UP);
+        return names;
+    }
+
+    /**
+     * Describe the percentiles of all the histograms. Used in the diagnostics.
+     *
+     * @return Text with one line per histogram
+     */
+    public static String describe() {
+        JSONObject histograms = loadHistograms();
+
+        StringBuilder str = new StringBuilder();
+        for (String name : histogramNames()) {
+            JSONArray histogram = histograms.optJSONArray(name);
+            if (histogram != null) {
+                int[] counts = toCounts(histogram);
+                int total = 0;
+                for (int count : counts) {
+                    total += count;
+                }
+
+                if (0 < str.length()) str.append("\n");
+                str.append(name).append(": ")
+                        .append("p50 ").append(percentileToString(percentile(counts, 50))).append(" ms, ")
+                        .append("p90 ").append(percentileToString(percentile(counts, 90))).append(" ms, ")
+                        .append("p99 ").append(percentileToString(percentile(counts, 99))).append(" ms ")
+                        .append("(n=").append(total).append(")");
+            }
+        }
+        return str.toString();
+    }
+
+    /**
+     * Describe the last ringing and the percentiles of its total latency. Used in the analytics.
+     *
+     * @return JSON string, or null if no ringing was measured
+     */
+    public static synchronized String lastRingingToJSONString() {
+        if (lastCheckpoints == null) {
+            return null;
+        }
+
+        try {
+            JSONObject json = new JSONObject();
+            for (int stage = STAGE_SYSTEM_ALARM; stage < STAGE_NAMES.length; stage++) {
+                json.put(STAGE_NAMES[stage], lastCheckpoints[stage]);
+            }
+
+            JSONArray histogram = loadHistograms().optJSONArray(STAGE_NAMES[STAGE_SOUND]);
+            if (histogram != null) {
+                int[] counts = toCounts(histogram);
+                json.put("p50", percentile(counts, 50));
+                json.put("p90", percentile(counts, 90));
+                json.put("p99", percentile(counts, 99));
+            }
+
+            return json.toString();
+        } catch (JSONException e) {
+            MyLog.w("Cannot describe the ring latency", e);
+            return null;
+        }
+    }
+
+}
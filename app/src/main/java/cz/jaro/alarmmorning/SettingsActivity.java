@@ -19,6 +19,7 @@ import android.view.MenuItem;
 import android.view.ViewGroup;
 import android.widget.ListView;
 
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.NavUtils;
@@ -110,18 +111,41 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
     public static final String PREF_CHECK_ALARM_TIME = "pref_check_alarm_time";
     public static final String PREF_CHECK_ALARM_TIME_AT = "pref_check_alarm_time_at";
     public static final String PREF_CHECK_ALARM_TIME_GAP = "pref_check_alarm_time_gap";
+    /**
+     * If true, then the mornings of the whole week are checked, see {@link cz.jaro.alarmmorning.checkalarmtime.WeekAhead}.
+     */
+    public static final String PREF_CHECK_ALARM_TIME_WEEK = "pref_check_alarm_time_week";
 
     public static final String PREF_NIGHTTIME_BELL = "pref_nighttime_bell";
     public static final String PREF_NIGHTTIME_BELL_AT = "pref_nighttime_bell_at";
     public static final String PREF_NIGHTTIME_BELL_RINGTONE = "pref_nighttime_bell_ringtone";
 
     public static final String PREF_RELIABILITY_CHECK_ENABLED = "pref_reliability_check_enabled";
+
+    /**
+     * If true, then the next few actions are registered as system alarms in advance, see {@link SystemAlarm#PIPELINE_LENGTH}.
+     */
+    public static final String PREF_SYSTEM_ALARM_PIPELINE = "pref_system_alarm_pipeline";
+    /**
+     * If true, then the data needed for ringing are prepared in the near future period, see {@link GlobalManager#isWarmedUp(cz.jaro.alarmmorning.model.AppAlarm)}.
+     */
+    public static final String PREF_RING_WARM_UP = "pref_ring_warm_up";
     public static final String PREF_TEST_PANIC = "pref_test_panic";
 
     public static final String PREF_HOLIDAY = "pref_holiday";
 
+    /**
+     * Value is in days.
+     */
+    public static final String PREF_HORIZON_DAYS = "pref_horizon_days";
+
     public static final String PREF_START_WIZARD = "pref_start_wizard";
 
+    /**
+     * Shows the ring latency percentiles, see {@link RingLatency}.
+     */
+    public static final String PREF_RING_LATENCY = "pref_ring_latency";
+
     public static final String PREF_RINGTONE_DEFAULT = "content://settings/system/alarm_alert";
     public static final int PREF_VOLUME_DEFAULT = 8;
     public static final boolean PREF_VOLUME_INCREASING_DEFAULT = true;
@@ -139,12 +163,16 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
     public static final boolean PREF_CHECK_ALARM_TIME_DEFAULT = true;
     public static final String PREF_CHECK_ALARM_TIME_AT_DEFAULT = "22:00";
     public static final int PREF_CHECK_ALARM_TIME_GAP_DEFAULT = 60;
+    public static final boolean PREF_CHECK_ALARM_TIME_WEEK_DEFAULT = false;
     public static final boolean PREF_NIGHTTIME_BELL_DEFAULT = true;
     public static final String PREF_NIGHTTIME_BELL_AT_DEFAULT = "22:00";
     public static final String PREF_NIGHTTIME_BELL_RINGTONE_DEFAULT = "raw://church_clock_strikes_3";
     public static final boolean PREF_RELIABILITY_CHECK_ENABLED_DEFAULT = false;
+    public static final boolean PREF_SYSTEM_ALARM_PIPELINE_DEFAULT = false;
+    public static final boolean PREF_RING_WARM_UP_DEFAULT = true;
     public static final String PREF_HOLIDAY_NONE = HolidayHelper.PATH_TOP;
     public static final String PREF_HOLIDAY_DEFAULT = PREF_HOLIDAY_NONE;
+    public static final int PREF_HORIZON_DAYS_DEFAULT = GlobalManager.HORIZON_DAYS;
 
     public static final int PREF_VOLUME_MAX = 10;
 
@@ -190,6 +218,7 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
         bindPreferenceSummaryToValue(findPreference(PREF_NAP_TIME));
 //        bindPreferenceSummaryToValue(findPreference(PREF_RELIABILITY_CHECK_ENABLED));
         bindPreferenceSummaryToValue(findPreference(PREF_HOLIDAY));
+        bindPreferenceSummaryToValue(findPreference(PREF_HORIZON_DAYS));
 
         // Start/stop services
 
@@ -209,6 +238,16 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             return true;
         });
 
+        Preference prefCheckAlarmTimeWeek = findPreference(PREF_CHECK_ALARM_TIME_WEEK);
+        prefCheckAlarmTimeWeek.setOnPreferenceChangeListener((preference, newValue) -> {
+            analytics(preference, newValue);
+
+            boolean boolValue = (boolean) newValue;
+            CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(this);
+            checkAlarmTime.onWeekChanged(boolValue);
+            return true;
+        });
+
         Preference prefNighttimeBell = findPreference(PREF_NIGHTTIME_BELL);
         prefNighttimeBell.setOnPreferenceChangeListener((preference, newValue) -> {
             analytics(preference, newValue);
@@ -239,6 +278,23 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             return true;
         });
 
+        Preference prefRingLatency = findPreference(PREF_RING_LATENCY);
+        prefRingLatency.setOnPreferenceClickListener(preference -> {
+            Analytics analytics = new Analytics(preference.getContext(), Analytics.Event.Start, Analytics.Channel.Activity, Analytics.ChannelName.Settings);
+            analytics.set(Analytics.Param.Target, Analytics.TARGET_RING_LATENCY);
+            analytics.save();
+
+            String description = RingLatency.describe();
+
+            AlertDialog alertDialog = new AlertDialog.Builder(this).create();
+            alertDialog.setTitle(getString(R.string.pref_title_ring_latency));
+            alertDialog.setMessage(description.isEmpty() ? getString(R.string.ring_latency_no_data) : description);
+            alertDialog.setButton(AlertDialog.BUTTON_POSITIVE, getString(android.R.string.ok), (dialog, which) -> dialog.dismiss());
+            alertDialog.show();
+
+            return true;
+        });
+
 //        Preference prefTestPanic = findPreference(PREF_TEST_PANIC);
 //        prefTestPanic.setOnPreferenceClickListener(preference -> {
 //            Analytics analytics = new Analytics(preference.getContext(), Analytics.Event.Start, Analytics.Channel.Activity, Analytics.ChannelName.Settings);
@@ -359,6 +415,9 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             if (key.equals(PREF_HOLIDAY)) {
                 GlobalManager globalManager = GlobalManager.getInstance();
                 globalManager.saveHoliday(stringValue);
+            } else if (key.equals(PREF_HORIZON_DAYS)) {
+                GlobalManager globalManager = GlobalManager.getInstance();
+                globalManager.saveHorizonDays((int) value);
             }
         }
 
@@ -429,6 +488,14 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             } else if (key.equals(PREF_HOLIDAY)) {
                 String summaryText = HolidayHelper.getInstance().preferenceToDisplayName(stringValue);
 
+                preference.setSummary(summaryText);
+            } else if (key.equals(PREF_HORIZON_DAYS)) {
+                int intValue = (int) value;
+
+                Context context = preference.getContext();
+                Resources res = context.getResources();
+                String summaryText = res.getQuantityString(R.plurals.time_day, intValue, intValue);
+
                 preference.setSummary(summaryText);
             } else {
                 // For all other preferences, set the summary to the value's simple string representation.
@@ -570,6 +637,9 @@ public class SettingsActivity extends AppCompatPreferenceActivity {
             case PREF_HOLIDAY:
                 newValue = SharedPreferencesHelper.load(preference.getKey(), PREF_HOLIDAY_DEFAULT);
                 break;
+            case PREF_HORIZON_DAYS:
+                newValue = SharedPreferencesHelper.load(preference.getKey(), PREF_HORIZON_DAYS_DEFAULT);
+                break;
             default:
                 throw new IllegalArgumentException("Unexpected argument " + key);
         }
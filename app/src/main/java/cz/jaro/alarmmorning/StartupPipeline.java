@@ -0,0 +1,139 @@
+package cz.jaro.alarmmorning;
+
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * StartupPipeline performs the tasks that are done on the system start (or app upgrade).
+ * <p>
+ * Each task (a stage) runs on an executor after all the stages it depends on are finished. Therefore the independent stages run concurrently. The duration
+ * of each stage is logged.
+ * <p>
+ * Usage: add the stages by {@link #add(String, Executor, Runnable, Stage...)} and then call {@link #start(Runnable)}. The stages cannot be added after the
+ * start.
+ */
+public class StartupPipeline {
+
+    /**
+     * A task of the pipeline.
+     */
+    public class Stage {
+        private final String name;
+        private final Executor executor;
+        private final Runnable action;
+
+        /**
+         * Number of stages that must finish before this stage starts.
+         */
+        private final AtomicInteger pendingDependencies;
+
+        private final List<Stage> dependents = new ArrayList<>();
+
+        private Stage(String name, Executor executor, Runnable action, int dependencyCount) {
+            this.name = name;
+            this.executor = executor;
+            this.action = action;
+            pendingDependencies = new AtomicInteger(dependencyCount);
+        }
+
+        private void run() {
+            long start = SystemClock.elapsedRealtime();
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                MyLog.e("Stage " + name + " of " + StartupPipeline.this.name + " failed", e);
+            } finally {
+                // Even an Error must not block the dependent stages and the end of the pipeline (which releases the wake lock)
+                MyLog.i("Stage " + name + " of " + StartupPipeline.this.name + " took " + (SystemClock.elapsedRealtime() - start) + " ms");
+
+                onStageFinished(this);
+            }
+        }
+    }
+
+    private final String name;
+
+    private final List<Stage> stages = new ArrayList<>();
+
+    private final AtomicInteger pendingStages = new AtomicInteger();
+
+    private long startTime;
+
+    private Runnable onFinish;
+
+    /**
+     * @param name Name of the pipeline, used in the log
+     */
+    public StartupPipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Add a stage.
+     *
+     * @param name         Name of the stage, used in the log
+     * @param executor     Executor that runs the stage
+     * @param action       The task
+     * @param dependencies The stages that must finish before this stage starts
+     * @return The stage
+     */
+    public Stage add(String name, Executor executor, Runnable action, Stage... dependencies) {
+        Stage stage = new Stage(name, executor, action, dependencies.length);
+        for (Stage dependency : dependencies) {
+            dependency.dependents.add(stage);
+        }
+        stages.add(stage);
+        return stage;
+    }
+
+    /**
+     * Start the stages that don't depend on other stages. The other stages are started as soon as their dependencies finish.
+     *
+     * @param onFinish Called (on the thread of the last stage) after all the stages are finished
+     */
+    public void start(Runnable onFinish) {
+        this.onFinish = onFinish;
+        startTime = SystemClock.elapsedRealtime();
+        pendingStages.set(stages.size());
+
+        if (stages.isEmpty()) {
+            finish();
+            return;
+        }
+
+        // Collect the stages first: with a synchronous executor, starting a stage may start its dependents
+        List<Stage> initialStages = new ArrayList<>();
+        for (Stage stage : stages) {
+            if (stage.pendingDependencies.get() == 0) {
+                initialStages.add(stage);
+            }
+        }
+        for (Stage stage : initialStages) {
+            stage.executor.execute(stage::run);
+        }
+    }
+
+    private void onStageFinished(Stage stage) {
+        for (Stage dependent : stage.dependents) {
+            if (dependent.pendingDependencies.decrementAndGet() == 0) {
+                dependent.executor.execute(dependent::run);
+            }
+        }
+
+        if (pendingStages.decrementAndGet() == 0) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        MyLog.i(name + " took " + (SystemClock.elapsedRealtime() - startTime) + " ms");
+        if (onFinish != null) {
+            onFinish.run();
+        }
+    }
+
+}
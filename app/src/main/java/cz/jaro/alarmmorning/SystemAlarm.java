@@ -6,11 +6,14 @@ import android.content.Context;
 import android.content.Intent;
 import android.os.Build;
 
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
 import cz.jaro.alarmmorning.clock.Clock;
+import cz.jaro.alarmmorning.clock.FixedClock;
 import cz.jaro.alarmmorning.model.AppAlarm;
 import cz.jaro.alarmmorning.receivers.AlarmReceiver;
 
@@ -24,6 +27,11 @@ import static cz.jaro.alarmmorning.GlobalManager.useNearFutureTime;
 
 /**
  * The SystemAlarm handles the "waking up of the app at a specified time to perform an action".
+ * <p>
+ * If {@link SettingsActivity#PREF_SYSTEM_ALARM_PIPELINE} is on, then the next few actions are computed and registered in advance (with distinct request
+ * codes). Each action follows from the previous one, unless the data changes. Therefore, on waking up, the registered action is just removed from the queue
+ * (and the following action is already registered). The queue is computed again only if it runs out, or if the data changes so that any action in the
+ * queue changes (which cancels the whole queue).
  */
 public class SystemAlarm {
 
@@ -34,6 +42,15 @@ public class SystemAlarm {
 
     private PendingIntent operation;
 
+    private static final int REQUEST_CODE = 1;
+
+    /**
+     * Maximal number of actions registered in advance.
+     */
+    static final int PIPELINE_LENGTH = 3;
+
+    private static final String QUEUE_FIELD_SEPARATOR = ",";
+
     /**
      * Action meaning: Set system alarm for next action. (Currently, all alarms are unset in the next {@link GlobalManager#HORIZON_DAYS} days.)
      */
@@ -67,10 +84,21 @@ public class SystemAlarm {
     }
 
     private void registerSystemAlarm(NextAction nextAction) {
+        if (isPipelined()) {
+            registerSystemAlarms(nextAction);
+            return;
+        }
+
         MyLog.i("Setting system alarm at " + nextAction.time.getTime().toString() + " with action " + nextAction.action);
 
         saveNextAction(nextAction);
 
+        operation = createOperation(nextAction, REQUEST_CODE);
+
+        setSystemAlarm(alarmManager, nextAction.time, operation);
+    }
+
+    private PendingIntent createOperation(NextAction nextAction, int requestCode) {
         Intent intent = new Intent(context, AlarmReceiver.class);
         intent.setAction(nextAction.action);
         if (nextAction.appAlarm != null) {
@@ -78,9 +106,176 @@ public class SystemAlarm {
             intent.putExtra(PERSIST_ALARM_ID, nextAction.appAlarm.getPersistenceId());
         }
 
-        operation = PendingIntent.getBroadcast(context, 1, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        return PendingIntent.getBroadcast(context, requestCode, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
 
-        setSystemAlarm(alarmManager, nextAction.time, operation);
+    /*
+     * Pipeline
+     * ========
+     */
+
+    private static boolean isPipelined() {
+        return (boolean) SharedPreferencesHelper.load(SettingsActivity.PREF_SYSTEM_ALARM_PIPELINE, SettingsActivity.PREF_SYSTEM_ALARM_PIPELINE_DEFAULT);
+    }
+
+    /**
+     * Register the action and the actions that follow it. The previously registered actions are cancelled.
+     *
+     * @param nextAction the next action
+     */
+    private void registerSystemAlarms(NextAction nextAction) {
+        cancelQueue();
+
+        List<NextAction> nextActions = calcNextActions(nextAction);
+
+        List<String> queue = new ArrayList<>(nextActions.size());
+        for (int i = 0; i < nextActions.size(); i++) {
+            NextAction action = nextActions.get(i);
+            int requestCode = REQUEST_CODE + i;
+
+            MyLog.i("Setting system alarm at " + action.time.getTime().toString() + " with action " + action.action + " and request code " + requestCode);
+
+            setSystemAlarm(alarmManager, action.time, createOperation(action, requestCode));
+
+            queue.add(encode(requestCode, action));
+        }
+
+        saveNextAction(nextAction);
+
+        GlobalManager globalManager = GlobalManager.getInstance();
+        globalManager.setNextActionQueue(queue);
+    }
+
+    /**
+     * Returns the action and the actions that follow it (if the data doesn't change). The sequence ends with {@link #ACTION_RING}, as the following actions
+     * depend on the user.
+     *
+     * @param nextAction the next action
+     * @return at most {@link #PIPELINE_LENGTH} actions, ordered by time
+     */
+    private List<NextAction> calcNextActions(NextAction nextAction) {
+        List<NextAction> nextActions = new ArrayList<>(PIPELINE_LENGTH);
+        nextActions.add(nextAction);
+
+        NextAction action = nextAction;
+        while (nextActions.size() < PIPELINE_LENGTH && !action.action.equals(ACTION_RING)) {
+            NextAction followingAction = calcNextAction(new FixedClock(action.time));
+            if (!action.time.before(followingAction.time)) {
+                break;
+            }
+
+            nextActions.add(followingAction);
+            action = followingAction;
+        }
+
+        return nextActions;
+    }
+
+    /**
+     * Return the action that follows the action that was just performed, without modifying the queue.
+     *
+     * @return the following action (which is already registered). Return null if the queue doesn't contain a following action that is in the future (and the
+     * actions must be computed again).
+     */
+    private NextAction peekQueue() {
+        MyLog.v("peekQueue()");
+
+        GlobalManager globalManager = GlobalManager.getInstance();
+        List<String> queue = globalManager.getNextActionQueue();
+        if (queue.size() < 2) {
+            return null;
+        }
+
+        Calendar now = globalManager.clock().now();
+        if (now.before(decodeTime(queue.get(0)))) {
+            MyLog.v("The first action in queue was not performed yet");
+            return null;
+        }
+
+        NextAction nextAction = decode(queue.get(1));
+        if (nextAction == null || !now.before(nextAction.time)) {
+            MyLog.v("The following action in queue is not valid");
+            return null;
+        }
+
+        return nextAction;
+    }
+
+    /**
+     * Remove the action that was just performed from the queue.
+     *
+     * @return the following action (which is already registered). Return null if the queue doesn't contain a following action that is in the future (and the
+     * actions must be computed again). In that case the queue is not modified.
+     */
+    private NextAction popQueue() {
+        MyLog.v("popQueue()");
+
+        NextAction nextAction = peekQueue();
+        if (nextAction == null) {
+            return null;
+        }
+
+        GlobalManager globalManager = GlobalManager.getInstance();
+        List<String> queue = globalManager.getNextActionQueue();
+        queue.remove(0);
+        globalManager.setNextActionQueue(queue);
+
+        return nextAction;
+    }
+
+    private void cancelQueue() {
+        GlobalManager globalManager = GlobalManager.getInstance();
+        List<String> queue = globalManager.getNextActionQueue();
+        if (queue.isEmpty()) {
+            return;
+        }
+
+        MyLog.d("Cancelling " + queue.size() + " system alarms in queue");
+        for (String encoded : queue) {
+            String[] fields = encoded.split(QUEUE_FIELD_SEPARATOR, -1);
+
+            Intent intent = new Intent(context, AlarmReceiver.class);
+            intent.setAction(fields[1]);
+
+            PendingIntent operation = PendingIntent.getBroadcast(context, Integer.parseInt(fields[0]), intent, PendingIntent.FLAG_NO_CREATE);
+            if (operation != null) {
+                operation.cancel();
+            }
+        }
+
+        globalManager.setNextActionQueue(new ArrayList<>());
+    }
+
+    private static String encode(int requestCode, NextAction nextAction) {
+        String alarmType = nextAction.appAlarm != null ? nextAction.appAlarm.getClass().getSimpleName() : "";
+        String alarmId = nextAction.appAlarm != null ? nextAction.appAlarm.getPersistenceId() : "";
+
+        return requestCode + QUEUE_FIELD_SEPARATOR + nextAction.action + QUEUE_FIELD_SEPARATOR + nextAction.time.getTimeInMillis() +
+                QUEUE_FIELD_SEPARATOR + alarmType + QUEUE_FIELD_SEPARATOR + alarmId;
+    }
+
+    private static Calendar decodeTime(String encoded) {
+        String[] fields = encoded.split(QUEUE_FIELD_SEPARATOR, -1);
+
+        return CalendarUtils.newGregorianCalendar(Long.parseLong(fields[2]));
+    }
+
+    /**
+     * @return The decoded action. Return null if the alarm of the action doesn't exist anymore.
+     */
+    private static NextAction decode(String encoded) {
+        String[] fields = encoded.split(QUEUE_FIELD_SEPARATOR, -1);
+
+        AppAlarm appAlarm = null;
+        if (!fields[3].isEmpty()) {
+            GlobalManager globalManager = GlobalManager.getInstance();
+            appAlarm = globalManager.load(fields[3], fields[4]);
+            if (appAlarm == null) {
+                return null;
+            }
+        }
+
+        return new NextAction(fields[1], decodeTime(encoded), appAlarm);
     }
 
     /**
@@ -115,6 +310,9 @@ public class SystemAlarm {
 
     private void cancel() {
         MyLog.d("cancel()");
+
+        cancelQueue();
+
         if (operation != null) {
             // Method 1: standard
             MyLog.d("Cancelling current system alarm");
@@ -155,6 +353,15 @@ public class SystemAlarm {
      */
 
     private void register() {
+        if (isPipelined()) {
+            NextAction nextAction = popQueue();
+            if (nextAction != null) {
+                MyLog.i("The next action is already registered: " + nextAction);
+                saveNextAction(nextAction);
+                return;
+            }
+        }
+
         NextAction nextAction = calcNextAction();
         registerSystemAlarm(nextAction);
     }
@@ -178,15 +385,16 @@ public class SystemAlarm {
      *
      * @return the next action and system alarm
      */
-    private NextAction calcNextAction(Clock clock) {
+    NextAction calcNextAction(Clock clock) {
         MyLog.d("calcNextAction(clock=" + clock.now().getTime().toString() + ")");
 
         Calendar now = clock.now();
 
         GlobalManager globalManager = GlobalManager.getInstance();
+        AlarmStateContext context = globalManager.newStateContext(now);
         AppAlarm nextAlarmToRingWithoutCurrent = globalManager.getNextAlarm(clock, appAlarm -> {
             MyLog.v("   checking filter condition for " + appAlarm);
-            int state = globalManager.getState(appAlarm);
+            int state = globalManager.getState(appAlarm, context);
             return state != STATE_DISMISSED_BEFORE_RINGING && state != STATE_DISMISSED;
         });
 
@@ -222,33 +430,61 @@ public class SystemAlarm {
         GlobalManager globalManager = GlobalManager.getInstance();
         Calendar now = clock.now();
 
-        AppAlarm nearestDismissedAlarm = null;
-
-        Set<AppAlarm> dismissedAlarms = globalManager.getDismissedAlarms();
-        for (AppAlarm dismissedAlarm : dismissedAlarms) {
-            if (now.before(dismissedAlarm.getDateTime())) {
-                if (nearestDismissedAlarm == null || dismissedAlarm.getDateTime().before(nearestDismissedAlarm.getDateTime())) {
-                    nearestDismissedAlarm = dismissedAlarm;
-                }
-            }
-        }
-
-        return nearestDismissedAlarm;
+        return globalManager.getNextDismissedAlarm(now);
     }
 
-    boolean nextActionShouldChange() {
+    /**
+     * Checks whether the next action differs from the registered one. If the actions are registered in advance, then all the registered actions are checked.
+     *
+     * @param nextAction the next action, as computed by {@link #calcNextAction()}
+     * @return true if the system alarm should be registered again
+     */
+    boolean nextActionShouldChange(NextAction nextAction) {
         MyLog.v("nextActionShouldChange()");
 
-        NextAction nextAction = calcNextAction();
-
         try { // When running tests for the 1st time, there is no persisted action
             GlobalManager globalManager = GlobalManager.getInstance();
             NextAction nextActionPersisted = globalManager.getNextAction();
 
-            return !nextActionPersisted.equals(nextAction);
+            if (!nextActionPersisted.equals(nextAction)) {
+                return true;
+            }
         } catch (IllegalArgumentException e) {
             return true;
         }
+
+        return isPipelined() && queueShouldChange(nextAction);
+    }
+
+    /**
+     * Checks whether the actions in queue differ from the actions that follow the next action. (E.g. the first action is the reset at midnight, and the
+     * alarm that rings in the morning was changed.)
+     *
+     * @param nextAction the next action, as computed by {@link #calcNextAction()}
+     * @return true if the queue should be registered again
+     */
+    private boolean queueShouldChange(NextAction nextAction) {
+        GlobalManager globalManager = GlobalManager.getInstance();
+        List<String> queue = globalManager.getNextActionQueue();
+        if (queue.isEmpty()) {
+            return false;
+        }
+
+        List<NextAction> nextActions = calcNextActions(nextAction);
+        if (nextActions.size() < queue.size()) {
+            MyLog.v("The queue contains more actions");
+            return true;
+        }
+
+        for (int i = 0; i < queue.size(); i++) {
+            NextAction queuedAction = decode(queue.get(i));
+            if (queuedAction == null || !queuedAction.equals(nextActions.get(i))) {
+                MyLog.v("The action in queue differs: " + queuedAction);
+                return true;
+            }
+        }
+
+        return false;
     }
 
     public void onSystemAlarm(Intent intent) {
@@ -256,6 +492,10 @@ public class SystemAlarm {
 
         MyLog.i("Acting on system alarm. action=" + action);
 
+        if (ACTION_RING.equals(action)) {
+            RingLatency.checkpoint(RingLatency.STAGE_SYSTEM_ALARM);
+        }
+
         AppAlarm appAlarm = null;
         GlobalManager globalManager = GlobalManager.getInstance();
         String alarmType = intent.getStringExtra(PERSIST_ALARM_TYPE);
@@ -292,10 +532,32 @@ public class SystemAlarm {
         reset();
     }
 
+    /**
+     * Register the next action that was already computed by {@link #calcNextAction()}.
+     *
+     * @param nextAction the next action
+     */
+    void onAlarmSet(NextAction nextAction) {
+        MyLog.d("onAlarmSet(nextAction=" + nextAction + ")");
+
+        cancel();
+
+        registerSystemAlarm(nextAction);
+    }
+
     void onNearFuture(AppAlarm appAlarm) {
         MyLog.d("onNearFuture()");
 
-        registerSystemAlarm(ACTION_RING, appAlarm.getDateTime(), appAlarm);
+        NextAction nextAction = new NextAction(ACTION_RING, appAlarm.getDateTime(), appAlarm);
+
+        if (isPipelined() && nextAction.equals(peekQueue())) {
+            MyLog.i("The next action is already registered: " + nextAction);
+            popQueue();
+            saveNextAction(nextAction);
+            return;
+        }
+
+        registerSystemAlarm(nextAction);
     }
 
     void onDismissBeforeRinging() {
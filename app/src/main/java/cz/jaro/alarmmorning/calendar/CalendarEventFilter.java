@@ -1,10 +1,30 @@
 package cz.jaro.alarmmorning.calendar;
 
+import android.provider.CalendarContract;
+
 /**
  * Abstract class that supports filtering of {@link CalendarEvent}'s.
+ * <p>
+ * If the condition can be expressed in SQL, return it in {@link #getSelection()}. Then the calendar provider skips the events that don't match and they are
+ * not loaded at all.
  */
 public abstract class CalendarEventFilter {
 
+    /**
+     * Filter that matches the events that are not all-day events.
+     */
+    public static final CalendarEventFilter NOT_ALL_DAY = new CalendarEventFilter() {
+        @Override
+        public boolean match(CalendarEvent event) {
+            return !event.getAllDay();
+        }
+
+        @Override
+        public String getSelection() {
+            return CalendarContract.Instances.ALL_DAY + " = 0";
+        }
+    };
+
     /**
      * Decide whether an {@code event} satisfies a condition. The condition is implemented in the body of this method.
      *
@@ -13,4 +33,14 @@ public abstract class CalendarEventFilter {
      */
     public abstract boolean match(CalendarEvent event);
 
+    /**
+     * Return the condition as a selection of a query of {@link CalendarContract.Instances}. The selection may be weaker than {@link #match(CalendarEvent)}
+     * (the events are checked by {@link #match(CalendarEvent)} anyway).
+     *
+     * @return SQL selection (without parameters), or null if the condition cannot be expressed in SQL
+     */
+    public String getSelection() {
+        return null;
+    }
+
 }
@@ -12,10 +12,14 @@ import android.provider.CalendarContract;
 import androidx.core.content.ContextCompat;
 
 import java.util.Calendar;
+import java.util.Objects;
 
 import cz.jaro.alarmmorning.Localization;
 import cz.jaro.alarmmorning.MyLog;
 
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.justBeforeNoonToday;
+
 /**
  * This class provides unifed access to calendar.
  */
@@ -37,6 +41,22 @@ public class CalendarHelper {
     private static final int PROJECTION_LOCATION_INDEX = 3;
     private static final int PROJECTION_ALL_DAY_INDEX = 4;
 
+    // Projection for the snapshot of calendar instances
+    private static final String[] SNAPSHOT_PROJECTION = new String[]{
+            CalendarContract.Instances.EVENT_ID,        // 0
+            CalendarContract.Instances.BEGIN,           // 1
+            CalendarContract.Instances.ALL_DAY,         // 2
+            CalendarContract.Instances.TITLE,           // 3
+            CalendarContract.Instances.EVENT_LOCATION   // 4
+    };
+
+    // The indices for the projection array above
+    private static final int SNAPSHOT_ID_INDEX = 0;
+    private static final int SNAPSHOT_BEGIN_INDEX = 1;
+    private static final int SNAPSHOT_ALL_DAY_INDEX = 2;
+    private static final int SNAPSHOT_TITLE_INDEX = 3;
+    private static final int SNAPSHOT_LOCATION_INDEX = 4;
+
     private final Context context;
 
     public CalendarHelper(Context context) {
@@ -74,46 +94,155 @@ public class CalendarHelper {
             ContentUris.appendId(builder, from.getTimeInMillis()); // Event happens in this interval
             ContentUris.appendId(builder, to.getTimeInMillis());
 
+            // The interval returns also the events that started before from (and still happen), skip them in the query
+            String selection = CalendarContract.Instances.BEGIN + " >= ?";
+            String[] selectionArgs = new String[]{String.valueOf(from.getTimeInMillis())};
+            if (filter != null && filter.getSelection() != null) {
+                selection += " AND (" + filter.getSelection() + ")";
+            }
+
             String sortOrder = CalendarContract.Instances.BEGIN + ", " + CalendarContract.Instances.END;
 
             // Submit the query
             ContentResolver cr = context.getContentResolver();
-            Cursor cur = cr.query(builder.build(), INSTANCE_PROJECTION, null, null, sortOrder);
-
-            if (cur != null) {
-                CalendarEvent eventEarliest = null;
-
-                while (cur.moveToNext()) {
-                    CalendarEvent event = load(cur);
-
-                    String timeStr = Localization.timeToString(event.begin.getTime(), context);
-                    MyLog.v("   " + timeStr + " " + event.title + "    " + event.location);
+            try (Cursor cur = cr.query(builder.build(), INSTANCE_PROJECTION, selection, selectionArgs, sortOrder)) {
+                if (cur != null) {
+                    // The events are sorted by begin, so the first matching event is the earliest one
+                    while (cur.moveToNext()) {
+                        CalendarEvent event = load(cur);
 
-                    if (!event.begin.before(from)) { // event starts on or after startOfTomorrow
                         if (filter == null || filter.match(event)) { // match filter
-                            if (eventEarliest == null || event.getBegin().before(eventEarliest.getBegin())) {
-                                eventEarliest = event;
-                            }
+                            String timeStr = Localization.timeToString(event.begin.getTime(), context);
+                            MyLog.d("Found event: " + timeStr + " " + event.getTitle());
+                            return event;
                         }
                     }
-                }
 
-                if (eventEarliest != null) {
-                    String timeStr = Localization.timeToString(eventEarliest.begin.getTime(), context);
-                    MyLog.d("Found event: " + timeStr + " " + eventEarliest.getTitle());
-                    return eventEarliest;
+                    MyLog.d("Calendar query returned no events that match criteria");
+                } else {
+                    MyLog.d("Calendar query returned null");
                 }
+            }
+        } else {
+            MyLog.d("Permission to read calendar not granted");
+        }
+        return null;
+    }
+
+    /**
+     * Find the earliest event in each of the consecutive mornings (between midnight and noon). All the mornings are read by one query.
+     *
+     * @param firstMorning Beginning of the first morning (midnight)
+     * @param days         Number of mornings
+     * @param filter       Filter
+     * @return array indexed by the morning (0 is the first morning) with the earliest event that matches {@code filter}, or null if there is no such event in
+     * the morning. Return null if the calendar cannot be read.
+     */
+    public CalendarEvent[] findEarliestPerMorning(Calendar firstMorning, int days, CalendarEventFilter filter) {
+        long[] morningStart = new long[days];
+        long[] morningNoon = new long[days];
+        for (int i = 0; i < days; i++) {
+            Calendar morning = addDaysClone(firstMorning, i);
+            morningStart[i] = morning.getTimeInMillis();
+            morningNoon[i] = justBeforeNoonToday(morning).getTimeInMillis();
+        }
+
+        MyLog.d("Find the earliest calendar item in each of " + days + " mornings starting " + firstMorning.getTime());
+
+        int permissionCheck = ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CALENDAR);
+        if (permissionCheck != PackageManager.PERMISSION_GRANTED) {
+            MyLog.d("Permission to read calendar not granted");
+            return null;
+        }
+
+        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(builder, morningStart[0]);
+        ContentUris.appendId(builder, morningNoon[days - 1]);
 
-                cur.close();
+        String selection = CalendarContract.Instances.BEGIN + " >= ?";
+        String[] selectionArgs = new String[]{String.valueOf(morningStart[0])};
+        if (filter != null && filter.getSelection() != null) {
+            selection += " AND (" + filter.getSelection() + ")";
+        }
+
+        String sortOrder = CalendarContract.Instances.BEGIN + ", " + CalendarContract.Instances.END;
 
-                MyLog.d("Calendar query returned no events that match criteria");
-            } else {
+        ContentResolver cr = context.getContentResolver();
+        try (Cursor cur = cr.query(builder.build(), INSTANCE_PROJECTION, selection, selectionArgs, sortOrder)) {
+            if (cur == null) {
                 MyLog.d("Calendar query returned null");
+                return null;
             }
-        } else {
+
+            CalendarEvent[] events = new CalendarEvent[days];
+            int found = 0;
+            int morning = 0;
+            while (cur.moveToNext()) {
+                long begin = cur.getLong(PROJECTION_BEGIN_INDEX);
+
+                // The events are sorted by begin, so the mornings are processed one after another
+                while (morning < days && morningNoon[morning] < begin) {
+                    morning++;
+                }
+                if (morning == days) {
+                    break;
+                }
+                if (begin < morningStart[morning] || events[morning] != null) { // in the afternoon or an earlier event was found
+                    continue;
+                }
+
+                CalendarEvent event = load(cur);
+                if (filter == null || filter.match(event)) {
+                    events[morning] = event;
+                    if (++found == days) {
+                        break;
+                    }
+                }
+            }
+
+            MyLog.d("Found events in " + found + " mornings");
+            return events;
+        }
+    }
+
+    /**
+     * Take a snapshot of the instances that start between {@code from} and {@code to}. Unlike {@link #find(Calendar, Calendar, CalendarEventFilter)}, no
+     * {@link CalendarEvent} is created.
+     *
+     * @param from Beginning of the interval in which the instances start
+     * @param to   End of the interval in which the instances start
+     * @return the snapshot, or null if the calendar cannot be read
+     */
+    public CalendarSnapshot snapshot(Calendar from, Calendar to) {
+        int permissionCheck = ContextCompat.checkSelfPermission(context, Manifest.permission.READ_CALENDAR);
+        if (permissionCheck != PackageManager.PERMISSION_GRANTED) {
             MyLog.d("Permission to read calendar not granted");
+            return null;
+        }
+
+        Uri.Builder builder = CalendarContract.Instances.CONTENT_URI.buildUpon();
+        ContentUris.appendId(builder, from.getTimeInMillis());
+        ContentUris.appendId(builder, to.getTimeInMillis());
+
+        String selection = CalendarContract.Instances.BEGIN + " >= ?";
+        String[] selectionArgs = new String[]{String.valueOf(from.getTimeInMillis())};
+
+        String sortOrder = CalendarContract.Instances.BEGIN + ", " + CalendarContract.Instances.EVENT_ID;
+
+        ContentResolver cr = context.getContentResolver();
+        try (Cursor cur = cr.query(builder.build(), SNAPSHOT_PROJECTION, selection, selectionArgs, sortOrder)) {
+            if (cur == null) {
+                MyLog.d("Calendar query returned null");
+                return null;
+            }
+
+            CalendarSnapshot snapshot = new CalendarSnapshot(from.getTimeInMillis(), to.getTimeInMillis());
+            while (cur.moveToNext()) {
+                int hash = Objects.hash(cur.getString(SNAPSHOT_TITLE_INDEX), cur.getString(SNAPSHOT_LOCATION_INDEX));
+                snapshot.add(cur.getLong(SNAPSHOT_ID_INDEX), cur.getLong(SNAPSHOT_BEGIN_INDEX), cur.getInt(SNAPSHOT_ALL_DAY_INDEX) == 1, hash);
+            }
+            return snapshot;
         }
-        return null;
     }
 
     private CalendarEvent load(Cursor cur) {
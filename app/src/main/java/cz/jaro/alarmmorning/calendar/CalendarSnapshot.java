@@ -0,0 +1,96 @@
+package cz.jaro.alarmmorning.calendar;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * CalendarSnapshot is a compact description of the calendar instances that start in an interval.
+ * <p>
+ * The calendar provider notifies about every change of every calendar (e.g. during a sync) without describing the change. Comparing two snapshots tells
+ * whether an instance in the interval appeared, disappeared, moved or changed.
+ */
+public class CalendarSnapshot {
+
+    /**
+     * A calendar instance.
+     */
+    private static class Instance {
+        final long eventId;
+        final long begin;
+        final boolean allDay;
+        final int hash;
+
+        Instance(long eventId, long begin, boolean allDay, int hash) {
+            this.eventId = eventId;
+            this.begin = begin;
+            this.allDay = allDay;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Instance instance = (Instance) o;
+            return eventId == instance.eventId && begin == instance.begin && allDay == instance.allDay && hash == instance.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(eventId, begin, allDay, hash);
+        }
+    }
+
+    private final long from;
+    private final long to;
+
+    private final List<Instance> instances = new ArrayList<>();
+
+    /**
+     * @param from Beginning of the interval (in milliseconds since epoch)
+     * @param to   End of the interval (in milliseconds since epoch)
+     */
+    public CalendarSnapshot(long from, long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Add an instance. The instances must be added in a stable order (e.g. sorted by begin and event id).
+     *
+     * @param eventId Event id
+     * @param begin   Begin of the instance (in milliseconds since epoch)
+     * @param allDay  true if the instance is an all-day event
+     * @param hash    Hash of the other displayed attributes (e.g. title and location)
+     */
+    public void add(long eventId, long begin, boolean allDay, int hash) {
+        instances.add(new Instance(eventId, begin, allDay, hash));
+    }
+
+    public int size() {
+        return instances.size();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CalendarSnapshot snapshot = (CalendarSnapshot) o;
+        return from == snapshot.from && to == snapshot.to && instances.equals(snapshot.instances);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(from, to, instances);
+    }
+
+    @Override
+    public String toString() {
+        return "CalendarSnapshot{" +
+                "from=" + from +
+                ", to=" + to +
+                ", instances=" + instances.size() +
+                '}';
+    }
+}
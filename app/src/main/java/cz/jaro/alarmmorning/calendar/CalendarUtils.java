@@ -495,6 +495,64 @@ public class CalendarUtils {
         return beginningOfToday(new GregorianCalendar());
     }
 
+    /**
+     * Returns the number of days between 1970-01-01 and the date of the calendar. The time of day and the time zone are ignored.
+     * <p>
+     * The value is computed by arithmetic on the date fields (proleptic Gregorian calendar), no formatter is used.
+     *
+     * @param date the date
+     * @return Epoch day
+     */
+    public static long toEpochDay(Calendar date) {
+        long year = date.get(Calendar.YEAR);
+        long month = date.get(Calendar.MONTH) + 1;
+        long day = date.get(Calendar.DATE);
+
+        // Shift the beginning of year to March, so that the leap day is the last day of the year
+        if (month <= 2) year--;
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Creates a calendar representing the beginning (midnight) of the date given by the number of days since 1970-01-01.
+     * <p>
+     * This is the inverse of {@link #toEpochDay(Calendar)}.
+     *
+     * @param epochDay epoch day
+     * @return Gregorian calendar
+     */
+    public static Calendar fromEpochDay(long epochDay) {
+        // Shift the beginning of year to March, so that the leap day is the last day of the year
+        long z = epochDay + 719468;
+        long era = (z >= 0 ? z : z - 146096) / 146097;
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * mp + 2) / 5 + 1);
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yearOfEra + era * 400 + (month <= 2 ? 1 : 0));
+
+        return new GregorianCalendar(year, month - 1, day);
+    }
+
+    /**
+     * Returns the day of week of the date given by the number of days since 1970-01-01.
+     *
+     * @param epochDay epoch day
+     * @return Day of week, the same number as in {@link Calendar#DAY_OF_WEEK}
+     */
+    public static int dayOfWeekOfEpochDay(long epochDay) {
+        // 1970-01-01 was Thursday
+        long offset = (epochDay + Calendar.THURSDAY - Calendar.SUNDAY) % 7;
+        if (offset < 0) offset += 7;
+        return (int) offset + Calendar.SUNDAY;
+    }
+
     /**
      * Copies all fields from source calendar to target calendar.
      * <p>
@@ -11,13 +11,48 @@ import android.net.Uri;
 import android.os.Build;
 import android.provider.CalendarContract;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import cz.jaro.alarmmorning.GlobalManager;
 import cz.jaro.alarmmorning.MyLog;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
 
+/**
+ * This job is started when a calendar event is created, modified or deleted.
+ * <p>
+ * A calendar sync changes many events in a short time. The job is started only after the changes stop for {@link #TRIGGER_UPDATE_DELAY} (but at most after
+ * {@link #TRIGGER_MAX_DELAY}), so that a sync causes one check. The changes that are collapsed into one check are counted.
+ */
 @TargetApi(Build.VERSION_CODES.N)
 public class CalendarEventChangeReceiverAsJob extends JobService {
 
     private static final int JOB_ID = 100;
 
+    /**
+     * Delay (in milliseconds) from the last change of calendar till starting the job.
+     */
+    private static final long TRIGGER_UPDATE_DELAY = 5 * 1000;
+
+    /**
+     * Maximal delay (in milliseconds) from the first change of calendar till starting the job.
+     */
+    private static final long TRIGGER_MAX_DELAY = 60 * 1000;
+
+    /**
+     * Number of the changes of calendar that didn't cause a check because they were collapsed with other changes.
+     */
+    static final String PERSIST_COLLAPSED_TRIGGERS = "persist_calendar_job_collapsed_triggers";
+
+    /**
+     * True while the check is running.
+     */
+    private static final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * True if the job was started while the check was running. Then the check is run once again after it finishes.
+     */
+    private static final AtomicBoolean rerun = new AtomicBoolean();
+
     static void schedule(Context context) {
         MyLog.v("schedule()");
 
@@ -27,6 +62,8 @@ public class CalendarEventChangeReceiverAsJob extends JobService {
         JobInfo.Builder jobInfoBuilder = new JobInfo.Builder(JOB_ID, oComponentName);
         jobInfoBuilder.addTriggerContentUri(new JobInfo.TriggerContentUri(CalendarContract.CONTENT_URI, JobInfo.TriggerContentUri.FLAG_NOTIFY_FOR_DESCENDANTS));
         jobInfoBuilder.addTriggerContentUri(new JobInfo.TriggerContentUri(CALENDAR_URI, 0));
+        jobInfoBuilder.setTriggerContentUpdateDelay(TRIGGER_UPDATE_DELAY);
+        jobInfoBuilder.setTriggerContentMaxDelay(TRIGGER_MAX_DELAY);
         JobScheduler jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
         jobScheduler.schedule(jobInfoBuilder.build());
     }
@@ -35,14 +72,67 @@ public class CalendarEventChangeReceiverAsJob extends JobService {
     public boolean onStartJob(JobParameters params) {
         MyLog.v("onStartJob(...)");
 
-        // Reschedule to receive future changes
-        schedule(this);
+        int triggers = countTriggers(params);
+
+        if (!running.compareAndSet(false, true)) {
+            MyLog.d("The check is running, it will be run once again");
+            rerun.set(true);
+            addCollapsedTriggers(triggers);
+
+            // Reschedule to receive future changes. This job ends now, so it's not affected by the rescheduling.
+            schedule(this);
+            return false;
+        }
+        addCollapsedTriggers(triggers - 1);
 
         // Do check
-        CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(this);
-        checkAlarmTime.onCalendarUpdated();
+        GlobalManager globalManager = GlobalManager.getInstance();
+        globalManager.background().execute(() -> {
+            try {
+                check();
+            } finally {
+                // Reschedule to receive future changes. Scheduling the job with the same id stops the running job (and releases its wake lock), therefore
+                // it's done only after the check.
+                schedule(this);
+                jobFinished(params, false);
+            }
+        });
 
-        return false;
+        return true;
+    }
+
+    private void check() {
+        do {
+            try {
+                do {
+                    rerun.set(false);
+
+                    CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(this);
+                    checkAlarmTime.onCalendarUpdated();
+                } while (rerun.get());
+            } finally {
+                running.set(false);
+            }
+            // The job may have been started after the last check and before clearing the running flag
+        } while (rerun.get() && running.compareAndSet(false, true));
+    }
+
+    /**
+     * @return the number of changes that started the job (at least one)
+     */
+    private static int countTriggers(JobParameters params) {
+        // The URIs are null if there were too many changes
+        Uri[] uris = params.getTriggeredContentUris();
+        return uris != null ? Math.max(1, uris.length) : 1;
+    }
+
+    private static synchronized void addCollapsedTriggers(int count) {
+        if (count <= 0)
+            return;
+
+        int collapsedTriggers = (int) SharedPreferencesHelper.load(PERSIST_COLLAPSED_TRIGGERS, 0) + count;
+        SharedPreferencesHelper.save(PERSIST_COLLAPSED_TRIGGERS, collapsedTriggers);
+        MyLog.d("Collapsed " + count + " calendar changes, " + collapsedTriggers + " in total");
     }
 
     @Override
@@ -14,8 +14,10 @@ import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
 
 import java.util.Calendar;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import cz.jaro.alarmmorning.AlarmMorningActivity;
 import cz.jaro.alarmmorning.Analytics;
 import cz.jaro.alarmmorning.GlobalManager;
 import cz.jaro.alarmmorning.Localization;
@@ -28,6 +30,7 @@ import cz.jaro.alarmmorning.SystemNotification;
 import cz.jaro.alarmmorning.calendar.CalendarEvent;
 import cz.jaro.alarmmorning.calendar.CalendarEventFilter;
 import cz.jaro.alarmmorning.calendar.CalendarHelper;
+import cz.jaro.alarmmorning.calendar.CalendarSnapshot;
 import cz.jaro.alarmmorning.clock.Clock;
 import cz.jaro.alarmmorning.graphics.TimePreference;
 import cz.jaro.alarmmorning.model.Day;
@@ -36,6 +39,7 @@ import cz.jaro.alarmmorning.model.Defaults;
 import static cz.jaro.alarmmorning.Analytics.CHECK_ALARM_TIME_ACTION__DON_T_SHOW_NOTIFICATION;
 import static cz.jaro.alarmmorning.Analytics.CHECK_ALARM_TIME_ACTION__NO_APPOINTMENT;
 import static cz.jaro.alarmmorning.Analytics.CHECK_ALARM_TIME_ACTION__SHOW_NOTIFICATION;
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.beginningOfToday;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.beginningOfTomorrow;
 import static cz.jaro.alarmmorning.calendar.CalendarUtils.justBeforeNoonToday;
@@ -48,12 +52,19 @@ import static cz.jaro.alarmmorning.calendar.CalendarUtils.roundDown;
  * meeting. The latest alarm time is calculated as "beginning of the first meeting" minus the gap. If there is no alarm before the latest alarm time, then a
  * reminder (notification) appears which informs the user about this situation and allows for a quick change of the alarm time. In real life, this is useful
  * because you don't ever forget to set the alarm time even if you have the meeting in the calendar.
+ * <p>
+ * The entry points are synchronized, as they are called from several threads (the calendar job runs in the background, GlobalManager calls {@link
+ * #onAlarmSet()} from the alarm engine). GlobalManager holds its lock while calling {@link #onAlarmSet()}, therefore the synchronized methods must not call
+ * the synchronized methods of GlobalManager.
  */
 public class CheckAlarmTime {
 
     private static final int NOTIFICATION_ID = 1;
     private static final int REQUEST_CODE = 1;
 
+    private static final int NOTIFICATION_ID_WEEK = 2;
+    private static final int REQUEST_CODE_WEEK = 2;
+
     private static CheckAlarmTime instance;
 
     private final Context context;
@@ -62,6 +73,18 @@ public class CheckAlarmTime {
     private PendingIntent operation;
     private PendingIntent operationDismissNotification;
 
+    /**
+     * The calendar instances in the morning (and the gap) at the last evaluation in {@link #onCalendarUpdated()}. Null if the next calendar update must be
+     * evaluated.
+     */
+    private volatile CalendarSnapshot lastSnapshot;
+    private volatile int lastSnapshotGap;
+
+    /**
+     * The result of the check of the week. Null if it must be computed again.
+     */
+    private volatile WeekAhead weekAhead;
+
     /**
      * Action meaning: Check alarm time of the next alarm: compare it with the 1st calendar instance. If it is too close, offer the user to quickly change the
      * alarm time.
@@ -104,7 +127,14 @@ public class CheckAlarmTime {
         return (boolean) SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME, SettingsActivity.PREF_CHECK_ALARM_TIME_DEFAULT);
     }
 
-    public void checkAndRegister() {
+    /**
+     * @return true if the mornings of the whole week are checked
+     */
+    public boolean isWeekEnabled() {
+        return (boolean) SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK_DEFAULT);
+    }
+
+    public synchronized void checkAndRegister() {
         MyLog.v("checkAndRegister()");
 
         if (isEnabled()) {
@@ -112,9 +142,11 @@ public class CheckAlarmTime {
         }
     }
 
-    public void register() {
+    public synchronized void register() {
         MyLog.v("register()");
 
+        invalidateCache();
+
         String checkAlarmTimeAtPreference = (String) SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME_AT, SettingsActivity.PREF_CHECK_ALARM_TIME_AT_DEFAULT);
 
         register(checkAlarmTimeAtPreference);
@@ -147,9 +179,11 @@ public class CheckAlarmTime {
         }
     }
 
-    public void unregister() {
+    public synchronized void unregister() {
         MyLog.v("unregister()");
 
+        invalidateCache();
+
         if (operation != null) {
             // Method 1: standard
             MyLog.d("Cancelling current system alarm for Check Alarm Time");
@@ -172,6 +206,7 @@ public class CheckAlarmTime {
         if (isNotificationVisible()) {
             hideNotification();
         }
+        hideWeekNotification();
 
         // Cleanup the preferences
         SharedPreferencesHelper.remove(PERSIST__CHECK_ALARM_TIME__NOTIFICATION_EVENT_BEGIN);
@@ -214,7 +249,7 @@ public class CheckAlarmTime {
         }
     }
 
-    public void onReceive(Intent intent) {
+    public synchronized void onReceive(Intent intent) {
         String action = intent.getAction();
 
         MyLog.i("Acting on CheckAlarmTime. action=" + action);
@@ -249,9 +284,15 @@ public class CheckAlarmTime {
     }
 
     private void doCheckAlarmTime() {
-        MorningInfo morningInfo = new MorningInfo(context);
+        invalidateCache();
+
+        MorningInfo morningInfo = createMorningInfo();
         doCheckAlarmTime(morningInfo);
 
+        if (isWeekEnabled()) {
+            updateWeekNotification(true);
+        }
+
         // Save analytics
         morningInfo.analytics.save();
     }
@@ -282,12 +323,31 @@ public class CheckAlarmTime {
 
     /**
      * Note that Android broadcast an intent "something happened with calendar" (specifically the PROVIDER_CHANGED action). However this intent doesn't have any
-     * attributes describing what happened. Therefore all the calendar events must be checked.
+     * attributes describing what happened. Therefore all the calendar instances in the morning are compared with the snapshot taken at the last evaluation, and
+     * the notification is evaluated only if an instance appeared, disappeared, moved or changed.
      */
-    void onCalendarUpdated() {
+    synchronized void onCalendarUpdated() {
         MyLog.v("onCalendarUpdated()");
         boolean betweenCheckAlarmTimeAndAlarmTime = isBetweenCheckAlarmTimeAndAlarmTime();
         if (betweenCheckAlarmTimeAndAlarmTime) {
+            int checkAlarmTimeGap = (int) SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME_GAP, SettingsActivity.PREF_CHECK_ALARM_TIME_GAP_DEFAULT);
+            boolean weekEnabled = isWeekEnabled();
+
+            // If the week is checked, then any morning of the week may have changed. Therefore the snapshot covers all the mornings of the week.
+            Calendar morningStart = calcMorningDate();
+            Calendar lastMorningStart = weekEnabled ? addDaysClone(morningStart, WeekAhead.DAYS - 1) : morningStart;
+            CalendarSnapshot snapshot = takeSnapshot(morningStart, justBeforeNoonToday(lastMorningStart));
+            if (snapshot != null && snapshot.equals(lastSnapshot) && checkAlarmTimeGap == lastSnapshotGap) {
+                MyLog.d("No change of calendar instances in the morning");
+                return;
+            }
+
+            if (weekEnabled) {
+                // The week is checked by one query, the next morning is then taken from the result
+                invalidateCache();
+                updateWeekNotification(true);
+            }
+
             boolean notificationVisible = isNotificationVisible();
 
             Calendar notificationEventBegin;
@@ -304,7 +364,7 @@ public class CheckAlarmTime {
             MyLog.v("notificationEventBegin=" + (notificationEventBegin != null ? Analytics.calendarToDatetimeStringUTC(notificationEventBegin) : "null"));
             MyLog.v("notificationAction=" + notificationAction);
 
-            MorningInfo morningInfo = new MorningInfo(context);
+            MorningInfo morningInfo = createMorningInfo();
             Calendar eventBegin = morningInfo.event != null ? morningInfo.event.getBegin() : null;
 
             MyLog.v("morningInfo=" + morningInfo);
@@ -364,9 +424,164 @@ public class CheckAlarmTime {
                 MyLog.i("Hiding notification");
                 hideNotification();
             }
+
+            lastSnapshot = snapshot;
+            lastSnapshotGap = checkAlarmTimeGap;
+        }
+    }
+
+    MorningInfo createMorningInfo() {
+        if (isWeekEnabled()) {
+            MorningInfo firstMorning = getWeekAhead().getFirstMorning();
+            Calendar morningStart = calcMorningDate();
+            if (morningStart != null && onTheSameDate(firstMorning.day.getDate(), morningStart)) {
+                return firstMorning;
+            }
+        }
+        return new MorningInfo(context);
+    }
+
+    CalendarSnapshot takeSnapshot(Calendar morningStart, Calendar morningNoon) {
+        CalendarHelper calendarHelper = new CalendarHelper(context);
+        return calendarHelper.snapshot(morningStart, morningNoon);
+    }
+
+    /**
+     * Make sure that the next calendar update is evaluated and the week is checked again. Called when something else than the calendar (that affects the check)
+     * changes.
+     */
+    private void invalidateCache() {
+        lastSnapshot = null;
+        weekAhead = null;
+    }
+
+    /*
+     * Week
+     * ====
+     */
+
+    /**
+     * Return the result of the check of the mornings in the next {@link WeekAhead#DAYS} days. The result is cached until the alarms, the calendar or the
+     * settings change.
+     * <p>
+     * Note: the method is called from the synchronized entry points.
+     *
+     * @return the check of the week
+     */
+    WeekAhead getWeekAhead() {
+        Calendar firstMorning = calcMorningDate();
+        if (firstMorning == null) {
+            GlobalManager globalManager = GlobalManager.getInstance();
+            firstMorning = beginningOfTomorrow(globalManager.clock().now());
+        }
+        int checkAlarmTimeGap = (int) SharedPreferencesHelper.load(SettingsActivity.PREF_CHECK_ALARM_TIME_GAP, SettingsActivity.PREF_CHECK_ALARM_TIME_GAP_DEFAULT);
+
+        WeekAhead result = weekAhead;
+        if (result == null || !result.isValid(firstMorning, checkAlarmTimeGap)) {
+            result = new WeekAhead(context, firstMorning, getEarliestEvents(firstMorning));
+            weekAhead = result;
+        }
+        return result;
+    }
+
+    CalendarEvent[] getEarliestEvents(Calendar firstMorning) {
+        CalendarHelper calendarHelper = new CalendarHelper(context);
+        return calendarHelper.findEarliestPerMorning(firstMorning, WeekAhead.DAYS, CalendarEventFilter.NOT_ALL_DAY);
+    }
+
+    /**
+     * Show the notification about the mornings (except the next one) in which the alarm is too late, or hide it if there is no such morning.
+     *
+     * @param mayShow If false, then the notification may be only hidden (e.g. during the day)
+     */
+    private void updateWeekNotification(boolean mayShow) {
+        List<MorningInfo> attentionNeeded = getWeekAhead().getAttentionNeeded();
+        if (attentionNeeded.isEmpty()) {
+            hideWeekNotification();
+        } else if (mayShow) {
+            showWeekNotification(attentionNeeded);
+        }
+    }
+
+    /**
+     * Called when the check of the week is enabled or disabled.
+     *
+     * @param enabled true if the check of the week is enabled
+     */
+    public synchronized void onWeekChanged(boolean enabled) {
+        MyLog.v("onWeekChanged(enabled=" + enabled + ")");
+
+        invalidateCache();
+        if (enabled) {
+            updateWeekNotification(isBetweenCheckAlarmTimeAndAlarmTime());
+        } else {
+            hideWeekNotification();
+        }
+    }
+
+    private void showWeekNotification(List<MorningInfo> mornings) {
+        MyLog.v("showWeekNotification()");
+        Resources res = context.getResources();
+
+        StringBuilder bodyText = new StringBuilder();
+        String contentText = null;
+        for (MorningInfo morningInfo : mornings) {
+            Calendar date = morningInfo.day.getDate();
+            String dateText = Localization.dayOfWeekToStringShort(res, date.get(Calendar.DAY_OF_WEEK)) + " " + Localization.dateToStringVeryShort(res, date.getTime());
+            String meetingTimeText = Localization.timeToString(morningInfo.event.getBegin().get(Calendar.HOUR_OF_DAY), morningInfo.event.getBegin().get(Calendar.MINUTE), context);
+
+            String line;
+            if (morningInfo.day.isEnabled()) {
+                String alarmTimeText = Localization.timeToString(morningInfo.day.getHour(), morningInfo.day.getMinute(), context);
+                line = res.getString(R.string.notification_check_week_line_set, dateText, alarmTimeText, meetingTimeText, morningInfo.event.getTitle());
+            } else {
+                line = res.getString(R.string.notification_check_week_line_unset, dateText, meetingTimeText, morningInfo.event.getTitle());
+            }
+
+            if (contentText == null) {
+                contentText = line;
+            } else {
+                bodyText.append("\n");
+            }
+            bodyText.append(line);
+        }
+
+        String contentTitle = res.getString(R.string.notification_check_week_title);
+
+        SystemNotification.createNotificationChannel(context);
+        NotificationCompat.Builder mBuilder = new NotificationCompat.Builder(context, SystemNotification.CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_alarm_white)
+                .setContentTitle(contentTitle)
+                .setContentText(contentText)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(bodyText.toString()).setBigContentTitle(contentTitle))
+                .setAutoCancel(true);
+
+        Intent intent = new Intent(context, AlarmMorningActivity.class);
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, REQUEST_CODE_WEEK, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        mBuilder.setContentIntent(pendingIntent);
+
+        NotificationManager mNotificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        mNotificationManager.notify(NOTIFICATION_ID_WEEK, mBuilder.build());
+    }
+
+    private void hideWeekNotification() {
+        MyLog.v("hideWeekNotification()");
+        NotificationManager mNotificationManager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        mNotificationManager.cancel(NOTIFICATION_ID_WEEK);
+
+        // Cancel the content intent too, so that isWeekNotificationVisible() returns false
+        PendingIntent pendingIntent = PendingIntent.getActivity(context, REQUEST_CODE_WEEK, new Intent(context, AlarmMorningActivity.class), PendingIntent.FLAG_NO_CREATE);
+        if (pendingIntent != null) {
+            pendingIntent.cancel();
         }
     }
 
+    private boolean isWeekNotificationVisible() {
+        Intent intent = new Intent(context, AlarmMorningActivity.class);
+        PendingIntent test = PendingIntent.getActivity(context, REQUEST_CODE_WEEK, intent, PendingIntent.FLAG_NO_CREATE);
+        return test != null;
+    }
+
     /**
      * Checks that the current time is after the check alarm time and before the following noon.
      *
@@ -529,7 +744,7 @@ public class CheckAlarmTime {
         mNotificationManager.cancel(NOTIFICATION_ID);
     }
 
-    void hideNotification() {
+    synchronized void hideNotification() {
         MyLog.d("Hide notification");
         unregisterNotificationDismiss();
         hideNotificationOnly();
@@ -607,11 +822,21 @@ public class CheckAlarmTime {
      * ======
      */
 
-    public void onAlarmSet() {
+    public synchronized void onAlarmSet() {
         MyLog.v("onAlarmSet()");
 
-        if (isBetweenCheckAlarmTimeAndAlarmTime()) {
-            MorningInfo morningInfo = new MorningInfo(context);
+        invalidateCache();
+
+        boolean betweenCheckAlarmTimeAndAlarmTime = isBetweenCheckAlarmTimeAndAlarmTime();
+
+        // An alarm in the week may have been moved before the appointment. During the day, a new notification is not shown, so the week is checked only if
+        // the notification may have to be hidden.
+        if (isWeekEnabled() && (betweenCheckAlarmTimeAndAlarmTime || isWeekNotificationVisible())) {
+            updateWeekNotification(betweenCheckAlarmTimeAndAlarmTime);
+        }
+
+        if (betweenCheckAlarmTimeAndAlarmTime) {
+            MorningInfo morningInfo = createMorningInfo();
 
             // If the alarm time was changed to a time long enough before the first meeting and notification exists, then hide the notification
             if (!morningInfo.attentionNeeded && isNotificationVisible()) {
@@ -653,6 +878,18 @@ class MorningInfo {
     MorningInfo() {  // The empty constructor is here for testing with Mockito
     }
 
+    /**
+     * Create the info for a morning whose earliest event is already known.
+     *
+     * @param context      Context
+     * @param morningStart Beginning of the morning
+     * @param event        The earliest event in the morning, or null if there is no event
+     */
+    MorningInfo(Context context, Calendar morningStart, CalendarEvent event) {
+        this.context = context;
+        init(morningStart, event);
+    }
+
     public void setContext(Context context) {
         this.context = context;
     }
@@ -677,14 +914,18 @@ class MorningInfo {
         // 2. There is an update of calendar events
 
         // Find first calendar event
-        GlobalManager globalManager = GlobalManager.getInstance();
-
         Calendar morningStart = CheckAlarmTime.calcMorningDate();
         MyLog.v("morningStart=" + morningStart.getTime());
 
         Calendar morningNoon = justBeforeNoonToday(morningStart); // Note: relative to morningStart
         MyLog.v("morningNoon=" + morningNoon.getTime());
 
+        init(morningStart, getEarliestEvent(morningStart, morningNoon));
+    }
+
+    private void init(Calendar morningStart, CalendarEvent event) {
+        GlobalManager globalManager = GlobalManager.getInstance();
+
         // Load tomorrow's alarm time
         day = globalManager.loadDay(morningStart);
         alarmTime = day.getDateTime();
@@ -698,7 +939,7 @@ class MorningInfo {
         analytics.setDay(day);
         analytics.set(Analytics.Param.Check_alarm_time_gap, checkAlarmTimeGap);
 
-        event = getEarliestEvent(morningStart, morningNoon);
+        this.event = event;
 
         if (event != null) {
             targetAlarmTime = (Calendar) event.getBegin().clone();
@@ -736,13 +977,7 @@ class MorningInfo {
             return null;
 
         CalendarHelper calendarHelper = new CalendarHelper(context);
-        CalendarEventFilter notAllDay = new CalendarEventFilter() {
-            @Override
-            public boolean match(CalendarEvent event) {
-                return !event.getAllDay();
-            }
-        };
-        return calendarHelper.find(tomorrowStart, tomorrowNoon, notAllDay);
+        return calendarHelper.find(tomorrowStart, tomorrowNoon, CalendarEventFilter.NOT_ALL_DAY);
     }
 
     @Override
@@ -0,0 +1,85 @@
+package cz.jaro.alarmmorning.checkalarmtime;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.MyLog;
+import cz.jaro.alarmmorning.calendar.CalendarEvent;
+import cz.jaro.alarmmorning.calendar.CalendarEventFilter;
+import cz.jaro.alarmmorning.calendar.CalendarHelper;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.onTheSameDate;
+
+/**
+ * WeekAhead is the result of the check of the mornings in the next {@link #DAYS} days.
+ * <p>
+ * The earliest events of all the mornings are found by one calendar query. Each morning is then evaluated the same way as the next morning (see {@link
+ * MorningInfo}).
+ */
+class WeekAhead {
+
+    /**
+     * Number of checked mornings.
+     */
+    static final int DAYS = 7;
+
+    private final Calendar firstMorning;
+    private final int checkAlarmTimeGap;
+
+    private final MorningInfo[] mornings = new MorningInfo[DAYS];
+
+    /**
+     * @param context      Context
+     * @param firstMorning Beginning of the first checked morning, see {@link CheckAlarmTime#calcMorningDate()}
+     * @param events       The earliest event in each morning (see {@link CalendarHelper#findEarliestPerMorning(Calendar, int, CalendarEventFilter)}), or
+     *                     null if the calendar cannot be read
+     */
+    WeekAhead(Context context, Calendar firstMorning, CalendarEvent[] events) {
+        this.firstMorning = firstMorning;
+
+        for (int i = 0; i < DAYS; i++) {
+            mornings[i] = new MorningInfo(context, addDaysClone(firstMorning, i), events != null ? events[i] : null);
+        }
+        checkAlarmTimeGap = mornings[0].checkAlarmTimeGap;
+
+        MyLog.d("Checked " + DAYS + " mornings, attention needed in " + getAttentionNeeded().size());
+    }
+
+    /**
+     * Check whether the result can be used.
+     *
+     * @param morningStart      Beginning of the next morning
+     * @param checkAlarmTimeGap Current gap
+     * @return true if the result was computed for the same morning and gap
+     */
+    boolean isValid(Calendar morningStart, int checkAlarmTimeGap) {
+        return onTheSameDate(firstMorning, morningStart) && this.checkAlarmTimeGap == checkAlarmTimeGap;
+    }
+
+    /**
+     * @return the info about the next morning
+     */
+    MorningInfo getFirstMorning() {
+        return mornings[0];
+    }
+
+    /**
+     * Return the mornings (except the next one) in which the alarm is too late.
+     *
+     * @return the mornings sorted by date
+     */
+    List<MorningInfo> getAttentionNeeded() {
+        List<MorningInfo> result = new ArrayList<>();
+        for (int i = 1; i < DAYS; i++) {
+            if (mornings[i].attentionNeeded) {
+                result.add(mornings[i]);
+            }
+        }
+        return result;
+    }
+
+}
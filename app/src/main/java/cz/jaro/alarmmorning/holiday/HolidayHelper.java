@@ -3,24 +3,21 @@ package cz.jaro.alarmmorning.holiday;
 import android.content.Context;
 import android.content.res.Resources;
 
-import org.joda.time.LocalDate;
-
 import java.text.Collator;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import cz.jaro.alarmmorning.AlarmMorningApplication;
 import cz.jaro.alarmmorning.GlobalManager;
 import cz.jaro.alarmmorning.MyLog;
 import cz.jaro.alarmmorning.R;
 import cz.jaro.alarmmorning.SettingsActivity;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
+import cz.jaro.alarmmorning.model.StoredHolidays;
 import de.galgtonold.jollydayandroid.CalendarHierarchy;
 import de.galgtonold.jollydayandroid.Holiday;
 import de.galgtonold.jollydayandroid.HolidayCalendar;
@@ -40,14 +37,29 @@ public class HolidayHelper {
 
     public static final String STRING_PATH_SEPARATOR = " – ";
 
+    /**
+     * Number of years (starting with the current year) that are stored in the holiday table.
+     */
+    static final int HOLIDAY_TABLE_YEARS = 2;
+
     private static HolidayHelper instance;
     private final Context context;
 
+    /**
+     * The cached path identifier of the region used to determine holidays. Null if not loaded yet.
+     */
+    private String cachedPath;
+
+    /**
+     * The cached calendars, by the path identifier of a region.
+     */
+    private final Map<String, RegionCalendar> cachedCalendars = new HashMap<>();
+
     private HolidayHelper() {
         context = AlarmMorningApplication.getAppContext();
     }
 
-    public static HolidayHelper getInstance() {
+    public static synchronized HolidayHelper getInstance() {
         if (instance == null) {
             instance = new HolidayHelper();
         }
@@ -60,20 +72,13 @@ public class HolidayHelper {
      * @return true if the user enabled holidays
      */
     public boolean useHoliday() {
-        GlobalManager globalManager = GlobalManager.getInstance();
-        return useHoliday(globalManager.loadHoliday());
+        return useHoliday(getCachedPath());
     }
 
     public boolean useHoliday(String value) {
         return !value.equals(SettingsActivity.PREF_HOLIDAY_NONE);
     }
 
-    private HolidayCalendar getHolidayCalendar() {
-        GlobalManager globalManager = GlobalManager.getInstance();
-        String holidayPreference = globalManager.loadHoliday();
-        return getHolidayCalendar(holidayPreference);
-    }
-
     private HolidayCalendar getHolidayCalendar(String path) {
         if (useHoliday(path)) {
             String[] ids = path.split("\\.");
@@ -117,7 +122,7 @@ public class HolidayHelper {
     }
 
     /**
-     * Get list of {@link Holiday}s for the <code>path</code>, between <code>from</code> and <code>to</code> (including), sorted by date.
+     * Get list of {@link Holiday}s for the <code>path</code>, between <code>from</code> (including) and <code>to</code> (excluding), sorted by date.
      *
      * @param path Path identifier of a region
      * @param from Lower end of range range
@@ -125,50 +130,12 @@ public class HolidayHelper {
      * @return List of {@link Holiday}s.
      */
     public List<Holiday> listHolidays(String path, Calendar from, Calendar to) {
-        HolidayCalendar holidayCalendar = HolidayHelper.getInstance().getHolidayCalendar(path);
-
-        return listHolidays(holidayCalendar, path, from, to);
-    }
-
-    /**
-     * Get list of {@link Holiday}s, between <code>from</code> and <code>to</code> (including), sorted by date.
-     *
-     * @param holidayCalendar HolidayCalendar to use
-     * @param path            Path identifier of a region
-     * @param from            Lower end of range range
-     * @param to              Upper range of date range
-     * @return List of {@link Holiday}s.
-     */
-    private List<Holiday> listHolidays(HolidayCalendar holidayCalendar, String path, Calendar from, Calendar to) {
-        HolidayManager holidayManager = HolidayManager.getInstance(holidayCalendar);
-
-        String[] ids = path.split("\\.");
-        String[] subRegions = Arrays.copyOfRange(ids, 1, ids.length);
-
-        // Add all the holidays the years that include the range
-        Set<Holiday> holidays = new HashSet<>();
-        for (int y = from.get(Calendar.YEAR); y <= to.get(Calendar.YEAR); y++) {
-            Set<Holiday> holidaysY;
-            holidaysY = holidayManager.getHolidays(y, subRegions);
-            holidays.addAll(holidaysY);
-        }
-
-        // Filter: keep only holidays in the range
-        Iterator<Holiday> it = holidays.iterator();
-        while (it.hasNext()) {
-            Holiday h = it.next();
-
-            if (h.getDate().toDate().before(from.getTime()) || !h.getDate().toDate().before(to.getTime())) {
-                it.remove();
-            }
+        RegionCalendar regionCalendar = getRegionCalendar(path);
+        if (regionCalendar != null) {
+            return regionCalendar.listHolidays(from, to);
+        } else {
+            return new ArrayList<>();
         }
-
-        // Sort
-        List<Holiday> orderedHolidays = new ArrayList<>(holidays);
-        Collections.sort(orderedHolidays,
-                (lhs, rhs) -> lhs.getDate().compareTo(rhs.getDate()));
-
-        return orderedHolidays;
     }
 
     /**
@@ -223,37 +190,18 @@ public class HolidayHelper {
      * @throws IllegalStateException if it's not holiday on the date
      */
     public String getHolidayDescription(Calendar date) {
-        if (useHoliday()) {
-            HolidayCalendar holidayCalendar = HolidayHelper.getInstance().getHolidayCalendar();
-            HolidayManager holidayManager = HolidayManager.getInstance(holidayCalendar);
-
-            int year = date.get(Calendar.YEAR);
-            Set<Holiday> holidays = holidayManager.getHolidays(year);
-            for (Holiday h : holidays) {
-                if (compareDates(date, h.getDate())) {
-                    return h.getDescription();
-                }
+        RegionCalendar regionCalendar = getRegionCalendar(getCachedPath());
+        if (regionCalendar != null) {
+            String description = regionCalendar.getHolidayDescription(date);
+            if (description == null) {
+                throw new IllegalStateException("Cannot find holiday for date " + date);
             }
-            throw new IllegalStateException("Cannot find holiday for date " + date);
+            return description;
         } else {
             return null;
         }
     }
 
-    private boolean compareDates(Calendar date1, LocalDate date2) {
-        int year1 = date1.get(Calendar.YEAR);
-        int month1 = date1.get(Calendar.MONTH) + 1;
-        int day1 = date1.get(Calendar.DAY_OF_MONTH);
-
-        int year2 = date2.getYear();
-        int month2 = date2.getMonthOfYear();
-        int day2 = date2.getDayOfMonth();
-
-        return year1 == year2
-                && month1 == month2
-                && day1 == day2;
-    }
-
     /**
      * Check if the date is a holiday.
      *
@@ -261,14 +209,123 @@ public class HolidayHelper {
      * @return true if it's holiday on the date
      */
     public boolean isHoliday(Calendar date) {
-        if (useHoliday()) {
-            HolidayCalendar holidayCalendar = HolidayHelper.getInstance().getHolidayCalendar();
-            HolidayManager holidayManager = HolidayManager.getInstance(holidayCalendar);
+        RegionCalendar regionCalendar = getRegionCalendar(getCachedPath());
+        return regionCalendar != null && regionCalendar.isHoliday(date);
+    }
 
-            return holidayManager.isHoliday(date);
-        } else {
-            return false;
+    /**
+     * Forget the cached region and holidays. Must be called whenever the region used to determine holidays changes.
+     */
+    public synchronized void invalidate() {
+        MyLog.v("invalidate()");
+        cachedPath = null;
+        cachedCalendars.clear();
+    }
+
+    /**
+     * Return the path identifier of the region used to determine holidays.
+     * <p>
+     * The path is used as is, without checking that the path exists (which loads jollyday). The check is done when the holiday table is updated.
+     */
+    private synchronized String getCachedPath() {
+        if (cachedPath == null) {
+            String path = loadHolidayPreference();
+            if (useHoliday(path) && !isHolidayTableStored(path, currentYear())) {
+                // The table is filled on the start (and after the database upgrade), so this happens only until the table is filled
+                MyLog.w("The holiday table is not stored for " + path);
+                GlobalManager globalManager = GlobalManager.getInstance();
+                globalManager.updateHolidayTableInBackground();
+            }
+            cachedPath = path;
+        }
+        return cachedPath;
+    }
+
+    private static String loadHolidayPreference() {
+        return (String) SharedPreferencesHelper.load(SettingsActivity.PREF_HOLIDAY, SettingsActivity.PREF_HOLIDAY_DEFAULT);
+    }
+
+    private static int currentYear() {
+        GlobalManager globalManager = GlobalManager.getInstance();
+        return globalManager.clock().now().get(Calendar.YEAR);
+    }
+
+    private static boolean isHolidayTableStored(String path, int year) {
+        GlobalManager globalManager = GlobalManager.getInstance();
+        return globalManager.loadStoredHolidays(path, year) != null;
+    }
+
+    /**
+     * Store the holidays of the region used to determine holidays to the holiday table. The table covers the current year and the following years (in total
+     * {@link #HOLIDAY_TABLE_YEARS} years). Does nothing if the table is up to date.
+     * <p>
+     * This method loads jollyday, which is slow. Therefore it should be called in the background (see {@link GlobalManager#updateHolidayTableInBackground()})
+     * or in a stage of the startup pipeline.
+     * <p>
+     * If the region path does not exist anymore, then the first existing super-region is saved as the region used to determine holidays, so that the table
+     * is not updated again and again.
+     *
+     * @return true if the holidays were stored (and the holidays of the region may have changed)
+     */
+    public boolean updateHolidayTable() {
+        MyLog.v("updateHolidayTable()");
+
+        int year = currentYear();
+
+        String path = loadHolidayPreference();
+        if (useHoliday(path)) {
+            boolean upToDate = true;
+            for (int y = year; y < year + HOLIDAY_TABLE_YEARS; y++) {
+                upToDate &= isHolidayTableStored(path, y);
+            }
+            if (upToDate) {
+                return false;
+            }
+        }
+
+        GlobalManager globalManager = GlobalManager.getInstance();
+        String existingPath = globalManager.loadHoliday();
+        if (!existingPath.equals(path)) {
+            MyLog.w("The region " + path + " does not exist, using " + existingPath);
+            SharedPreferencesHelper.save(SettingsActivity.PREF_HOLIDAY, existingPath);
+            path = existingPath;
+        }
+
+        List<StoredHolidays> storedHolidaysList = new ArrayList<>();
+        RegionCalendar regionCalendar = getRegionCalendar(path);
+        if (regionCalendar != null) {
+            for (int y = year; y < year + HOLIDAY_TABLE_YEARS; y++) {
+                HolidayYear holidayYear = regionCalendar.computeYear(y);
+                storedHolidaysList.add(holidayYear.toStoredHolidays(path, y));
+            }
+        }
+
+        globalManager.saveHolidayTable(storedHolidaysList);
+
+        // Use the checked path and the stored holidays
+        invalidate();
+
+        // Without holidays, the table is not used
+        return !storedHolidaysList.isEmpty();
+    }
+
+    /**
+     * Return the calendar of holidays in a region. The calendar is created on the first use and cached.
+     *
+     * @param path Path identifier of a region
+     * @return the calendar of the region, or null if the path means no holidays
+     */
+    private synchronized RegionCalendar getRegionCalendar(String path) {
+        if (!useHoliday(path)) {
+            return null;
+        }
+
+        RegionCalendar regionCalendar = cachedCalendars.get(path);
+        if (regionCalendar == null) {
+            regionCalendar = new RegionCalendar(getHolidayCalendar(path), path);
+            cachedCalendars.put(path, regionCalendar);
         }
+        return regionCalendar;
     }
 
     /**
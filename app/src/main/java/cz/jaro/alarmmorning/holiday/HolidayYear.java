@@ -0,0 +1,96 @@
+package cz.jaro.alarmmorning.holiday;
+
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+
+import cz.jaro.alarmmorning.model.StoredHolidays;
+import de.galgtonold.jollydayandroid.Holiday;
+
+/**
+ * HolidayYear represents the holidays in one year. The holidays are kept as a bitset of days of year and an array of names indexed by the day of year, so
+ * that both checking a date and getting the name are lookups.
+ */
+class HolidayYear {
+
+    private static final int MAX_DAY_OF_YEAR = 366;
+
+    /**
+     * The days of year that are holidays.
+     */
+    private final BitSet days;
+
+    /**
+     * The names of holidays, indexed by the day of year. The item is null if it's not holiday on the day.
+     */
+    private final String[] descriptions = new String[MAX_DAY_OF_YEAR + 1];
+
+    /**
+     * Create the object from the holidays computed by jollyday.
+     *
+     * @param holidays holidays in the year
+     */
+    HolidayYear(Collection<Holiday> holidays) {
+        days = new BitSet(MAX_DAY_OF_YEAR + 1);
+        for (Holiday h : holidays) {
+            int dayOfYear = h.getDate().getDayOfYear();
+            days.set(dayOfYear);
+            if (descriptions[dayOfYear] == null) {
+                descriptions[dayOfYear] = h.getDescription();
+            }
+        }
+    }
+
+    /**
+     * Create the object from the holidays stored in the database.
+     *
+     * @param storedHolidays stored holidays
+     */
+    HolidayYear(StoredHolidays storedHolidays) {
+        days = BitSet.valueOf(storedHolidays.getDays());
+
+        // The stored names are ordered by day of year (one name per day)
+        if (!days.isEmpty()) {
+            String[] storedDescriptions = storedHolidays.getDescriptions().split(StoredHolidays.DESCRIPTION_SEPARATOR, -1);
+            int i = 0;
+            for (int dayOfYear = days.nextSetBit(0); dayOfYear >= 0; dayOfYear = days.nextSetBit(dayOfYear + 1)) {
+                descriptions[dayOfYear] = storedDescriptions[i++];
+            }
+        }
+    }
+
+    /**
+     * Convert the object to the form that is stored in the database.
+     *
+     * @param path path identifier of a region
+     * @param year year
+     * @return object to be stored
+     */
+    StoredHolidays toStoredHolidays(String path, int year) {
+        StoredHolidays storedHolidays = new StoredHolidays();
+        storedHolidays.setPath(path);
+        storedHolidays.setYear(year);
+        storedHolidays.setDays(days.toByteArray());
+
+        List<String> storedDescriptions = new ArrayList<>(days.cardinality());
+        for (int dayOfYear = days.nextSetBit(0); dayOfYear >= 0; dayOfYear = days.nextSetBit(dayOfYear + 1)) {
+            storedDescriptions.add(descriptions[dayOfYear]);
+        }
+        storedHolidays.setDescriptions(TextUtils.join(StoredHolidays.DESCRIPTION_SEPARATOR, storedDescriptions));
+        return storedHolidays;
+    }
+
+    boolean isHoliday(int dayOfYear) {
+        return days.get(dayOfYear);
+    }
+
+    /**
+     * @return the holiday name, or null if it's not holiday on the day
+     */
+    String getDescription(int dayOfYear) {
+        return descriptions[dayOfYear];
+    }
+}
@@ -0,0 +1,136 @@
+package cz.jaro.alarmmorning.holiday;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.MyLog;
+import cz.jaro.alarmmorning.model.StoredHolidays;
+import de.galgtonold.jollydayandroid.Holiday;
+import de.galgtonold.jollydayandroid.HolidayCalendar;
+import de.galgtonold.jollydayandroid.HolidayManager;
+
+/**
+ * RegionCalendar represents the holidays in a region identified by a full path (including the subregions, e.g. "DE.by").
+ * <p>
+ * The holidays of a year are kept as a bitset of days of year. Therefore checking a date is a lookup. The holidays of a year are taken from the holiday table
+ * in the database; only the years that the table doesn't cover are computed by jollyday (with the subregions applied). Jollyday parses its configuration on
+ * the first use, which is slow. Therefore it is loaded only when needed.
+ */
+class RegionCalendar {
+
+    private final String path;
+    private final HolidayCalendar holidayCalendar;
+    private final String[] subRegions;
+
+    private HolidayManager holidayManager;
+
+    private final Map<Integer, HolidayYear> years = new HashMap<>();
+
+    RegionCalendar(HolidayCalendar holidayCalendar, String path) {
+        this.path = path;
+        this.holidayCalendar = holidayCalendar;
+
+        String[] ids = path.split("\\.");
+        subRegions = Arrays.copyOfRange(ids, 1, ids.length);
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    private synchronized HolidayManager getHolidayManager() {
+        if (holidayManager == null) {
+            holidayManager = HolidayManager.getInstance(holidayCalendar);
+        }
+        return holidayManager;
+    }
+
+    private synchronized HolidayYear getYear(int year) {
+        HolidayYear holidayYear = years.get(year);
+        if (holidayYear == null) {
+            GlobalManager globalManager = GlobalManager.getInstance();
+            StoredHolidays storedHolidays = globalManager.loadStoredHolidays(path, year);
+            if (storedHolidays != null) {
+                holidayYear = new HolidayYear(storedHolidays);
+            } else {
+                int currentYear = globalManager.clock().now().get(Calendar.YEAR);
+                if (currentYear <= year && year < currentYear + HolidayHelper.HOLIDAY_TABLE_YEARS) {
+                    // The holiday table is not filled yet (e.g. after the year rolled over). Jollyday is not loaded, as this may be on the path of ringing.
+                    // The year is not cached, so that it's taken from the table as soon as the table is filled.
+                    MyLog.w("The holidays of " + path + " in " + year + " are not stored");
+                    globalManager.updateHolidayTableInBackground();
+                    return new HolidayYear(Collections.<Holiday>emptyList());
+                }
+
+                // The holiday table does not cover the year
+                holidayYear = computeYear(year);
+            }
+            years.put(year, holidayYear);
+        }
+        return holidayYear;
+    }
+
+    /**
+     * Compute the holidays in a year by jollyday.
+     *
+     * @param year year
+     * @return holidays in the year
+     */
+    HolidayYear computeYear(int year) {
+        return new HolidayYear(getHolidayManager().getHolidays(year, subRegions));
+    }
+
+    /**
+     * Check if the date is a holiday.
+     *
+     * @param date Date
+     * @return true if it's holiday on the date
+     */
+    boolean isHoliday(Calendar date) {
+        return getYear(date.get(Calendar.YEAR)).isHoliday(date.get(Calendar.DAY_OF_YEAR));
+    }
+
+    /**
+     * Return a holiday name.
+     *
+     * @param date Date
+     * @return holiday name, or null if it's not holiday on the date
+     */
+    String getHolidayDescription(Calendar date) {
+        return getYear(date.get(Calendar.YEAR)).getDescription(date.get(Calendar.DAY_OF_YEAR));
+    }
+
+    /**
+     * Get list of {@link Holiday}s, between <code>from</code> (including) and <code>to</code> (excluding), sorted by date.
+     * <p>
+     * Note: the {@link Holiday} objects are always created by jollyday.
+     *
+     * @param from Lower end of range range
+     * @param to   Upper range of date range
+     * @return List of {@link Holiday}s.
+     */
+    List<Holiday> listHolidays(Calendar from, Calendar to) {
+        List<Holiday> holidays = new ArrayList<>();
+
+        for (int y = from.get(Calendar.YEAR); y <= to.get(Calendar.YEAR); y++) {
+            for (Holiday h : getHolidayManager().getHolidays(y, subRegions)) {
+                // Filter: keep only holidays in the range
+                if (!h.getDate().toDate().before(from.getTime()) && h.getDate().toDate().before(to.getTime())) {
+                    holidays.add(h);
+                }
+            }
+        }
+
+        // Sort
+        Collections.sort(holidays, (lhs, rhs) -> lhs.getDate().compareTo(rhs.getDate()));
+
+        return holidays;
+    }
+
+}
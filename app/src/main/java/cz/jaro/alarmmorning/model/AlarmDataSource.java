@@ -5,17 +5,18 @@ import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteStatement;
+import android.text.TextUtils;
+
+import androidx.annotation.VisibleForTesting;
 
-import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
 
-import cz.jaro.alarmmorning.MyLog;
 import cz.jaro.alarmmorning.calendar.CalendarUtils;
 
 /**
@@ -23,7 +24,7 @@ import cz.jaro.alarmmorning.calendar.CalendarUtils;
  */
 public class AlarmDataSource {
 
-    private final SimpleDateFormat iso8601Format = new SimpleDateFormat("yyyy-MM-dd", Locale.US);
+    private final SimpleDateFormat iso8601Format = new SimpleDateFormat("yyyy-MM-dd", Locale.US); // Used only in the database dump
 
     private SQLiteDatabase database;
     private final AlarmDbHelper dbHelper;
@@ -32,9 +33,45 @@ public class AlarmDataSource {
     private static final String[] allColumnsDefaults = {AlarmDbHelper.COLUMN_DEFAULTS_ID, AlarmDbHelper.COLUMN_DEFAULTS_DAY_OF_WEEK, AlarmDbHelper.COLUMN_DEFAULTS_STATE, AlarmDbHelper.COLUMN_DEFAULTS_HOUR, AlarmDbHelper.COLUMN_DEFAULTS_MINUTE};
     private static final String[] allColumnsDay = {AlarmDbHelper.COLUMN_DAY_ID, AlarmDbHelper.COLUMN_DAY_DATE, AlarmDbHelper.COLUMN_DAY_STATE, AlarmDbHelper.COLUMN_DAY_HOUR, AlarmDbHelper.COLUMN_DAY_MINUTE};
     private static final String[] allColumnsOneTimeAlarm = {AlarmDbHelper.COLUMN_ONETIMEALARM_ID, AlarmDbHelper.COLUMN_ONETIMEALARM_ALARM_TIME, AlarmDbHelper.COLUMN_ONETIMEALARM_NAME};
+    private static final String[] allColumnsDismissedAlarm = {AlarmDbHelper.COLUMN_DISMISSEDALARM_ID, AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TYPE, AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_ID, AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME};
+    private static final String[] allColumnsHoliday = {AlarmDbHelper.COLUMN_HOLIDAY_ID, AlarmDbHelper.COLUMN_HOLIDAY_PATH, AlarmDbHelper.COLUMN_HOLIDAY_YEAR, AlarmDbHelper.COLUMN_HOLIDAY_DAYS, AlarmDbHelper.COLUMN_HOLIDAY_DESCRIPTIONS};
 
     public static final int[] allDaysOfWeek = new int[]{Calendar.SUNDAY, Calendar.MONDAY, Calendar.TUESDAY, Calendar.WEDNESDAY, Calendar.THURSDAY, Calendar.FRIDAY, Calendar.SATURDAY};
 
+    // Statements of the frequent queries. The SQL text is constant and the values are bound, so that SQLite compiles each statement only once (and then
+    // reuses it from the statement cache of the connection).
+    private static final String SQL_SELECT_DEFAULTS = "SELECT " + TextUtils.join(", ", allColumnsDefaults) + " FROM " + AlarmDbHelper.TABLE_DEFAULTS;
+    private static final String SQL_SELECT_DAY_BY_DATE = "SELECT " + TextUtils.join(", ", allColumnsDay) + " FROM " + AlarmDbHelper.TABLE_DAY +
+            " WHERE " + AlarmDbHelper.COLUMN_DAY_DATE + " = ?";
+    private static final String SQL_SELECT_ONETIMEALARM_BY_ID = "SELECT " + TextUtils.join(", ", allColumnsOneTimeAlarm) + " FROM " + AlarmDbHelper.TABLE_ONETIMEALARM +
+            " WHERE " + AlarmDbHelper.COLUMN_ONETIMEALARM_ID + " = ?";
+    private static final String SQL_INSERT_DAY = "INSERT OR REPLACE INTO " + AlarmDbHelper.TABLE_DAY + "(" +
+            AlarmDbHelper.COLUMN_DAY_DATE + ", " + AlarmDbHelper.COLUMN_DAY_STATE + ", " + AlarmDbHelper.COLUMN_DAY_HOUR + ", " + AlarmDbHelper.COLUMN_DAY_MINUTE +
+            ") VALUES (?, ?, ?, ?)";
+    private static final String SQL_SELECT_HOLIDAY_BY_PATH_YEAR = "SELECT " + TextUtils.join(", ", allColumnsHoliday) + " FROM " + AlarmDbHelper.TABLE_HOLIDAY +
+            " WHERE " + AlarmDbHelper.COLUMN_HOLIDAY_PATH + " = ? AND " + AlarmDbHelper.COLUMN_HOLIDAY_YEAR + " = ?";
+    private static final String SQL_SELECT_DISMISSEDALARM_EXISTS = "SELECT 1 FROM " + AlarmDbHelper.TABLE_DISMISSEDALARM +
+            " WHERE " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TYPE + " = ? AND " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_ID + " = ? LIMIT 1";
+
+    /**
+     * Pre-compiled statement for {@link #saveDay(Day)}. Compiled when the database is opened and kept until the database is closed.
+     */
+    private SQLiteStatement saveDayStatement;
+
+    /**
+     * The number of queries executed on the database. Used by tests to check the number of round trips to the database.
+     */
+    @VisibleForTesting
+    int queryCount;
+
+    /**
+     * Snapshot of the {@code Defaults} table, indexed by the day of week. The table always has exactly 7 rows, so it is read once and then kept in memory.
+     * <p>
+     * The array and its objects are never modified after they are published. A change of the table publishes a new array (see {@link
+     * #reloadDefaultsSnapshot()}). Therefore the snapshot can be read from several threads without locking. The readers get clones of the objects.
+     */
+    private volatile Defaults[] defaultsSnapshot;
+
     /**
      * Initialize the object.
      *
@@ -51,6 +88,17 @@ public class AlarmDataSource {
      */
     public void open() throws SQLiteException {
         database = dbHelper.getWritableDatabase();
+
+        saveDayStatement = database.compileStatement(SQL_INSERT_DAY);
+    }
+
+    /**
+     * Check whether the holiday table was created (and is therefore empty) when the database was opened.
+     *
+     * @return true if the holiday table must be filled
+     */
+    public boolean isHolidayTableCreated() {
+        return dbHelper.isHolidayTableCreated();
     }
 
     /**
@@ -59,23 +107,105 @@ public class AlarmDataSource {
      * Note: The database should be never closed. Source: https://nfrolov.wordpress.com/2014/08/16/android-sqlitedatabase-locking-and-multi-threading/
      */
     public void close() {
+        if (saveDayStatement != null) {
+            saveDayStatement.close();
+            saveDayStatement = null;
+        }
+
         dbHelper.close();
     }
 
     /**
-     * Retrieve a {@code Defaults} object from the database.
+     * Begin a transaction. The transactions may be nested.
+     */
+    public void beginTransaction() {
+        database.beginTransaction();
+    }
+
+    /**
+     * End a transaction. The changes are committed only if all the nested transactions were successful, otherwise the changes are rolled back.
+     *
+     * @param successful true if the changes in the transaction should be committed
+     */
+    public void endTransaction(boolean successful) {
+        if (successful) {
+            database.setTransactionSuccessful();
+        }
+        database.endTransaction();
+
+        if (!successful) {
+            // The snapshot may contain rolled back changes
+            reloadDefaultsSnapshot();
+        }
+    }
+
+    /**
+     * Retrieve a {@code Defaults} object.
+     * <p>
+     * The object is retrieved from the in-memory snapshot of the database, see {@link #defaultsSnapshot}.
      *
      * @param dayOfWeek identifier of the object
      * @return The retrieved object
      */
     public Defaults loadDefault(int dayOfWeek) {
-        Cursor cursor = database.query(AlarmDbHelper.TABLE_DEFAULTS, allColumnsDefaults, AlarmDbHelper.COLUMN_DEFAULTS_DAY_OF_WEEK + " = " + dayOfWeek, null, null, null, null);
+        Defaults[] snapshot = getDefaultsSnapshot();
         // there always is a row (because it was created when the database was created)
-        cursor.moveToFirst();
-        Defaults defaults = cursorToDefaults(cursor);
+        return snapshot[dayOfWeek].clone();
+    }
+
+    /**
+     * Retrieve all the {@code Defaults} objects.
+     *
+     * @return The retrieved objects. The array is indexed by the day of week (as in {@link Calendar#DAY_OF_WEEK}).
+     */
+    public Defaults[] loadDefaults() {
+        Defaults[] snapshot = getDefaultsSnapshot();
+
+        Defaults[] defaultsArray = new Defaults[snapshot.length];
+        for (int dayOfWeek : allDaysOfWeek) {
+            defaultsArray[dayOfWeek] = snapshot[dayOfWeek].clone();
+        }
+
+        return defaultsArray;
+    }
+
+    private Defaults[] getDefaultsSnapshot() {
+        Defaults[] snapshot = defaultsSnapshot;
+        if (snapshot == null) {
+            snapshot = reloadDefaultsSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Read the {@code Defaults} table and publish it as the new {@link #defaultsSnapshot}.
+     * <p>
+     * Must be called after each change of the table.
+     *
+     * @return The published snapshot
+     */
+    private synchronized Defaults[] reloadDefaultsSnapshot() {
+        Defaults[] snapshot = queryDefaults();
+        defaultsSnapshot = snapshot;
+        return snapshot;
+    }
+
+    /**
+     * Retrieve all the {@code Defaults} objects from the database.
+     *
+     * @return The retrieved objects. The array is indexed by the day of week (as in {@link Calendar#DAY_OF_WEEK}).
+     */
+    private Defaults[] queryDefaults() {
+        Defaults[] defaultsArray = new Defaults[Calendar.SATURDAY + 1];
+
+        Cursor cursor = rawQuery(SQL_SELECT_DEFAULTS, null);
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            Defaults defaults = cursorToDefaults(cursor);
+            defaultsArray[defaults.getDayOfWeek()] = defaults;
+        }
         cursor.close();
 
-        return defaults;
+        return defaultsArray;
     }
 
     /**
@@ -83,7 +213,7 @@ public class AlarmDataSource {
      *
      * @param defaults object to be stored
      */
-    public void saveDefault(Defaults defaults) {
+    public synchronized void saveDefault(Defaults defaults) {
         ContentValues values = new ContentValues();
         values.put(AlarmDbHelper.COLUMN_DEFAULTS_DAY_OF_WEEK, defaults.getDayOfWeek());//
         values.put(AlarmDbHelper.COLUMN_DEFAULTS_STATE, defaults.getState());
@@ -91,6 +221,8 @@ public class AlarmDataSource {
         values.put(AlarmDbHelper.COLUMN_DEFAULTS_MINUTE, defaults.getMinute());
 
         database.insertWithOnConflict(AlarmDbHelper.TABLE_DEFAULTS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+        reloadDefaultsSnapshot();
     }
 
     /**
@@ -104,11 +236,7 @@ public class AlarmDataSource {
         Day day = loadDayShallow(date);
 
         if (day == null) {
-            day = new Day();
-            day.setDate(CalendarUtils.beginningOfToday(date));
-            day.setState(Day.STATE_RULE);
-            day.setHourDay(Day.VALUE_UNSET);
-            day.setMinuteDay(Day.VALUE_UNSET);
+            day = newRuleDay(date);
         }
 
         int dayOfWeek = date.get(Calendar.DAY_OF_WEEK);
@@ -118,6 +246,86 @@ public class AlarmDataSource {
         return day;
     }
 
+    /**
+     * Retrieve the {@code Day} objects for all the dates in a range, together with the {@link Day#defaults} referenced objects.
+     * <p>
+     * All the stored Days in the range are retrieved by one query and the Defaults by another query. The dates without a stored Day get a Day with the {@link
+     * Day#STATE_RULE} state (the same as {@link #loadDay(Calendar)} returns).
+     *
+     * @param from the first date of the range (including); the time of day is ignored
+     * @param to   the last date of the range (excluding); the time of day is ignored
+     * @return The list of retrieved objects, ordered by date
+     */
+    @SuppressWarnings("JavadocReference")
+    public List<Day> loadDays(Calendar from, Calendar to) {
+        Calendar beginning = CalendarUtils.beginningOfToday(from);
+        Calendar end = CalendarUtils.beginningOfToday(to);
+
+        List<Day> days = new ArrayList<>();
+
+        if (!beginning.before(end))
+            return days;
+
+        List<Day> storedDays = loadDaysShallow(beginning, end);
+        Defaults[] defaultsArray = loadDefaults();
+
+        int storedIndex = 0;
+        for (Calendar date = beginning; date.before(end); date = CalendarUtils.addDaysClone(date, 1)) {
+            Day day;
+            if (storedIndex < storedDays.size() && CalendarUtils.onTheSameDate(storedDays.get(storedIndex).getDate(), date)) {
+                day = storedDays.get(storedIndex);
+                storedIndex++;
+            } else {
+                day = newRuleDay(date);
+            }
+
+            int dayOfWeek = date.get(Calendar.DAY_OF_WEEK);
+            day.setDefaults(defaultsArray[dayOfWeek]);
+
+            days.add(day);
+        }
+
+        return days;
+    }
+
+    /**
+     * Retrieve the {@code Day} objects stored in the database for the dates in a range, together with the {@link Day#defaults} referenced objects.
+     * <p>
+     * Unlike {@link #loadDays(Calendar, Calendar)}, the dates without a stored Day are skipped.
+     *
+     * @param from the first date of the range (including); the time of day is ignored
+     * @param to   the last date of the range (excluding); the time of day is ignored
+     * @return The list of retrieved objects, ordered by date
+     */
+    @SuppressWarnings("JavadocReference")
+    public List<Day> loadStoredDays(Calendar from, Calendar to) {
+        List<Day> days = loadDaysShallow(CalendarUtils.beginningOfToday(from), CalendarUtils.beginningOfToday(to));
+        Defaults[] defaultsArray = loadDefaults();
+
+        for (Day day : days) {
+            int dayOfWeek = day.getDate().get(Calendar.DAY_OF_WEEK);
+            day.setDefaults(defaultsArray[dayOfWeek]);
+        }
+
+        return days;
+    }
+
+    /**
+     * Create a {@code Day} object that is not stored in the database. Such an object uses the {@link Day#defaults} referenced object.
+     *
+     * @param date date of the object
+     * @return The new object
+     */
+    @SuppressWarnings("JavadocReference")
+    private Day newRuleDay(Calendar date) {
+        Day day = new Day();
+        day.setDate(CalendarUtils.beginningOfToday(date));
+        day.setState(Day.STATE_RULE);
+        day.setHourDay(Day.VALUE_UNSET);
+        day.setMinuteDay(Day.VALUE_UNSET);
+        return day;
+    }
+
     /**
      * Retrieve a {@code Day} object from the database.
      *
@@ -127,9 +335,9 @@ public class AlarmDataSource {
     private Day loadDayShallow(Calendar date) {
         Day day;
 
-        String dateText = dateToText(date);
+        long epochDay = CalendarUtils.toEpochDay(date);
 
-        Cursor cursor = database.query(AlarmDbHelper.TABLE_DAY, allColumnsDay, AlarmDbHelper.COLUMN_DAY_DATE + " = \"" + dateText + "\"", null, null, null, null);
+        Cursor cursor = rawQuery(SQL_SELECT_DAY_BY_DATE, new String[]{String.valueOf(epochDay)});
         if (cursor.getCount() == 0) {
             day = null;
         } else {
@@ -141,6 +349,29 @@ public class AlarmDataSource {
         return day;
     }
 
+    /**
+     * Retrieve the {@code Day} objects stored in the database for the dates in a range.
+     *
+     * @param from the first date of the range (including)
+     * @param to   the last date of the range (excluding)
+     * @return The list of retrieved objects, ordered by date
+     */
+    private List<Day> loadDaysShallow(Calendar from, Calendar to) {
+        List<Day> days = new ArrayList<>();
+
+        String selection = "? <= " + AlarmDbHelper.COLUMN_DAY_DATE + " AND " + AlarmDbHelper.COLUMN_DAY_DATE + " < ?";
+        String[] selectionArgs = new String[]{String.valueOf(CalendarUtils.toEpochDay(from)), String.valueOf(CalendarUtils.toEpochDay(to))};
+
+        Cursor cursor = query(AlarmDbHelper.TABLE_DAY, allColumnsDay, selection, selectionArgs, AlarmDbHelper.COLUMN_DAY_DATE);
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            Day day = cursorToDay(cursor);
+            days.add(day);
+        }
+        cursor.close();
+
+        return days;
+    }
+
     /**
      * Store the {@code Day} object in the database.
      * <p/>
@@ -149,16 +380,16 @@ public class AlarmDataSource {
      * @param day object to be stored
      */
     @SuppressWarnings("JavadocReference")
-    public void saveDay(Day day) {
-        String dateText = dateToText(day.getDate());
+    public synchronized void saveDay(Day day) {
+        long epochDay = CalendarUtils.toEpochDay(day.getDate());
 
-        ContentValues values = new ContentValues();
-        values.put(AlarmDbHelper.COLUMN_DAY_DATE, dateText);
-        values.put(AlarmDbHelper.COLUMN_DAY_STATE, day.getState());
-        values.put(AlarmDbHelper.COLUMN_DAY_HOUR, day.getHourDay());
-        values.put(AlarmDbHelper.COLUMN_DAY_MINUTE, day.getMinuteDay());
+        saveDayStatement.bindLong(1, epochDay);
+        saveDayStatement.bindLong(2, day.getState());
+        saveDayStatement.bindLong(3, day.getHourDay());
+        saveDayStatement.bindLong(4, day.getMinuteDay());
 
-        long id = database.insertWithOnConflict(AlarmDbHelper.TABLE_DAY, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        long id = saveDayStatement.executeInsert();
+        saveDayStatement.clearBindings();
     }
 
     /**
@@ -170,7 +401,7 @@ public class AlarmDataSource {
     public OneTimeAlarm loadOneTimeAlarm(long id) {
         OneTimeAlarm oneTimeAlarm;
 
-        Cursor cursor = database.query(AlarmDbHelper.TABLE_ONETIMEALARM, allColumnsOneTimeAlarm, AlarmDbHelper.COLUMN_ONETIMEALARM_ID + " = ?", new String[]{String.valueOf(id)}, null, null, null);
+        Cursor cursor = rawQuery(SQL_SELECT_ONETIMEALARM_BY_ID, new String[]{String.valueOf(id)});
         if (cursor.getCount() == 0) {
             oneTimeAlarm = null;
         } else {
@@ -220,7 +451,37 @@ public class AlarmDataSource {
             }
         }
 
-        Cursor cursor = database.query(AlarmDbHelper.TABLE_ONETIMEALARM, allColumnsOneTimeAlarm, selection, selectionArgs, null, null, null);
+        Cursor cursor = query(AlarmDbHelper.TABLE_ONETIMEALARM, allColumnsOneTimeAlarm, selection, selectionArgs, null);
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            OneTimeAlarm oneTimeAlarm = cursorToOneTimeAlarm(cursor);
+            oneTimeAlarms.add(oneTimeAlarm);
+        }
+        cursor.close();
+
+        return oneTimeAlarms;
+    }
+
+    /**
+     * Retrieve the {@code OneTimeAlarm}s objects with the nearest alarm times on or after {@code from}, ordered by the alarm time.
+     * <p>
+     * The query uses the index on the alarm time. Use {@code offset} to page through the alarms.
+     *
+     * @param from   Only one-time alarms with alarm time on or after {@code from} are returned.
+     * @param offset Number of (nearest) one-time alarms to skip.
+     * @param count  Maximal number of returned one-time alarms.
+     * @return The list of retrieved objects, ordered by the alarm time
+     */
+    public List<OneTimeAlarm> loadNextOneTimeAlarms(Calendar from, int offset, int count) {
+        List<OneTimeAlarm> oneTimeAlarms = new ArrayList<>(count);
+
+        long fromMS = calendarToMilliseconds(from);
+
+        String selection = "? <= " + AlarmDbHelper.COLUMN_ONETIMEALARM_ALARM_TIME;
+        String[] selectionArgs = new String[]{String.valueOf(fromMS)};
+        String orderBy = AlarmDbHelper.COLUMN_ONETIMEALARM_ALARM_TIME + ", " + AlarmDbHelper.COLUMN_ONETIMEALARM_ID;
+        String limit = offset + "," + count;
+
+        Cursor cursor = query(AlarmDbHelper.TABLE_ONETIMEALARM, allColumnsOneTimeAlarm, selection, selectionArgs, orderBy, limit);
         for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
             OneTimeAlarm oneTimeAlarm = cursorToOneTimeAlarm(cursor);
             oneTimeAlarms.add(oneTimeAlarm);
@@ -293,6 +554,179 @@ public class AlarmDataSource {
         return database.delete(AlarmDbHelper.TABLE_ONETIMEALARM, selection, selectionArgs);
     }
 
+    /**
+     * Store the {@code DismissedAlarm} object in the database. If the alarm is already stored, then the stored record is replaced.
+     *
+     * @param dismissedAlarm object to be stored
+     */
+    public void saveDismissedAlarm(DismissedAlarm dismissedAlarm) {
+        ContentValues values = new ContentValues();
+        values.put(AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TYPE, dismissedAlarm.getAlarmType());
+        values.put(AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_ID, dismissedAlarm.getAlarmId());
+        values.put(AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME, dismissedAlarm.getAlarmTime());
+
+        long newID = database.insertWithOnConflict(AlarmDbHelper.TABLE_DISMISSEDALARM, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+        dismissedAlarm.setId(newID);
+    }
+
+    /**
+     * Delete the record about a dismissed alarm from the database.
+     *
+     * @param alarmType type of the alarm
+     * @param alarmId   persistence id of the alarm
+     * @return The number of affected rows
+     */
+    public int deleteDismissedAlarm(String alarmType, String alarmId) {
+        String selection = AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TYPE + " = ? AND " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_ID + " = ?";
+        String[] selectionArgs = new String[]{alarmType, alarmId};
+
+        return database.delete(AlarmDbHelper.TABLE_DISMISSEDALARM, selection, selectionArgs);
+    }
+
+    /**
+     * Checks whether there is a record about a dismissed alarm in the database.
+     * <p>
+     * The query uses the unique index on the alarm type and id.
+     *
+     * @param alarmType type of the alarm
+     * @param alarmId   persistence id of the alarm
+     * @return true if the alarm was dismissed
+     */
+    public boolean isDismissedAlarm(String alarmType, String alarmId) {
+        Cursor cursor = rawQuery(SQL_SELECT_DISMISSEDALARM_EXISTS, new String[]{alarmType, alarmId});
+        boolean result = 0 < cursor.getCount();
+        cursor.close();
+
+        return result;
+    }
+
+    /**
+     * Retrieve a set of {@code DismissedAlarm}s objects from the database.
+     * <p>
+     * The query uses the index on the alarm time.
+     *
+     * @param from If not null, then only the dismissed alarms with alarm time after {@code from} are returned.
+     * @return The list of retrieved objects, ordered by the alarm time
+     */
+    public List<DismissedAlarm> loadDismissedAlarms(Calendar from) {
+        List<DismissedAlarm> dismissedAlarms = new ArrayList<>();
+
+        String selection;
+        String[] selectionArgs;
+        if (from == null) {
+            selection = null;
+            selectionArgs = null;
+        } else {
+            selection = "? < " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME;
+            selectionArgs = new String[]{String.valueOf(from.getTimeInMillis())};
+        }
+        String orderBy = AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME + ", " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ID;
+
+        Cursor cursor = query(AlarmDbHelper.TABLE_DISMISSEDALARM, allColumnsDismissedAlarm, selection, selectionArgs, orderBy);
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            DismissedAlarm dismissedAlarm = cursorToDismissedAlarm(cursor);
+            dismissedAlarms.add(dismissedAlarm);
+        }
+        cursor.close();
+
+        return dismissedAlarms;
+    }
+
+    /**
+     * Retrieve the {@code DismissedAlarm} object of an alarm from the database.
+     * <p>
+     * The query uses the index on the alarm.
+     *
+     * @param alarmType Type of the alarm
+     * @param alarmId   Identifier of the alarm
+     * @return The retrieved object, or null if the alarm was not dismissed
+     */
+    public DismissedAlarm loadDismissedAlarm(String alarmType, String alarmId) {
+        String selection = AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TYPE + " = ? AND " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_ID + " = ?";
+        String[] selectionArgs = new String[]{alarmType, alarmId};
+
+        Cursor cursor = query(AlarmDbHelper.TABLE_DISMISSEDALARM, allColumnsDismissedAlarm, selection, selectionArgs, null);
+        DismissedAlarm dismissedAlarm = cursor.moveToFirst() ? cursorToDismissedAlarm(cursor) : null;
+        cursor.close();
+
+        return dismissedAlarm;
+    }
+
+    /**
+     * Remove the records about dismissed alarms with alarm times before {@code to}.
+     *
+     * @param to The dismissed alarms with alarm times before this argument will be removed.
+     * @return The number of affected rows
+     */
+    public int deleteDismissedAlarmsOlderThan(Calendar to) {
+        String selection = AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME + " < ?";
+        String[] selectionArgs = new String[]{String.valueOf(to.getTimeInMillis())};
+
+        return database.delete(AlarmDbHelper.TABLE_DISMISSEDALARM, selection, selectionArgs);
+    }
+
+    /**
+     * Retrieve the holidays in a year in a region from the database.
+     * <p>
+     * The query uses the unique index on the path and year.
+     *
+     * @param path path identifier of a region
+     * @param year year
+     * @return The retrieved object, or null if the holidays are not stored
+     */
+    public StoredHolidays loadStoredHolidays(String path, int year) {
+        StoredHolidays storedHolidays = null;
+
+        Cursor cursor = rawQuery(SQL_SELECT_HOLIDAY_BY_PATH_YEAR, new String[]{path, String.valueOf(year)});
+        if (cursor.moveToFirst()) {
+            storedHolidays = cursorToStoredHolidays(cursor);
+        }
+        cursor.close();
+
+        return storedHolidays;
+    }
+
+    /**
+     * Replace the stored holidays by the {@code StoredHolidays} objects.
+     *
+     * @param storedHolidaysList objects to be stored
+     */
+    public void saveHolidayTable(List<StoredHolidays> storedHolidaysList) {
+        database.beginTransaction();
+        try {
+            deleteAllHolidays();
+
+            for (StoredHolidays storedHolidays : storedHolidaysList) {
+                ContentValues values = new ContentValues();
+                values.put(AlarmDbHelper.COLUMN_HOLIDAY_PATH, storedHolidays.getPath());
+                values.put(AlarmDbHelper.COLUMN_HOLIDAY_YEAR, storedHolidays.getYear());
+                values.put(AlarmDbHelper.COLUMN_HOLIDAY_DAYS, storedHolidays.getDays());
+                values.put(AlarmDbHelper.COLUMN_HOLIDAY_DESCRIPTIONS, storedHolidays.getDescriptions());
+
+                long newID = database.insert(AlarmDbHelper.TABLE_HOLIDAY, null, values);
+                storedHolidays.setId(newID);
+            }
+
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String orderBy) {
+        return query(table, columns, selection, selectionArgs, orderBy, null);
+    }
+
+    private Cursor query(String table, String[] columns, String selection, String[] selectionArgs, String orderBy, String limit) {
+        queryCount++;
+        return database.query(table, columns, selection, selectionArgs, null, null, orderBy, limit);
+    }
+
+    private Cursor rawQuery(String sql, String[] selectionArgs) {
+        queryCount++;
+        return database.rawQuery(sql, selectionArgs);
+    }
+
     static private long calendarToMilliseconds(Calendar calendar) {
         TimeZone utcTZ = TimeZone.getTimeZone(OneTimeAlarm.UTC);
         Calendar toUTC = Calendar.getInstance(utcTZ);
@@ -304,16 +738,6 @@ public class AlarmDataSource {
         return iso8601Format.format(date.getTime());
     }
 
-    private Calendar textToDate(String dateText) {
-        try {
-            Date date = iso8601Format.parse(dateText);
-            return CalendarUtils.newGregorianCalendar(date.getTime());
-        } catch (ParseException e) {
-            MyLog.e("Unable to parse date from string: " + dateText);
-            throw new RuntimeException("Invalid date format", e);
-        }
-    }
-
     private Defaults cursorToDefaults(Cursor cursor) {
         Defaults defaults = new Defaults();
         defaults.setId(cursor.getLong(0));
@@ -328,8 +752,8 @@ public class AlarmDataSource {
         Day day = new Day();
         day.setId(cursor.getLong(0));
 
-        String dateText = cursor.getString(1);
-        Calendar date = textToDate(dateText);
+        long epochDay = cursor.getLong(1);
+        Calendar date = CalendarUtils.fromEpochDay(epochDay);
         day.setDate(date);
 
         day.setState(cursor.getInt(2));
@@ -348,6 +772,29 @@ public class AlarmDataSource {
         return oneTimeAlarm;
     }
 
+    private DismissedAlarm cursorToDismissedAlarm(Cursor cursor) {
+        DismissedAlarm dismissedAlarm = new DismissedAlarm();
+
+        dismissedAlarm.setId(cursor.getLong(0));
+        dismissedAlarm.setAlarmType(cursor.getString(1));
+        dismissedAlarm.setAlarmId(cursor.getString(2));
+        dismissedAlarm.setAlarmTime(cursor.getLong(3));
+
+        return dismissedAlarm;
+    }
+
+    private StoredHolidays cursorToStoredHolidays(Cursor cursor) {
+        StoredHolidays storedHolidays = new StoredHolidays();
+
+        storedHolidays.setId(cursor.getLong(0));
+        storedHolidays.setPath(cursor.getString(1));
+        storedHolidays.setYear(cursor.getInt(2));
+        storedHolidays.setDays(cursor.getBlob(3));
+        storedHolidays.setDescriptions(cursor.getString(4));
+
+        return storedHolidays;
+    }
+
     public String dumpDB() {
         StringBuilder str = new StringBuilder();
 
@@ -407,19 +854,42 @@ public class AlarmDataSource {
         }
         cursor.close();
 
+        // Table DismissedAlarm
+        cursor = database.query(AlarmDbHelper.TABLE_DISMISSEDALARM, allColumnsDismissedAlarm, null, null, null, null, null);
+        str.append("Table DismissedAlarm, rows ").append(cursor.getCount()).append("\n");
+        str.append("id | Type | Id | Time\n");
+        str.append("---+------+----+-----\n");
+
+        cursor.moveToFirst();
+        while (!cursor.isAfterLast()) {
+            DismissedAlarm dismissedAlarm = cursorToDismissedAlarm(cursor);
+            str.
+                    append(" ").append(dismissedAlarm.getId()).
+                    append(" | ").append(dismissedAlarm.getAlarmType()).
+                    append(" | ").append(dismissedAlarm.getAlarmId()).
+                    append(" | ").append(dismissedAlarm.getAlarmTime()).append("\n");
+            cursor.moveToNext();
+        }
+        cursor.close();
+
         return str.toString();
     }
 
     /**
      * Reset the database to the initial state.
      * <p>
-     * Deletes all Days and disables the Defaults, deletes all one-time alarms.
+     * Deletes all Days and disables the Defaults, deletes all one-time alarms and all dismissed alarms.
      */
-    public void resetDatabase() {
+    public synchronized void resetDatabase() {
         deleteAllDays();
         AlarmDbHelper.resetDefaults(database);
+        reloadDefaultsSnapshot();
 
         deleteAllOneTimeAlarms();
+
+        deleteAllDismissedAlarms();
+
+        deleteAllHolidays();
     }
 
     private void deleteAllDays() {
@@ -430,4 +900,12 @@ public class AlarmDataSource {
         database.delete(AlarmDbHelper.TABLE_ONETIMEALARM, null, null);
     }
 
+    private void deleteAllDismissedAlarms() {
+        database.delete(AlarmDbHelper.TABLE_DISMISSEDALARM, null, null);
+    }
+
+    private void deleteAllHolidays() {
+        database.delete(AlarmDbHelper.TABLE_HOLIDAY, null, null);
+    }
+
 }
@@ -26,15 +26,33 @@ public class AlarmDbHelper extends SQLiteOpenHelper {
 
     static final String TABLE_DAY = "day";
     static final String COLUMN_DAY_ID = "_id";
-    static final String COLUMN_DAY_DATE = "date";
+    static final String COLUMN_DAY_DATE = "date"; // Note: since version 4, the date is stored as the number of days since 1970-01-01 (epoch day)
     static final String COLUMN_DAY_STATE = "state";
     static final String COLUMN_DAY_HOUR = "hour";
     static final String COLUMN_DAY_MINUTE = "minute";
+    static final String INDEX_DAY_DATE = "index_day_date";
 
     static final String TABLE_ONETIMEALARM = "one_time_alarm";
     static final String COLUMN_ONETIMEALARM_ID = "_id";
     static final String COLUMN_ONETIMEALARM_ALARM_TIME = "alarm_time"; // Note: the alarm time is always stored in UTC timezone (irrespective of default locale)
     static final String COLUMN_ONETIMEALARM_NAME = "name";
+    static final String INDEX_ONETIMEALARM_ALARM_TIME = "index_one_time_alarm_alarm_time";
+
+    static final String TABLE_DISMISSEDALARM = "dismissed_alarm";
+    static final String COLUMN_DISMISSEDALARM_ID = "_id";
+    static final String COLUMN_DISMISSEDALARM_ALARM_TYPE = "alarm_type";
+    static final String COLUMN_DISMISSEDALARM_ALARM_ID = "alarm_id";
+    static final String COLUMN_DISMISSEDALARM_ALARM_TIME = "alarm_time"; // Note: unlike in the one_time_alarm table, this is the actual time in milliseconds since epoch
+    static final String INDEX_DISMISSEDALARM_ALARM = "index_dismissed_alarm_type_id";
+    static final String INDEX_DISMISSEDALARM_ALARM_TIME = "index_dismissed_alarm_alarm_time";
+
+    static final String TABLE_HOLIDAY = "holiday";
+    static final String COLUMN_HOLIDAY_ID = "_id";
+    static final String COLUMN_HOLIDAY_PATH = "path";
+    static final String COLUMN_HOLIDAY_YEAR = "year";
+    static final String COLUMN_HOLIDAY_DAYS = "days"; // Note: the bitset of days of year that are holidays
+    static final String COLUMN_HOLIDAY_DESCRIPTIONS = "descriptions";
+    static final String INDEX_HOLIDAY_PATH_YEAR = "index_holiday_path_year";
 
     /**
      * Hour of default alarm time. Used to initialize configuration.
@@ -46,6 +64,16 @@ public class AlarmDbHelper extends SQLiteOpenHelper {
      */
     public static final int DEFAULT_ALARM_MINUTE = 0;
 
+    /**
+     * The patch that creates the holiday table.
+     */
+    private static final int PATCH_HOLIDAY = 5;
+
+    /**
+     * Whether the holiday table was created when the database was opened. The table is created empty, so it must be filled after the upgrade.
+     */
+    private boolean holidayTableCreated;
+
     AlarmDbHelper(Context context) {
         super(context, DATABASE_NAME, null, PATCHES.length);
     }
@@ -56,6 +84,7 @@ public class AlarmDbHelper extends SQLiteOpenHelper {
         for (Patch PATCH : PATCHES) {
             PATCH.apply(database);
         }
+        holidayTableCreated = true;
     }
 
     @Override
@@ -65,6 +94,9 @@ public class AlarmDbHelper extends SQLiteOpenHelper {
             MyLog.d("Applying patch " + i);
             PATCHES[i].apply(db);
         }
+        if (oldVersion <= PATCH_HOLIDAY && PATCH_HOLIDAY < newVersion) {
+            holidayTableCreated = true;
+        }
     }
 
     @Override
@@ -76,6 +108,15 @@ public class AlarmDbHelper extends SQLiteOpenHelper {
         }
     }
 
+    /**
+     * Check whether the holiday table was created (and is therefore empty) when the database was opened.
+     *
+     * @return true if the holiday table must be filled
+     */
+    boolean isHolidayTableCreated() {
+        return holidayTableCreated;
+    }
+
     /**
      * Represents changes of database model.
      */
@@ -148,6 +189,126 @@ public class AlarmDbHelper extends SQLiteOpenHelper {
                     // Drop table
                     database.execSQL(DROP_TABLE_ALARM);
                 }
+            },
+            new Patch() { // Version 2
+                public void apply(SQLiteDatabase database) {
+                    String CREATE_INDEX_ALARM_TIME = "CREATE INDEX " + INDEX_ONETIMEALARM_ALARM_TIME + " ON " + TABLE_ONETIMEALARM + "(" +
+                            COLUMN_ONETIMEALARM_ALARM_TIME +
+                            ")";
+
+                    // Create index
+                    database.execSQL(CREATE_INDEX_ALARM_TIME);
+                }
+
+                public void revert(SQLiteDatabase database) {
+                    String DROP_INDEX_ALARM_TIME = "DROP INDEX IF EXISTS " + INDEX_ONETIMEALARM_ALARM_TIME;
+
+                    // Drop index
+                    database.execSQL(DROP_INDEX_ALARM_TIME);
+                }
+            },
+            new Patch() { // Version 3
+                public void apply(SQLiteDatabase database) {
+                    String TABLE_DAY_NEW = TABLE_DAY + "_new";
+                    String CREATE_TABLE_DAY = "CREATE TABLE " + TABLE_DAY_NEW + "(" +
+                            COLUMN_DAY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            COLUMN_DAY_DATE + " INTEGER NOT NULL," +
+                            COLUMN_DAY_STATE + " INTEGER NOT NULL," +
+                            COLUMN_DAY_HOUR + " INTEGER," +
+                            COLUMN_DAY_MINUTE + " INTEGER" +
+                            ")";
+                    // Julian day of 1970-01-01 is 2440587.5
+                    String COPY_DAYS = "INSERT INTO " + TABLE_DAY_NEW + "(" + COLUMN_DAY_ID + ", " + COLUMN_DAY_DATE + ", " + COLUMN_DAY_STATE + ", " + COLUMN_DAY_HOUR + ", " + COLUMN_DAY_MINUTE + ") " +
+                            "SELECT " + COLUMN_DAY_ID + ", CAST(julianday(" + COLUMN_DAY_DATE + ") - 2440587.5 AS INTEGER), " + COLUMN_DAY_STATE + ", " + COLUMN_DAY_HOUR + ", " + COLUMN_DAY_MINUTE + " " +
+                            "FROM " + TABLE_DAY;
+                    String CREATE_INDEX_DATE = "CREATE UNIQUE INDEX " + INDEX_DAY_DATE + " ON " + TABLE_DAY + "(" +
+                            COLUMN_DAY_DATE +
+                            ")";
+
+                    // Change the type of the date column from text to epoch day
+                    database.execSQL(CREATE_TABLE_DAY);
+                    database.execSQL(COPY_DAYS);
+                    database.execSQL("DROP TABLE " + TABLE_DAY);
+                    database.execSQL("ALTER TABLE " + TABLE_DAY_NEW + " RENAME TO " + TABLE_DAY);
+
+                    // Create index
+                    database.execSQL(CREATE_INDEX_DATE);
+                }
+
+                public void revert(SQLiteDatabase database) {
+                    String TABLE_DAY_OLD = TABLE_DAY + "_old";
+                    String CREATE_TABLE_DAY = "create table " + TABLE_DAY_OLD + "(" +
+                            COLUMN_DAY_ID + " integer primary key autoincrement, " +
+                            COLUMN_DAY_DATE + " text unique not null," +
+                            COLUMN_DAY_STATE + " integer not null," +
+                            COLUMN_DAY_HOUR + " integer," +
+                            COLUMN_DAY_MINUTE + " integer" +
+                            ");";
+                    String COPY_DAYS = "INSERT INTO " + TABLE_DAY_OLD + "(" + COLUMN_DAY_ID + ", " + COLUMN_DAY_DATE + ", " + COLUMN_DAY_STATE + ", " + COLUMN_DAY_HOUR + ", " + COLUMN_DAY_MINUTE + ") " +
+                            "SELECT " + COLUMN_DAY_ID + ", date(" + COLUMN_DAY_DATE + " * 86400, 'unixepoch'), " + COLUMN_DAY_STATE + ", " + COLUMN_DAY_HOUR + ", " + COLUMN_DAY_MINUTE + " " +
+                            "FROM " + TABLE_DAY;
+
+                    // Change the type of the date column from epoch day to text (the index is dropped with the table)
+                    database.execSQL(CREATE_TABLE_DAY);
+                    database.execSQL(COPY_DAYS);
+                    database.execSQL("DROP TABLE " + TABLE_DAY);
+                    database.execSQL("ALTER TABLE " + TABLE_DAY_OLD + " RENAME TO " + TABLE_DAY);
+                }
+            },
+            new Patch() { // Version 4
+                public void apply(SQLiteDatabase database) {
+                    String CREATE_TABLE_DISMISSED_ALARM = "CREATE TABLE " + TABLE_DISMISSEDALARM + "(" +
+                            COLUMN_DISMISSEDALARM_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            COLUMN_DISMISSEDALARM_ALARM_TYPE + " TEXT NOT NULL," +
+                            COLUMN_DISMISSEDALARM_ALARM_ID + " TEXT NOT NULL," +
+                            COLUMN_DISMISSEDALARM_ALARM_TIME + " INT NOT NULL" +
+                            ")";
+                    String CREATE_INDEX_ALARM = "CREATE UNIQUE INDEX " + INDEX_DISMISSEDALARM_ALARM + " ON " + TABLE_DISMISSEDALARM + "(" +
+                            COLUMN_DISMISSEDALARM_ALARM_TYPE + ", " + COLUMN_DISMISSEDALARM_ALARM_ID +
+                            ")";
+                    String CREATE_INDEX_ALARM_TIME = "CREATE INDEX " + INDEX_DISMISSEDALARM_ALARM_TIME + " ON " + TABLE_DISMISSEDALARM + "(" +
+                            COLUMN_DISMISSEDALARM_ALARM_TIME +
+                            ")";
+
+                    // Create table and indexes
+                    // Note: the dismissed alarms stored in the preferences (before version 4) are migrated by GlobalManager, as it is able to determine the alarm times
+                    database.execSQL(CREATE_TABLE_DISMISSED_ALARM);
+                    database.execSQL(CREATE_INDEX_ALARM);
+                    database.execSQL(CREATE_INDEX_ALARM_TIME);
+                }
+
+                public void revert(SQLiteDatabase database) {
+                    String DROP_TABLE_DISMISSED_ALARM = "DROP TABLE IF EXISTS " + TABLE_DISMISSEDALARM;
+
+                    // Drop table (the indexes are dropped with the table)
+                    database.execSQL(DROP_TABLE_DISMISSED_ALARM);
+                }
+            },
+            new Patch() { // Version 5
+                public void apply(SQLiteDatabase database) {
+                    String CREATE_TABLE_HOLIDAY = "CREATE TABLE " + TABLE_HOLIDAY + "(" +
+                            COLUMN_HOLIDAY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                            COLUMN_HOLIDAY_PATH + " TEXT NOT NULL," +
+                            COLUMN_HOLIDAY_YEAR + " INTEGER NOT NULL," +
+                            COLUMN_HOLIDAY_DAYS + " BLOB NOT NULL," +
+                            COLUMN_HOLIDAY_DESCRIPTIONS + " TEXT NOT NULL" +
+                            ")";
+                    String CREATE_INDEX_PATH_YEAR = "CREATE UNIQUE INDEX " + INDEX_HOLIDAY_PATH_YEAR + " ON " + TABLE_HOLIDAY + "(" +
+                            COLUMN_HOLIDAY_PATH + ", " + COLUMN_HOLIDAY_YEAR +
+                            ")";
+
+                    // Create table and index
+                    // Note: the table is filled by GlobalManager in the background after the upgrade (see isHolidayTableCreated())
+                    database.execSQL(CREATE_TABLE_HOLIDAY);
+                    database.execSQL(CREATE_INDEX_PATH_YEAR);
+                }
+
+                public void revert(SQLiteDatabase database) {
+                    String DROP_TABLE_HOLIDAY = "DROP TABLE IF EXISTS " + TABLE_HOLIDAY;
+
+                    // Drop table (the index is dropped with the table)
+                    database.execSQL(DROP_TABLE_HOLIDAY);
+                }
             }
     };
 
@@ -0,0 +1,145 @@
+package cz.jaro.alarmmorning.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+/**
+ * Immutable snapshot of the alarms (the Days and the one-time alarms) from a particular date.
+ * <p>
+ * The snapshot is published by {@link cz.jaro.alarmmorning.GlobalManager} after the alarms change. The UI reads the alarms from the snapshot, so that it
+ * doesn't query the database and doesn't see the changes that are still in progress.
+ * <p>
+ * The snapshot holds only the Days stored in the database and the Defaults. The other Days of the horizon are created on access, so the size of the snapshot
+ * doesn't depend on the length of the horizon. Use {@link #getDays(int, int)} to get only the visible Days.
+ * <p>
+ * The snapshot never exposes its own objects. Each getter returns new copies, so the callers may modify the returned objects.
+ */
+public final class AlarmSnapshot {
+
+    private final Calendar from;
+    private final long fromEpochDay;
+    private final int dayCount;
+
+    /**
+     * The Defaults, indexed by the day of week (as in {@link Calendar#DAY_OF_WEEK}).
+     */
+    private final Defaults[] defaultsArray;
+
+    /**
+     * The Days stored in the database, ordered by date.
+     */
+    private final List<Day> storedDays;
+
+    /**
+     * The epoch days of {@link #storedDays}.
+     */
+    private final long[] storedEpochDays;
+
+    private final List<OneTimeAlarm> oneTimeAlarms;
+
+    /**
+     * Create a snapshot. The snapshot takes over the passed objects, so the caller must not modify them afterwards.
+     *
+     * @param from          The beginning of the snapshot. The time of day is ignored.
+     * @param dayCount      The number of Days in the snapshot
+     * @param defaultsArray The Defaults, indexed by the day of week (as in {@link Calendar#DAY_OF_WEEK})
+     * @param storedDays    The Days stored in the database in the range of the snapshot, ordered by date, together with the referenced Defaults
+     * @param oneTimeAlarms The one-time alarms from {@code from}
+     */
+    public AlarmSnapshot(Calendar from, int dayCount, Defaults[] defaultsArray, List<Day> storedDays, List<OneTimeAlarm> oneTimeAlarms) {
+        this.from = CalendarUtils.beginningOfToday(from);
+        this.fromEpochDay = CalendarUtils.toEpochDay(this.from);
+        this.dayCount = dayCount;
+        this.defaultsArray = defaultsArray;
+        this.storedDays = storedDays;
+        this.oneTimeAlarms = oneTimeAlarms;
+
+        storedEpochDays = new long[storedDays.size()];
+        for (int i = 0; i < storedDays.size(); i++) {
+            storedEpochDays[i] = CalendarUtils.toEpochDay(storedDays.get(i).getDate());
+        }
+    }
+
+    /**
+     * Check whether the snapshot begins on the date of {@code now}.
+     *
+     * @param now Current time
+     * @return true if the snapshot begins on today
+     */
+    public boolean isFrom(Calendar now) {
+        return CalendarUtils.onTheSameDate(from, now);
+    }
+
+    /**
+     * @return The number of Days in the snapshot.
+     */
+    public int getDayCount() {
+        return dayCount;
+    }
+
+    /**
+     * Return a copy of a Day in the snapshot.
+     *
+     * @param index The index of the Day, i.e. the number of days since the beginning of the snapshot
+     * @return Copy of the Day.
+     */
+    public Day getDay(int index) {
+        if (index < 0 || dayCount <= index)
+            throw new IndexOutOfBoundsException("Index " + index + " is out of range 0.." + (dayCount - 1));
+
+        long epochDay = fromEpochDay + index;
+
+        int storedIndex = Arrays.binarySearch(storedEpochDays, epochDay);
+        if (0 <= storedIndex) {
+            return storedDays.get(storedIndex).clone();
+        }
+
+        Calendar date = CalendarUtils.fromEpochDay(epochDay);
+
+        Day day = new Day();
+        day.setDate(date);
+        day.setState(Day.STATE_RULE);
+        day.setHourDay(Day.VALUE_UNSET);
+        day.setMinuteDay(Day.VALUE_UNSET);
+        day.setDefaults(defaultsArray[date.get(Calendar.DAY_OF_WEEK)].clone());
+        return day;
+    }
+
+    /**
+     * Return copies of the Days in a range.
+     *
+     * @param fromIndex The index of the first Day (including)
+     * @param toIndex   The index of the last Day (excluding)
+     * @return Copies of the Days in the range, ordered by date.
+     */
+    public List<Day> getDays(int fromIndex, int toIndex) {
+        List<Day> result = new ArrayList<>(Math.max(0, toIndex - fromIndex));
+        for (int index = fromIndex; index < toIndex; index++) {
+            result.add(getDay(index));
+        }
+        return result;
+    }
+
+    /**
+     * @return Copies of the Days in the snapshot, ordered by date.
+     */
+    public List<Day> getDays() {
+        return getDays(0, dayCount);
+    }
+
+    /**
+     * @return Copies of the one-time alarms in the snapshot.
+     */
+    public List<OneTimeAlarm> getOneTimeAlarms() {
+        List<OneTimeAlarm> result = new ArrayList<>(oneTimeAlarms.size());
+        for (OneTimeAlarm oneTimeAlarm : oneTimeAlarms) {
+            result.add(oneTimeAlarm.clone());
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,99 @@
+package cz.jaro.alarmmorning.model;
+
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+/**
+ * The Days in a range of dates, resolved lazily page by page.
+ * <p>
+ * Each page covers at most {@link #PAGE_DAYS} dates and is resolved from one query of the sparse stored Days and from the Defaults (which are cached by
+ * {@link AlarmDataSource}). Only the pages that are actually reached are loaded. Therefore a long range (e.g. a year) costs the same as a short one when the
+ * result is found on the first page.
+ */
+public class AlarmTimeline {
+
+    /**
+     * Number of dates resolved at once.
+     */
+    public static final int PAGE_DAYS = 32;
+
+    private final AlarmDataSource dataSource;
+
+    public AlarmTimeline(AlarmDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Return all the Days in the range. The pages are loaded while iterating.
+     *
+     * @param from the first date of the range (including); the time of day is ignored
+     * @param to   the last date of the range (excluding); the time of day is ignored
+     * @return Days, ordered by date
+     */
+    public Iterable<Day> getDays(Calendar from, Calendar to) {
+        Calendar beginning = CalendarUtils.beginningOfToday(from);
+        Calendar end = CalendarUtils.beginningOfToday(to);
+
+        return () -> new Iterator<Day>() {
+            private Calendar pageEnd = beginning;
+            private Iterator<Day> page;
+
+            @Override
+            public boolean hasNext() {
+                while ((page == null || !page.hasNext()) && pageEnd.before(end)) {
+                    Calendar pageBeginning = pageEnd;
+                    pageEnd = nextPageEnd(pageBeginning, end);
+                    page = dataSource.loadDays(pageBeginning, pageEnd).iterator();
+                }
+                return page != null && page.hasNext();
+            }
+
+            @Override
+            public Day next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.next();
+            }
+        };
+    }
+
+    /**
+     * Return the nearest Day with enabled alarm that matches the filter.
+     * <p>
+     * The pages are resolved by {@link NextDayAlarmResolver} and the search stops on the first page that contains such a Day.
+     *
+     * @param from   the first date of the range (including); the time of day is ignored
+     * @param to     the last date of the range (excluding); the time of day is ignored
+     * @param filter If not null, then only a Day that matches the filter is returned.
+     * @return The nearest Day with enabled alarm. Return null if there is no such Day in the range.
+     */
+    public Day getNextDay(Calendar from, Calendar to, AppAlarmFilter filter) {
+        Calendar end = CalendarUtils.beginningOfToday(to);
+
+        Calendar pageEnd = CalendarUtils.beginningOfToday(from);
+        while (pageEnd.before(end)) {
+            Calendar pageBeginning = pageEnd;
+            pageEnd = nextPageEnd(pageBeginning, end);
+
+            List<Day> storedDays = dataSource.loadStoredDays(pageBeginning, pageEnd);
+            NextDayAlarmResolver resolver = new NextDayAlarmResolver(dataSource.loadDefaults(), storedDays);
+            Day day = resolver.resolve(pageBeginning, pageEnd, filter);
+            if (day != null) {
+                return day;
+            }
+        }
+
+        return null;
+    }
+
+    private static Calendar nextPageEnd(Calendar pageBeginning, Calendar end) {
+        Calendar pageEnd = CalendarUtils.addDaysClone(pageBeginning, PAGE_DAYS);
+        return pageEnd.before(end) ? pageEnd : end;
+    }
+
+}
@@ -22,7 +22,7 @@ import static cz.jaro.alarmmorning.calendar.CalendarUtils.roundDown;
  * The alarm time is a combination of {@link #getDate()}, {@link #getHour()} and {@link #getMinute()}. For convenience, the method {@link #getDateTime()}
  * combines all three items together and returns the alarm time..
  */
-public class Day extends AppAlarm {
+public class Day extends AppAlarm implements Cloneable {
 
     /**
      * Value of the {@code state} field indicating the disabled state.
@@ -252,6 +252,18 @@ public class Day extends AppAlarm {
         return holidayHelper.getHolidayDescription(getDate());
     }
 
+    @Override
+    public Day clone() {
+        try {
+            Day cloned = (Day) super.clone();
+            cloned.setDate(date != null ? (Calendar) date.clone() : null);
+            cloned.setDefaults(defaults != null ? defaults.clone() : null);
+            return cloned;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("This should not happen", e);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
@@ -0,0 +1,64 @@
+package cz.jaro.alarmmorning.model;
+
+/**
+ * Represents a record about a dismissed alarm.
+ * <p/>
+ * The record references the alarm by its type and persistence id (see {@link AppAlarm#getPersistenceId()}). The alarm time is stored too, so that the
+ * dismissed alarms can be searched and pruned by time without loading the alarms.
+ */
+public class DismissedAlarm {
+
+    private long id;
+
+    /**
+     * The simple class name of the alarm.
+     */
+    private String alarmType;
+
+    /**
+     * The persistence id of the alarm.
+     */
+    private String alarmId;
+
+    /**
+     * The alarm time in milliseconds since epoch.
+     */
+    private long alarmTime;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getAlarmType() {
+        return alarmType;
+    }
+
+    public void setAlarmType(String alarmType) {
+        this.alarmType = alarmType;
+    }
+
+    public String getAlarmId() {
+        return alarmId;
+    }
+
+    public void setAlarmId(String alarmId) {
+        this.alarmId = alarmId;
+    }
+
+    public long getAlarmTime() {
+        return alarmTime;
+    }
+
+    public void setAlarmTime(long alarmTime) {
+        this.alarmTime = alarmTime;
+    }
+
+    @Override
+    public String toString() {
+        return alarmType + " " + alarmId + " at " + alarmTime;
+    }
+}
@@ -0,0 +1,162 @@
+package cz.jaro.alarmmorning.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+/**
+ * Resolves the nearest Day with an enabled alarm without checking all the dates one by one.
+ * <p>
+ * Most of the dates are not stored in the database. Such a date has the {@link Day#STATE_RULE} state and its alarm follows from the Defaults for the day of
+ * week (and from the holidays). Therefore the resolver jumps directly to the next candidate date, which is either<br>
+ * 1. the nearest stored Day with the {@link Day#STATE_ENABLED} state, or<br>
+ * 2. the nearest date that doesn't override the Defaults and whose day of week has an enabled Defaults.<br>
+ * The holidays are checked only on the candidate dates. The cost therefore depends on the number of rejected candidates, and not on the number of dates in
+ * the range.
+ */
+public class NextDayAlarmResolver {
+
+    /**
+     * The Defaults, indexed by the day of week (as in {@link Calendar#DAY_OF_WEEK}).
+     */
+    private final Defaults[] defaultsArray;
+
+    /**
+     * The stored Days that override the Defaults (their state is not {@link Day#STATE_RULE}), ordered by date.
+     */
+    private final List<Day> overrides;
+
+    /**
+     * The epoch days of {@link #overrides}.
+     */
+    private final long[] overrideEpochDays;
+
+    /**
+     * Initialize the resolver.
+     *
+     * @param defaultsArray The Defaults, indexed by the day of week (as in {@link Calendar#DAY_OF_WEEK})
+     * @param storedDays    The Days stored in the database, ordered by date, together with the referenced Defaults
+     */
+    public NextDayAlarmResolver(Defaults[] defaultsArray, List<Day> storedDays) {
+        this.defaultsArray = defaultsArray;
+
+        overrides = new ArrayList<>(storedDays.size());
+        for (Day day : storedDays) {
+            if (day.getState() != Day.STATE_RULE) {
+                overrides.add(day);
+            }
+        }
+
+        overrideEpochDays = new long[overrides.size()];
+        for (int i = 0; i < overrides.size(); i++) {
+            overrideEpochDays[i] = CalendarUtils.toEpochDay(overrides.get(i).getDate());
+        }
+    }
+
+    /**
+     * Return the nearest Day with enabled alarm that matches the filter.
+     *
+     * @param from   the first date of the range (including); the time of day is ignored
+     * @param to     the last date of the range (excluding); the time of day is ignored
+     * @param filter If not null, then only a Day that matches the filter is returned.
+     * @return The nearest Day with enabled alarm. Return null if there is no such Day in the range.
+     */
+    public Day resolve(Calendar from, Calendar to, AppAlarmFilter filter) {
+        long epochDay = CalendarUtils.toEpochDay(from);
+        long end = CalendarUtils.toEpochDay(to);
+
+        int overrideIndex = 0;
+        while (epochDay < end) {
+            // Candidate 1: the nearest stored Day with enabled alarm
+            while (overrideIndex < overrides.size() && overrideEpochDays[overrideIndex] < epochDay) {
+                overrideIndex++;
+            }
+            int enabledIndex = overrideIndex;
+            while (enabledIndex < overrides.size() && overrides.get(enabledIndex).getState() != Day.STATE_ENABLED) {
+                enabledIndex++;
+            }
+            long enabledEpochDay = enabledIndex < overrides.size() ? overrideEpochDays[enabledIndex] : Long.MAX_VALUE;
+
+            // Candidate 2: the nearest date with the alarm given by Defaults
+            long ruleEpochDay = nextRuleEpochDay(epochDay, Math.min(enabledEpochDay, end));
+
+            Day day;
+            if (enabledEpochDay <= ruleEpochDay) {
+                if (end <= enabledEpochDay) {
+                    break;
+                }
+                day = overrides.get(enabledIndex);
+                epochDay = enabledEpochDay;
+            } else {
+                day = newRuleDay(ruleEpochDay);
+                epochDay = ruleEpochDay;
+            }
+
+            // The holiday is checked here
+            if (day.isEnabled() && (filter == null || filter.match(day))) {
+                return day;
+            }
+
+            epochDay++;
+        }
+
+        return null;
+    }
+
+    /**
+     * Return the nearest date that doesn't override the Defaults and whose day of week has an enabled Defaults.
+     *
+     * @param from  the first epoch day (including)
+     * @param limit the last epoch day (excluding); the search stops there
+     * @return The epoch day of the date. If there is no such date before {@code limit}, then {@link Long#MAX_VALUE}.
+     */
+    private long nextRuleEpochDay(long from, long limit) {
+        long epochDay = from;
+        while (epochDay < limit) {
+            epochDay = nextEnabledDayOfWeek(epochDay);
+            if (limit <= epochDay) {
+                break;
+            }
+
+            if (Arrays.binarySearch(overrideEpochDays, epochDay) < 0) {
+                return epochDay;
+            }
+
+            epochDay++;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Return the nearest date whose day of week has an enabled Defaults.
+     *
+     * @param from the first epoch day (including)
+     * @return The epoch day of the date. If all the Defaults are disabled, then {@link Long#MAX_VALUE}.
+     */
+    private long nextEnabledDayOfWeek(long from) {
+        int dayOfWeek = CalendarUtils.dayOfWeekOfEpochDay(from);
+        for (int offset = 0; offset < 7; offset++) {
+            int dayOfWeek2 = (dayOfWeek - Calendar.SUNDAY + offset) % 7 + Calendar.SUNDAY;
+            if (defaultsArray[dayOfWeek2].isEnabled()) {
+                return from + offset;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private Day newRuleDay(long epochDay) {
+        Calendar date = CalendarUtils.fromEpochDay(epochDay);
+
+        Day day = new Day();
+        day.setDate(date);
+        day.setState(Day.STATE_RULE);
+        day.setHourDay(Day.VALUE_UNSET);
+        day.setMinuteDay(Day.VALUE_UNSET);
+        day.setDefaults(defaultsArray[date.get(Calendar.DAY_OF_WEEK)]);
+        return day;
+    }
+
+}
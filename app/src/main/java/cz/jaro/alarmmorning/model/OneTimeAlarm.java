@@ -22,7 +22,7 @@ import cz.jaro.alarmmorning.calendar.CalendarUtils;
  * As the user is located in Germany, the default time zone is CET (Central European Time) and the method {@link #getDateTime()} returns the value
  * "2017-01-23 7:00 CET".
  */
-public class OneTimeAlarm extends AppAlarm {
+public class OneTimeAlarm extends AppAlarm implements Cloneable {
 
     /**
      * Locale id in which the alarm time is stored as milliseconds since epoch.
@@ -133,6 +133,15 @@ public class OneTimeAlarm extends AppAlarm {
         return String.valueOf(id);
     }
 
+    @Override
+    public OneTimeAlarm clone() {
+        try {
+            return (OneTimeAlarm) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("This should not happen", e);
+        }
+    }
+
     @Override
     public String toString() {
         StringBuilder str = new StringBuilder();
@@ -0,0 +1,79 @@
+package cz.jaro.alarmmorning.model;
+
+/**
+ * Represents a record about the holidays in one year in a region.
+ * <p/>
+ * The holidays are stored in a compact form: the days of year that are holidays as a bitset and the holiday names (ordered by day of year). Therefore the
+ * holidays can be determined without loading the holiday library.
+ */
+public class StoredHolidays {
+
+    /**
+     * Separator of the holiday names.
+     */
+    public static final String DESCRIPTION_SEPARATOR = "\n";
+
+    private long id;
+
+    /**
+     * The path identifier of the region.
+     */
+    private String path;
+
+    private int year;
+
+    /**
+     * The bitset of days of year that are holidays (as returned by {@link java.util.BitSet#toByteArray()}).
+     */
+    private byte[] days;
+
+    /**
+     * The holiday names ordered by day of year and separated by {@link #DESCRIPTION_SEPARATOR}.
+     */
+    private String descriptions;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getYear() {
+        return year;
+    }
+
+    public void setYear(int year) {
+        this.year = year;
+    }
+
+    public byte[] getDays() {
+        return days;
+    }
+
+    public void setDays(byte[] days) {
+        this.days = days;
+    }
+
+    public String getDescriptions() {
+        return descriptions;
+    }
+
+    public void setDescriptions(String descriptions) {
+        this.descriptions = descriptions;
+    }
+
+    @Override
+    public String toString() {
+        return path + " " + year;
+    }
+}
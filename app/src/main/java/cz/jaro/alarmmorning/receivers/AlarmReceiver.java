@@ -6,6 +6,7 @@ import android.content.Intent;
 
 import cz.jaro.alarmmorning.MyLog;
 import cz.jaro.alarmmorning.RingActivity;
+import cz.jaro.alarmmorning.RingLatency;
 import cz.jaro.alarmmorning.SystemAlarm;
 import cz.jaro.alarmmorning.WakeLocker;
 
@@ -23,6 +24,8 @@ public class AlarmReceiver extends BroadcastReceiver {
     @SuppressWarnings("JavadocReference")
     @Override
     public void onReceive(Context context, Intent intent) {
+        RingLatency.checkpoint(RingLatency.STAGE_RECEIVER);
+
         // Prevent device sleep
         WakeLocker.acquire(context);
 
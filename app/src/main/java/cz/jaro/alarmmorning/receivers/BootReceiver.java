@@ -7,8 +7,10 @@ import android.content.Intent;
 import cz.jaro.alarmmorning.Analytics;
 import cz.jaro.alarmmorning.GlobalManager;
 import cz.jaro.alarmmorning.MyLog;
+import cz.jaro.alarmmorning.StartupPipeline;
 import cz.jaro.alarmmorning.WakeLocker;
 import cz.jaro.alarmmorning.checkalarmtime.CheckAlarmTime;
+import cz.jaro.alarmmorning.holiday.HolidayHelper;
 import cz.jaro.alarmmorning.nighttimebell.NighttimeBell;
 
 /**
@@ -26,22 +28,53 @@ public class BootReceiver extends BroadcastReceiver {
         if (action.equals(Intent.ACTION_BOOT_COMPLETED)) {
             MyLog.i("Starting after boot");
 
-            new Analytics(context, Analytics.Event.Start, Analytics.Channel.External, Analytics.ChannelName.Boot).setConfigurationInfo().save();
-
-            MyLog.i("Setting alarm on boot");
             GlobalManager globalManager = GlobalManager.getInstance();
-            globalManager.firstSetAlarm();
 
-            MyLog.i("Starting CheckAlarmTime on boot");
-            CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(context);
-            checkAlarmTime.checkAndRegister();
+            StartupPipeline pipeline = new StartupPipeline("Boot");
+
+            pipeline.add("Analytics", globalManager.background(), () ->
+                    new Analytics(context, Analytics.Event.Start, Analytics.Channel.External, Analytics.ChannelName.Boot).setConfigurationInfo().save());
+
+            // The alarm is set after the holiday table is filled, so that determining the holidays doesn't load jollyday
+            StartupPipeline.Stage holidays = pipeline.add("Holidays", globalManager.engine(), () -> {
+                MyLog.i("Updating holidays on boot");
+                HolidayHelper.getInstance().updateHolidayTable();
+            });
+
+            pipeline.add("Set alarm", globalManager.engine(), () -> {
+                MyLog.i("Setting alarm on boot");
+                globalManager.firstSetAlarm();
+            }, holidays);
 
-            MyLog.i("Starting NighttimeBell on boot");
-            NighttimeBell nighttimeBell = NighttimeBell.getInstance(context);
-            nighttimeBell.checkAndRegister();
+            pipeline.add("CheckAlarmTime", globalManager.background(), () -> {
+                MyLog.i("Starting CheckAlarmTime on boot");
+                CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(context);
+                checkAlarmTime.checkAndRegister();
+            });
+
+            pipeline.add("NighttimeBell", globalManager.background(), () -> {
+                MyLog.i("Starting NighttimeBell on boot");
+                NighttimeBell nighttimeBell = NighttimeBell.getInstance(context);
+                nighttimeBell.checkAndRegister();
+            });
+
+            PendingResult pendingResult = goAsync();
+            pipeline.start(() -> finish(pendingResult));
+        } else {
+            WakeLocker.release();
         }
+    }
 
+    /**
+     * Finish the asynchronous processing of the broadcast.
+     *
+     * @param pendingResult The result returned by {@link #goAsync()}. It's null if the receiver was not called by the system.
+     */
+    static void finish(PendingResult pendingResult) {
         WakeLocker.release();
+        if (pendingResult != null) {
+            pendingResult.finish();
+        }
     }
 
 }
\ No newline at end of file
@@ -25,8 +25,10 @@ public class TimeChangedReceiver extends BroadcastReceiver {
 
         new Analytics(context, Analytics.Event.Start, Analytics.Channel.External, Analytics.ChannelName.TimeChange).setConfigurationInfo().save();
 
-        MyLog.i("Setting alarm on time change");
         GlobalManager globalManager = GlobalManager.getInstance();
+        globalManager.onTimeOrTimeZoneChange();
+
+        MyLog.i("Setting alarm on time change");
         globalManager.firstSetAlarm();
 
         MyLog.i("Setting CheckAlarmTime on time change");
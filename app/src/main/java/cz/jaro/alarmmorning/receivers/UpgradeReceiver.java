@@ -20,8 +20,10 @@ import cz.jaro.alarmmorning.JSONSharedPreferences;
 import cz.jaro.alarmmorning.MyLog;
 import cz.jaro.alarmmorning.R;
 import cz.jaro.alarmmorning.SharedPreferencesHelper;
+import cz.jaro.alarmmorning.StartupPipeline;
 import cz.jaro.alarmmorning.WakeLocker;
 import cz.jaro.alarmmorning.checkalarmtime.CheckAlarmTime;
+import cz.jaro.alarmmorning.holiday.HolidayHelper;
 import cz.jaro.alarmmorning.model.Day;
 import cz.jaro.alarmmorning.nighttimebell.CustomAlarmTone;
 import cz.jaro.alarmmorning.nighttimebell.NighttimeBell;
@@ -44,32 +46,55 @@ public class UpgradeReceiver extends BroadcastReceiver {
         if (action.equals(Intent.ACTION_MY_PACKAGE_REPLACED)) {
             MyLog.i("Starting after upgrade");
 
-            new Analytics(context, Analytics.Event.Start, Analytics.Channel.External, Analytics.ChannelName.Upgrade).setConfigurationInfo().save();
-
-            // Update default values of preferences
-            PreferenceManager.setDefaultValues(context, R.xml.preferences, false);
-
-            MyLog.i("Updating preferences");
-            updateData(context);
-
-            MyLog.i("Setting alarm on update");
             GlobalManager globalManager = GlobalManager.getInstance();
-            globalManager.firstSetAlarm();
 
-            MyLog.i("Starting CheckAlarmTime on update");
-            CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(context);
-            checkAlarmTime.checkAndRegister();
-
-            MyLog.i("Starting NighttimeBell on update");
-            NighttimeBell nighttimeBell = NighttimeBell.getInstance(context);
-            nighttimeBell.checkAndRegister();
-
-            MyLog.i("Installing files");
-            CustomAlarmTone customAlarmTone = new CustomAlarmTone(context);
-            customAlarmTone.install();
+            StartupPipeline pipeline = new StartupPipeline("Upgrade");
+
+            pipeline.add("Analytics", globalManager.background(), () ->
+                    new Analytics(context, Analytics.Event.Start, Analytics.Channel.External, Analytics.ChannelName.Upgrade).setConfigurationInfo().save());
+
+            StartupPipeline.Stage updateData = pipeline.add("Update data", globalManager.engine(), () -> {
+                // Update default values of preferences
+                PreferenceManager.setDefaultValues(context, R.xml.preferences, false);
+
+                MyLog.i("Updating preferences");
+                updateData(context);
+            });
+
+            // The alarm is set after the holiday table is filled, so that determining the holidays doesn't load jollyday
+            StartupPipeline.Stage holidays = pipeline.add("Holidays", globalManager.engine(), () -> {
+                MyLog.i("Updating holidays on update");
+                HolidayHelper.getInstance().updateHolidayTable();
+            }, updateData);
+
+            pipeline.add("Set alarm", globalManager.engine(), () -> {
+                MyLog.i("Setting alarm on update");
+                globalManager.firstSetAlarm();
+            }, holidays);
+
+            pipeline.add("CheckAlarmTime", globalManager.background(), () -> {
+                MyLog.i("Starting CheckAlarmTime on update");
+                CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(context);
+                checkAlarmTime.checkAndRegister();
+            }, updateData);
+
+            pipeline.add("NighttimeBell", globalManager.background(), () -> {
+                MyLog.i("Starting NighttimeBell on update");
+                NighttimeBell nighttimeBell = NighttimeBell.getInstance(context);
+                nighttimeBell.checkAndRegister();
+            }, updateData);
+
+            pipeline.add("Install files", globalManager.background(), () -> {
+                MyLog.i("Installing files");
+                CustomAlarmTone customAlarmTone = new CustomAlarmTone(context);
+                customAlarmTone.install();
+            });
+
+            PendingResult pendingResult = goAsync();
+            pipeline.start(() -> BootReceiver.finish(pendingResult));
+        } else {
+            WakeLocker.release();
         }
-
-        WakeLocker.release();
     }
 
     // Update state - persisted data, preferences, ...
@@ -86,6 +111,8 @@ public class UpgradeReceiver extends BroadcastReceiver {
                     updateTo11();
                     break;
             }
+
+            updateDismissedAlarmsToDatabase();
         } catch (PackageManager.NameNotFoundException e) {
             MyLog.e("Cannot update preferences", e);
         }
@@ -137,4 +164,13 @@ public class UpgradeReceiver extends BroadcastReceiver {
         }
         return set;
     }
-}
\ No newline at end of file
+
+    // Update dismissed alarms to database
+    // ----------------------------------
+
+    private void updateDismissedAlarmsToDatabase() {
+        // The dismissed alarms moved from the preferences to the database. The migration removes the preference, so it is done only once.
+        GlobalManager globalManager = GlobalManager.getInstance();
+        globalManager.migrateDismissedAlarms();
+    }
+}
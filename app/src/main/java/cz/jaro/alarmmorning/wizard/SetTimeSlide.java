@@ -209,13 +209,7 @@ public class SetTimeSlide extends BaseFragment implements TimePicker.OnTimeChang
             java.util.Calendar dayEnd = endOfToday(dayIn);
 
             CalendarHelper calendarHelper = new CalendarHelper(context);
-            CalendarEventFilter notAllDay = new CalendarEventFilter() {
-                @Override
-                public boolean match(CalendarEvent event) {
-                    return !event.getAllDay();
-                }
-            };
-            CalendarEvent event = calendarHelper.find(dayStart, dayEnd, notAllDay);
+            CalendarEvent event = calendarHelper.find(dayStart, dayEnd, CalendarEventFilter.NOT_ALL_DAY);
 
             if (event != null) {
                 java.util.Calendar targetAlarmTime = (java.util.Calendar) event.getBegin().clone();
@@ -257,19 +251,21 @@ public class SetTimeSlide extends BaseFragment implements TimePicker.OnTimeChang
         Defaults defaults = new Defaults();
         defaults.setHour(hourOfDay);
         defaults.setMinute(minute);
-        for (int i = 0; i < AlarmDataSource.allDaysOfWeek.length; i++) {
-            int dayOfWeek = AlarmDataSource.allDaysOfWeek[i];
-            defaults.setDayOfWeek(dayOfWeek);
+        globalManager.batch(() -> {
+            for (int i = 0; i < AlarmDataSource.allDaysOfWeek.length; i++) {
+                int dayOfWeek = AlarmDataSource.allDaysOfWeek[i];
+                defaults.setDayOfWeek(dayOfWeek);
 
-            com.ibm.icu.util.Calendar c = com.ibm.icu.util.Calendar.getInstance();
-            int dayOfWeekType = c.getDayOfWeekType(dayOfWeek);
-            boolean isWeekend = dayOfWeekType == com.ibm.icu.util.Calendar.WEEKEND;
-            defaults.setState(isWeekend ? Defaults.STATE_DISABLED : Defaults.STATE_ENABLED);
+                com.ibm.icu.util.Calendar c = com.ibm.icu.util.Calendar.getInstance();
+                int dayOfWeekType = c.getDayOfWeekType(dayOfWeek);
+                boolean isWeekend = dayOfWeekType == com.ibm.icu.util.Calendar.WEEKEND;
+                defaults.setState(isWeekend ? Defaults.STATE_DISABLED : Defaults.STATE_ENABLED);
 
-            Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Wizard);
+                Analytics analytics = new Analytics(Analytics.Channel.Activity, Analytics.ChannelName.Wizard);
 
-            globalManager.modifyDefault(defaults, analytics);
-        }
+                globalManager.modifyDefault(defaults, analytics);
+            }
+        });
     }
 
     @Override
@@ -5,13 +5,26 @@ import cz.jaro.alarmmorning.AlarmMorningActivity0Test;
 import cz.jaro.alarmmorning.AlarmMorningActivityTest;
 import cz.jaro.alarmmorning.BootReceiver2Test;
 import cz.jaro.alarmmorning.BootReceiverTest;
+import cz.jaro.alarmmorning.RingLatencyTest;
+import cz.jaro.alarmmorning.StartupPipelineTest;
+import cz.jaro.alarmmorning.SystemAlarmPipelineTest;
 import cz.jaro.alarmmorning.app.CalendarWithDayAlarmTest;
 import cz.jaro.alarmmorning.app.CalendarWithOneTimeAlarmTest;
 import cz.jaro.alarmmorning.app.CalendarWithTwoAlarmsTest;
+import cz.jaro.alarmmorning.checkalarmtime.CalendarEventChangeReceiverAsJobTest;
+import cz.jaro.alarmmorning.checkalarmtime.CheckAlarmTimeCalendarBenchmarkTest;
 import cz.jaro.alarmmorning.clock.FixedClockTest;
 import cz.jaro.alarmmorning.clock.SystemClockTest;
 import cz.jaro.alarmmorning.holiday.HolidayHelper1HolidaysTest;
+import cz.jaro.alarmmorning.holiday.HolidayHelper2CacheTest;
+import cz.jaro.alarmmorning.holiday.HolidayHelper3TableTest;
 import cz.jaro.alarmmorning.holiday.HolidayHelperTest;
+import cz.jaro.alarmmorning.model.AlarmDataSource1LoadDaysTest;
+import cz.jaro.alarmmorning.model.AlarmDataSource2DefaultsCacheTest;
+import cz.jaro.alarmmorning.model.AlarmDataSource3OneTimeAlarmIndexTest;
+import cz.jaro.alarmmorning.model.AlarmDataSource4EpochDayTest;
+import cz.jaro.alarmmorning.model.AlarmDataSource5StatementBenchmarkTest;
+import cz.jaro.alarmmorning.model.AlarmTimelineTest;
 import cz.jaro.alarmmorning.model.Day2Test;
 import cz.jaro.alarmmorning.model.DayTest;
 import cz.jaro.alarmmorning.model.DefaultsTest;
@@ -23,6 +36,13 @@ import cz.jaro.alarmmorning.model.GlobalManager1NextAlarm4HolidaysTest;
 import cz.jaro.alarmmorning.model.GlobalManager1NextAlarm5OneTimeAlarmTest;
 import cz.jaro.alarmmorning.model.GlobalManager1NextAlarm6TwoOneTimeAlarmsTest;
 import cz.jaro.alarmmorning.model.GlobalManager1NextAlarm7TwoOneTimeAlarmsAtTheSameTimeTest;
+import cz.jaro.alarmmorning.model.GlobalManager2BatchTest;
+import cz.jaro.alarmmorning.model.GlobalManager3EngineTest;
+import cz.jaro.alarmmorning.model.GlobalManager4DismissedAlarmTest;
+import cz.jaro.alarmmorning.model.GlobalManager5StateContextTest;
+import cz.jaro.alarmmorning.model.GlobalManager6IncrementalNextActionTest;
+import cz.jaro.alarmmorning.model.GlobalManager7WarmUpTest;
+import cz.jaro.alarmmorning.model.NextDayAlarmResolverTest;
 
 /**
  * Complete set of instrumented tests.
@@ -33,13 +53,24 @@ import cz.jaro.alarmmorning.model.GlobalManager1NextAlarm7TwoOneTimeAlarmsAtTheS
         Day2Test.class,
         DefaultsTest.class,
 
+        AlarmDataSource1LoadDaysTest.class,
+        AlarmDataSource2DefaultsCacheTest.class,
+        AlarmDataSource3OneTimeAlarmIndexTest.class,
+        AlarmDataSource4EpochDayTest.class,
+        AlarmDataSource5StatementBenchmarkTest.class,
+
         SystemClockTest.class,
         FixedClockTest.class,
 
         BootReceiverTest.class,
         BootReceiver2Test.class,
+        StartupPipelineTest.class,
+        SystemAlarmPipelineTest.class,
+        RingLatencyTest.class,
 
         HolidayHelper1HolidaysTest.class,
+        HolidayHelper2CacheTest.class,
+        HolidayHelper3TableTest.class,
         HolidayHelperTest.class,
 
         GlobalManager1NextAlarm0NoAlarmTest.class,
@@ -51,9 +82,20 @@ import cz.jaro.alarmmorning.model.GlobalManager1NextAlarm7TwoOneTimeAlarmsAtTheS
         GlobalManager1NextAlarm6TwoOneTimeAlarmsTest.class,
         GlobalManager1NextAlarm7TwoOneTimeAlarmsAtTheSameTimeTest.class,
 
+        GlobalManager2BatchTest.class,
+        GlobalManager3EngineTest.class,
+        GlobalManager4DismissedAlarmTest.class,
+        GlobalManager5StateContextTest.class,
+        GlobalManager6IncrementalNextActionTest.class,
+        GlobalManager7WarmUpTest.class,
+        NextDayAlarmResolverTest.class,
+        AlarmTimelineTest.class,
+
         CalendarWithDayAlarmTest.class,
         CalendarWithOneTimeAlarmTest.class,
         CalendarWithTwoAlarmsTest.class,
+        CheckAlarmTimeCalendarBenchmarkTest.class,
+        CalendarEventChangeReceiverAsJobTest.class,
 
         AlarmMorningActivity0Test.class,
         AlarmMorningActivityTest.class
@@ -0,0 +1,112 @@
+package cz.jaro.alarmmorning;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the measurement of the ring latency.
+ */
+public class RingLatencyTest extends FixedTimeTest {
+
+    private static final long RECEIVE_TIME = 1000000;
+
+    private void ring(boolean warmedUp, long activity, long sound) {
+        RingLatency.checkpoint(RingLatency.STAGE_RECEIVER, RECEIVE_TIME);
+        RingLatency.checkpoint(RingLatency.STAGE_SYSTEM_ALARM, RECEIVE_TIME + 1);
+        RingLatency.checkpoint(RingLatency.STAGE_GLOBAL_MANAGER, RECEIVE_TIME + 2);
+        RingLatency.checkpoint(RingLatency.STAGE_ACTIVITY, RECEIVE_TIME + activity);
+        assertThat(RingLatency.checkpointSound(warmedUp, RECEIVE_TIME + sound), is(true));
+    }
+
+    private int count(String name) {
+        JSONArray histogram = RingLatency.loadHistograms().optJSONArray(name);
+        if (histogram == null) return 0;
+
+        int total = 0;
+        for (int i = 0; i < histogram.length(); i++) {
+            total += histogram.optInt(i);
+        }
+        return total;
+    }
+
+    @Test
+    public void t10_percentile() {
+        assertThat(RingLatency.percentile(new int[RingLatency.BUCKETS.length + 1], 50), is(-1L));
+
+        int[] counts = new int[RingLatency.BUCKETS.length + 1];
+        counts[0] = 50; // ≤10 ms
+        counts[3] = 40; // ≤100 ms
+        counts[RingLatency.BUCKETS.length] = 10; // >20000 ms
+
+        assertThat(RingLatency.percentile(counts, 50), is(10L));
+        assertThat(RingLatency.percentile(counts, 51), is(100L));
+        assertThat(RingLatency.percentile(counts, 90), is(100L));
+        assertThat(RingLatency.percentile(counts, 99), is(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void t20_histograms() {
+        ring(false, 100, 300);
+        ring(false, 150, 400);
+
+        assertThat(count(RingLatency.STAGE_NAMES[RingLatency.STAGE_SYSTEM_ALARM]), is(2));
+        assertThat(count(RingLatency.STAGE_NAMES[RingLatency.STAGE_ACTIVITY]), is(2));
+        assertThat(count(RingLatency.STAGE_NAMES[RingLatency.STAGE_SOUND]), is(2));
+
+        JSONArray sound = RingLatency.loadHistograms().optJSONArray(RingLatency.STAGE_NAMES[RingLatency.STAGE_SOUND]);
+        assertThat(sound.optInt(5), is(2)); // ≤500 ms
+    }
+
+    @Test
+    public void t30_warmUpSplit() {
+        ring(true, 100, 200);
+        ring(false, 100, 2000);
+        ring(false, 100, 3000);
+
+        assertThat(count(RingLatency.HISTOGRAM_WITH_WARM_UP), is(1));
+        assertThat(count(RingLatency.HISTOGRAM_WITHOUT_WARM_UP), is(2));
+    }
+
+    @Test
+    public void t40_notReceived() {
+        ring(false, 100, 300);
+
+        // The sound started again without receiving the system alarm (e.g. after the activity was restarted)
+        assertThat(RingLatency.checkpointSound(false, RECEIVE_TIME + 500), is(false));
+
+        assertThat(count(RingLatency.STAGE_NAMES[RingLatency.STAGE_SOUND]), is(1));
+    }
+
+    @Test
+    public void t50_stale() {
+        RingLatency.checkpoint(RingLatency.STAGE_RECEIVER, RECEIVE_TIME);
+        assertThat(RingLatency.checkpointSound(false, RECEIVE_TIME + RingLatency.MAX_LATENCY + 1), is(false));
+
+        assertThat(count(RingLatency.STAGE_NAMES[RingLatency.STAGE_SOUND]), is(0));
+    }
+
+    @Test
+    public void t60_describe() throws Exception {
+        assertThat(RingLatency.describe(), is(""));
+
+        ring(true, 100, 300);
+
+        String description = RingLatency.describe();
+        assertThat(description.contains(RingLatency.STAGE_NAMES[RingLatency.STAGE_SOUND] + ": p50 ≤500 ms"), is(true));
+        assertThat(description.contains(RingLatency.HISTOGRAM_WITH_WARM_UP), is(true));
+        assertThat(description.contains(RingLatency.HISTOGRAM_WITHOUT_WARM_UP), is(false));
+
+        String json = RingLatency.lastRingingToJSONString();
+        assertThat(json, is(notNullValue()));
+        JSONObject jsonObject = new JSONObject(json);
+        assertThat(jsonObject.getLong(RingLatency.STAGE_NAMES[RingLatency.STAGE_ACTIVITY]), is(100L));
+        assertThat(jsonObject.getLong(RingLatency.STAGE_NAMES[RingLatency.STAGE_SOUND]), is(300L));
+        assertThat(jsonObject.opt("p50"), is(notNullValue()));
+    }
+
+}
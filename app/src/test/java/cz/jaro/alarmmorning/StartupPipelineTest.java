@@ -0,0 +1,111 @@
+package cz.jaro.alarmmorning;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the pipeline of the tasks that are done on the system start.
+ */
+public class StartupPipelineTest extends FixedTimeTest {
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+
+    private Runnable record(String name) {
+        return () -> log.add(name);
+    }
+
+    @Test
+    public void t10_empty() {
+        StartupPipeline pipeline = new StartupPipeline("Test");
+        pipeline.start(record("finish"));
+
+        assertThat(log.size(), is(1));
+    }
+
+    @Test
+    public void t20_dependencies() {
+        StartupPipeline pipeline = new StartupPipeline("Test");
+        StartupPipeline.Stage a = pipeline.add("a", Runnable::run, record("a"));
+        StartupPipeline.Stage b = pipeline.add("b", Runnable::run, record("b"), a);
+        pipeline.add("c", Runnable::run, record("c"), a, b);
+        pipeline.start(record("finish"));
+
+        assertThat(log.size(), is(4));
+        assertThat(log.get(0), is("a"));
+        assertThat(log.get(1), is("b"));
+        assertThat(log.get(2), is("c"));
+        assertThat(log.get(3), is("finish"));
+    }
+
+    @Test
+    public void t30_failedStage() {
+        StartupPipeline pipeline = new StartupPipeline("Test");
+        StartupPipeline.Stage a = pipeline.add("a", Runnable::run, () -> {
+            throw new IllegalStateException("Test");
+        });
+        pipeline.add("b", Runnable::run, record("b"), a);
+        pipeline.start(record("finish"));
+
+        assertThat(log.size(), is(2));
+        assertThat(log.get(1), is("finish"));
+    }
+
+    @Test
+    public void t35_stageFailedWithError() {
+        StartupPipeline pipeline = new StartupPipeline("Test");
+        StartupPipeline.Stage a = pipeline.add("a", Runnable::run, () -> {
+            throw new Error("Test");
+        });
+        pipeline.add("b", Runnable::run, record("b"), a);
+        try {
+            pipeline.start(record("finish"));
+        } catch (Error e) {
+            // The error is thrown by the synchronous executor after the pipeline finished
+        }
+
+        assertThat(log.size(), is(2));
+        assertThat(log.get(1), is("finish"));
+    }
+
+    @Test
+    public void t40_concurrent() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            // Both stages must run at the same time, otherwise the first one waits for the second one forever
+            CountDownLatch bothStarted = new CountDownLatch(2);
+            Runnable waitForOther = () -> {
+                bothStarted.countDown();
+                try {
+                    bothStarted.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            };
+
+            CountDownLatch finished = new CountDownLatch(1);
+
+            StartupPipeline pipeline = new StartupPipeline("Test");
+            StartupPipeline.Stage a = pipeline.add("a", executor, waitForOther);
+            StartupPipeline.Stage b = pipeline.add("b", executor, waitForOther);
+            pipeline.add("c", executor, record("c"), a, b);
+            pipeline.start(finished::countDown);
+
+            assertThat(finished.await(5, TimeUnit.SECONDS), is(true));
+            assertThat(bothStarted.getCount(), is(0L));
+            assertThat(log.size(), is(1));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
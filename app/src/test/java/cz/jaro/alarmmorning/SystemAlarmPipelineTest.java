@@ -0,0 +1,211 @@
+package cz.jaro.alarmmorning;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.content.Intent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowAlarmManager;
+import org.robolectric.shadows.ShadowPendingIntent;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import cz.jaro.alarmmorning.clock.FixedClock;
+import cz.jaro.alarmmorning.model.AppAlarm;
+import cz.jaro.alarmmorning.model.Day;
+import cz.jaro.alarmmorning.receivers.AlarmReceiver;
+
+import static cz.jaro.alarmmorning.model.DayTest.DAY;
+import static cz.jaro.alarmmorning.model.DayTest.HOUR_DAY;
+import static cz.jaro.alarmmorning.model.DayTest.MINUTE_DAY;
+import static cz.jaro.alarmmorning.model.DayTest.MONTH;
+import static cz.jaro.alarmmorning.model.DayTest.YEAR;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the system alarms registered in advance (see {@link SettingsActivity#PREF_SYSTEM_ALARM_PIPELINE}).
+ */
+public class SystemAlarmPipelineTest extends FixedTimeTest {
+
+    private Context context;
+    private ShadowAlarmManager shadowAlarmManager;
+
+    @Before
+    public void before() {
+        super.before();
+
+        context = RuntimeEnvironment.application.getApplicationContext();
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        shadowAlarmManager = Shadows.shadowOf(alarmManager);
+
+        SharedPreferencesHelper.save(SettingsActivity.PREF_SYSTEM_ALARM_PIPELINE, true);
+
+        consumeSystemAlarms();
+    }
+
+    private void setDayAlarm(int daysFromToday, int hour) {
+        Day day = globalManager.loadDay(new GregorianCalendar(YEAR, MONTH, DAY + daysFromToday));
+        day.setState(Day.STATE_ENABLED);
+        day.setHourDay(hour);
+        day.setMinuteDay(MINUTE_DAY);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+    }
+
+    /**
+     * Consume the scheduled system alarms.
+     *
+     * @return The scheduled system alarms, each described by the request code, action and time.
+     */
+    private Set<String> consumeSystemAlarms() {
+        Set<String> systemAlarms = new HashSet<>();
+
+        ShadowAlarmManager.ScheduledAlarm scheduledAlarm;
+        while ((scheduledAlarm = shadowAlarmManager.getNextScheduledAlarm()) != null) {
+            ShadowPendingIntent shadowPendingIntent = Shadows.shadowOf(scheduledAlarm.operation);
+            systemAlarms.add(describe(shadowPendingIntent.getRequestCode(), shadowPendingIntent.getSavedIntent().getAction(), scheduledAlarm.triggerAtTime));
+        }
+
+        return systemAlarms;
+    }
+
+    private static String describe(int requestCode, String action, long time) {
+        return requestCode + " " + action + " " + time;
+    }
+
+    private static String describe(int requestCode, String action, Calendar time) {
+        return describe(requestCode, action, time.getTimeInMillis());
+    }
+
+    private void wakeUp(String action, Calendar time, AppAlarm appAlarm) {
+        shadowGlobalManager.setClock(new FixedClock(time));
+
+        Intent intent = new Intent(context, AlarmReceiver.class);
+        intent.setAction(action);
+        if (appAlarm != null) {
+            intent.putExtra(GlobalManager.PERSIST_ALARM_TYPE, appAlarm.getClass().getSimpleName());
+            intent.putExtra(GlobalManager.PERSIST_ALARM_ID, appAlarm.getPersistenceId());
+        }
+
+        SystemAlarm systemAlarm = SystemAlarm.getInstance(context);
+        systemAlarm.onSystemAlarm(intent);
+    }
+
+    @Test
+    public void t10_nearFutureAndRingAreRegistered() {
+        setDayAlarm(1, HOUR_DAY);
+
+        Calendar alarmTime = new GregorianCalendar(YEAR, MONTH, DAY + 1, HOUR_DAY, MINUTE_DAY);
+        Calendar nearFutureTime = GlobalManager.getNearFutureTime(alarmTime);
+
+        Set<String> expected = new HashSet<>();
+        expected.add(describe(1, SystemAlarm.ACTION_RING_IN_NEAR_FUTURE, nearFutureTime));
+        expected.add(describe(2, SystemAlarm.ACTION_RING, alarmTime));
+        assertThat(consumeSystemAlarms(), is(expected));
+
+        // Wake up in near future
+        wakeUp(SystemAlarm.ACTION_RING_IN_NEAR_FUTURE, nearFutureTime, globalManager.loadDay(alarmTime));
+
+        assertThat("No system alarm is registered", consumeSystemAlarms().isEmpty(), is(true));
+
+        NextAction nextAction = globalManager.getNextAction();
+        assertThat(nextAction.action, is(SystemAlarm.ACTION_RING));
+        assertThat(nextAction.time.getTimeInMillis(), is(alarmTime.getTimeInMillis()));
+        assertThat(globalManager.getNextActionQueue().size(), is(1));
+    }
+
+    @Test
+    public void t20_resetAtMidnightIsRegistered() {
+        // Wake up at midnight (there is no queue yet)
+        wakeUp(SystemAlarm.ACTION_SET_SYSTEM_ALARM, new GregorianCalendar(YEAR, MONTH, DAY + 1), null);
+
+        List<Calendar> resetTimes = new ArrayList<>();
+        for (int i = 2; i < 2 + SystemAlarm.PIPELINE_LENGTH; i++) {
+            resetTimes.add(new GregorianCalendar(YEAR, MONTH, DAY + i));
+        }
+
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < resetTimes.size(); i++) {
+            expected.add(describe(1 + i, SystemAlarm.ACTION_SET_SYSTEM_ALARM, resetTimes.get(i)));
+        }
+        assertThat(consumeSystemAlarms(), is(expected));
+
+        // Wake up at the next midnight
+        wakeUp(SystemAlarm.ACTION_SET_SYSTEM_ALARM, resetTimes.get(0), null);
+
+        assertThat("No system alarm is registered", consumeSystemAlarms().isEmpty(), is(true));
+        assertThat(globalManager.getNextAction().time.getTimeInMillis(), is(resetTimes.get(1).getTimeInMillis()));
+        assertThat(globalManager.getNextActionQueue().size(), is(SystemAlarm.PIPELINE_LENGTH - 1));
+    }
+
+    @Test
+    public void t30_changeRegistersTheQueueAgain() {
+        setDayAlarm(1, HOUR_DAY);
+        consumeSystemAlarms();
+
+        setDayAlarm(1, HOUR_DAY + 1);
+
+        Calendar alarmTime = new GregorianCalendar(YEAR, MONTH, DAY + 1, HOUR_DAY + 1, MINUTE_DAY);
+
+        Set<String> expected = new HashSet<>();
+        expected.add(describe(1, SystemAlarm.ACTION_RING_IN_NEAR_FUTURE, GlobalManager.getNearFutureTime(alarmTime)));
+        expected.add(describe(2, SystemAlarm.ACTION_RING, alarmTime));
+        assertThat(consumeSystemAlarms(), is(expected));
+        assertThat(globalManager.getNextActionQueue().size(), is(2));
+    }
+
+    @Test
+    public void t35_changeOfLaterAlarmRegistersTheQueueAgain() {
+        // The alarm is just after the horizon, so the first action is the reset at midnight
+        setDayAlarm(GlobalManager.HORIZON_DAYS, HOUR_DAY);
+
+        Calendar resetTime = new GregorianCalendar(YEAR, MONTH, DAY + 1);
+        Calendar alarmTime = new GregorianCalendar(YEAR, MONTH, DAY + GlobalManager.HORIZON_DAYS, HOUR_DAY, MINUTE_DAY);
+
+        Set<String> expected = new HashSet<>();
+        expected.add(describe(1, SystemAlarm.ACTION_SET_SYSTEM_ALARM, resetTime));
+        expected.add(describe(2, SystemAlarm.ACTION_RING_IN_NEAR_FUTURE, GlobalManager.getNearFutureTime(alarmTime)));
+        expected.add(describe(3, SystemAlarm.ACTION_RING, alarmTime));
+        assertThat(consumeSystemAlarms(), is(expected));
+
+        // The first action doesn't change
+        setDayAlarm(GlobalManager.HORIZON_DAYS, HOUR_DAY + 1);
+
+        Calendar alarmTime2 = new GregorianCalendar(YEAR, MONTH, DAY + GlobalManager.HORIZON_DAYS, HOUR_DAY + 1, MINUTE_DAY);
+
+        Set<String> expected2 = new HashSet<>();
+        expected2.add(describe(1, SystemAlarm.ACTION_SET_SYSTEM_ALARM, resetTime));
+        expected2.add(describe(2, SystemAlarm.ACTION_RING_IN_NEAR_FUTURE, GlobalManager.getNearFutureTime(alarmTime2)));
+        expected2.add(describe(3, SystemAlarm.ACTION_RING, alarmTime2));
+        assertThat(consumeSystemAlarms(), is(expected2));
+
+        // Wake up at midnight, the already registered actions are used
+        wakeUp(SystemAlarm.ACTION_SET_SYSTEM_ALARM, resetTime, null);
+
+        assertThat("No system alarm is registered", consumeSystemAlarms().isEmpty(), is(true));
+
+        NextAction nextAction = globalManager.getNextAction();
+        assertThat(nextAction.action, is(SystemAlarm.ACTION_RING_IN_NEAR_FUTURE));
+        assertThat(nextAction.time.getTimeInMillis(), is(GlobalManager.getNearFutureTime(alarmTime2).getTimeInMillis()));
+    }
+
+    @Test
+    public void t40_offByDefault() {
+        SharedPreferencesHelper.save(SettingsActivity.PREF_SYSTEM_ALARM_PIPELINE, SettingsActivity.PREF_SYSTEM_ALARM_PIPELINE_DEFAULT);
+
+        setDayAlarm(1, HOUR_DAY);
+
+        assertThat(consumeSystemAlarms().size(), is(1));
+        assertThat(globalManager.getNextActionQueue().isEmpty(), is(true));
+    }
+
+}
@@ -0,0 +1,395 @@
+package cz.jaro.alarmmorning.calendar;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.CursorWrapper;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.provider.CalendarContract;
+
+import org.robolectric.Robolectric;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fake calendar provider that serves {@link CalendarContract.Instances} from generated data.
+ * <p>
+ * Supports the subset of the provider that is used by {@link CalendarHelper}: the URI {@code instances/when/<begin>/<end>}, a selection of conditions on the
+ * numeric columns joined by AND, and a sort order by the numeric columns. Anything else throws {@link IllegalArgumentException}, so that a query that the fake
+ * doesn't evaluate the same way as the real provider is not silently accepted.
+ * <p>
+ * The recurring events are expanded to instances, as the real provider does. The all-day instances start at midnight UTC.
+ */
+public class FakeCalendarProvider extends ContentProvider {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long DAY = 24 * 60 * MINUTE;
+
+    private static final Pattern CONDITION = Pattern.compile("\\(?\\s*(\\w+)\\s*(>=|<=|=|>|<)\\s*(\\?|-?\\d+)\\s*\\)?");
+    private static final Pattern AND = Pattern.compile("\\s+AND\\s+", Pattern.CASE_INSENSITIVE);
+
+    /**
+     * An instance of an event.
+     */
+    private static class Instance {
+        final long eventId;
+        final long begin;
+        final long end;
+        final String title;
+        final String location;
+        final boolean allDay;
+
+        Instance(long eventId, long begin, long end, String title, String location, boolean allDay) {
+            this.eventId = eventId;
+            this.begin = begin;
+            this.end = end;
+            this.title = title;
+            this.location = location;
+            this.allDay = allDay;
+        }
+
+        long getLong(String column) {
+            switch (column) {
+                case CalendarContract.Instances.EVENT_ID:
+                    return eventId;
+                case CalendarContract.Instances.BEGIN:
+                    return begin;
+                case CalendarContract.Instances.END:
+                    return end;
+                case CalendarContract.Instances.ALL_DAY:
+                    return allDay ? 1 : 0;
+                default:
+                    throw new IllegalArgumentException("Unsupported numeric column " + column);
+            }
+        }
+
+        Object get(String column) {
+            switch (column) {
+                case CalendarContract.Instances.TITLE:
+                    return title;
+                case CalendarContract.Instances.EVENT_LOCATION:
+                    return location;
+                default:
+                    return getLong(column);
+            }
+        }
+    }
+
+    private final List<Instance> instances = new ArrayList<>();
+    private boolean sorted = true;
+    private long maxDuration;
+    private long nextEventId = 1;
+
+    private int queryCount;
+    private int rowsRead;
+
+    /**
+     * Create the provider and register it for {@link CalendarContract#AUTHORITY}.
+     *
+     * @return the provider
+     */
+    public static FakeCalendarProvider register() {
+        return Robolectric.buildContentProvider(FakeCalendarProvider.class).create(CalendarContract.AUTHORITY).get();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    /**
+     * Add an event.
+     *
+     * @param title        Title
+     * @param location     Location
+     * @param begin        Begin of the first instance. The time is ignored for all-day events.
+     * @param minutes      Duration (in minutes). All-day events last at least one day.
+     * @param allDay       true if the event is an all-day event
+     * @param intervalDays Number of days between the instances
+     * @param count        Number of instances
+     */
+    public synchronized void addEvent(String title, String location, Calendar begin, int minutes, boolean allDay, int intervalDays, int count) {
+        long eventId = nextEventId++;
+        long duration = allDay ? Math.max(1, minutes * MINUTE / DAY) * DAY : minutes * MINUTE;
+
+        Calendar date = (Calendar) begin.clone();
+        for (int i = 0; i < count; i++) {
+            long beginMillis = allDay ? utcMidnight(date) : date.getTimeInMillis();
+            instances.add(new Instance(eventId, beginMillis, beginMillis + duration, title, location, allDay));
+            date.add(Calendar.DATE, intervalDays);
+        }
+
+        maxDuration = Math.max(maxDuration, duration);
+        sorted = false;
+    }
+
+    private static long utcMidnight(Calendar date) {
+        Calendar utc = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        utc.clear();
+        utc.set(date.get(Calendar.YEAR), date.get(Calendar.MONTH), date.get(Calendar.DAY_OF_MONTH));
+        return utc.getTimeInMillis();
+    }
+
+    /**
+     * Generate a large calendar, like a personal calendar combined with several team calendars. Every morning has a meeting, some mornings have an earlier
+     * one-off event and all-day events.
+     *
+     * @param firstDay First day with events
+     * @param days     Number of days with events
+     * @param seed     Seed of the random generator
+     */
+    public void generate(Calendar firstDay, int days, long seed) {
+        Random random = new Random(seed);
+
+        // Daily meetings
+        for (int i = 0; i < 30; i++) {
+            Calendar begin = at(firstDay, 0, 6 + random.nextInt(12), 15 * random.nextInt(4));
+            addEvent("Daily meeting " + i, "Room " + random.nextInt(10), begin, 15 + 15 * random.nextInt(4), false, 1, days);
+        }
+
+        // Weekly meetings
+        for (int i = 0; i < 20; i++) {
+            Calendar begin = at(firstDay, random.nextInt(7), 7 + random.nextInt(10), 30 * random.nextInt(2));
+            addEvent("Weekly meeting " + i, "Room " + random.nextInt(10), begin, 60, false, 7, days / 7);
+        }
+
+        // One-off events at any time (including the night)
+        for (int i = 0; i < 500; i++) {
+            Calendar begin = at(firstDay, random.nextInt(days), random.nextInt(24), 5 * random.nextInt(12));
+            addEvent("Event " + i, null, begin, 30, false, 1, 1);
+        }
+
+        // All-day events
+        addEvent("Name day", null, firstDay, 0, true, 1, days);
+        for (int i = 0; i < days / 14; i++) {
+            addEvent("Vacation " + i, null, at(firstDay, random.nextInt(days), 0, 0), 3 * 24 * 60, true, 1, 1);
+        }
+    }
+
+    private static Calendar at(Calendar day, int addDays, int hour, int minute) {
+        Calendar calendar = CalendarUtils.addDaysClone(day, addDays);
+        calendar.set(Calendar.HOUR_OF_DAY, hour);
+        calendar.set(Calendar.MINUTE, minute);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar;
+    }
+
+    /**
+     * @return number of instances
+     */
+    public synchronized int size() {
+        return instances.size();
+    }
+
+    /**
+     * @return number of queries since the last {@link #resetCounters()}
+     */
+    public synchronized int getQueryCount() {
+        return queryCount;
+    }
+
+    /**
+     * @return number of rows that the callers moved to since the last {@link #resetCounters()}
+     */
+    public synchronized int getRowsRead() {
+        return rowsRead;
+    }
+
+    public synchronized void resetCounters() {
+        queryCount = 0;
+        rowsRead = 0;
+    }
+
+    /**
+     * Find the begin of the earliest instance that starts between {@code from} and {@code to} by scanning all the instances. Used to check the results of
+     * {@link CalendarHelper}.
+     *
+     * @param from   Beginning of the interval (in milliseconds since epoch)
+     * @param to     End of the interval (in milliseconds since epoch)
+     * @param allDay true if the all-day instances are included
+     * @return the begin of the earliest instance, or null if there is no such instance
+     */
+    public synchronized Long findEarliestBegin(long from, long to, boolean allDay) {
+        Long result = null;
+        for (Instance instance : instances) {
+            if (from <= instance.begin && instance.begin <= to && (allDay || !instance.allDay) && (result == null || instance.begin < result)) {
+                result = instance.begin;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Count the instances that start between {@code from} and {@code to} by scanning all the instances.
+     *
+     * @param from Beginning of the interval (in milliseconds since epoch)
+     * @param to   End of the interval (in milliseconds since epoch)
+     * @return number of instances
+     */
+    public synchronized int countBegins(long from, long to) {
+        int result = 0;
+        for (Instance instance : instances) {
+            if (from <= instance.begin && instance.begin <= to) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 4 || !segments.get(0).equals("instances") || !segments.get(1).equals("when"))
+            throw new IllegalArgumentException("Unsupported URI " + uri);
+        long begin = Long.parseLong(segments.get(2));
+        long end = Long.parseLong(segments.get(3));
+
+        if (projection == null)
+            throw new IllegalArgumentException("Projection is required");
+
+        queryCount++;
+
+        if (!sorted) {
+            instances.sort(Comparator.comparingLong(instance -> instance.begin));
+            sorted = true;
+        }
+
+        Predicate<Instance> condition = parseSelection(selection, selectionArgs);
+
+        // The instances that overlap the interval. An overlapping instance starts at most maxDuration before the interval.
+        List<Instance> result = new ArrayList<>();
+        for (int i = lowerBound(begin - maxDuration); i < instances.size() && instances.get(i).begin <= end; i++) {
+            Instance instance = instances.get(i);
+            if (begin <= instance.end && condition.test(instance)) {
+                result.add(instance);
+            }
+        }
+
+        if (sortOrder != null) {
+            result.sort(parseSortOrder(sortOrder));
+        }
+
+        MatrixCursor cursor = new MatrixCursor(projection, result.size());
+        for (Instance instance : result) {
+            Object[] row = new Object[projection.length];
+            for (int c = 0; c < projection.length; c++) {
+                row[c] = instance.get(projection[c]);
+            }
+            cursor.addRow(row);
+        }
+
+        return new CursorWrapper(cursor) {
+            @Override
+            public boolean moveToNext() {
+                boolean moved = super.moveToNext();
+                if (moved) {
+                    synchronized (FakeCalendarProvider.this) {
+                        rowsRead++;
+                    }
+                }
+                return moved;
+            }
+        };
+    }
+
+    /**
+     * @return the index of the first instance that starts at or after {@code time}
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = instances.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (instances.get(mid).begin < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static Predicate<Instance> parseSelection(String selection, String[] selectionArgs) {
+        Predicate<Instance> result = instance -> true;
+        if (selection == null)
+            return result;
+
+        int arg = 0;
+        for (String term : AND.split(selection.trim())) {
+            Matcher matcher = CONDITION.matcher(term);
+            if (!matcher.matches())
+                throw new IllegalArgumentException("Unsupported selection " + selection);
+
+            String column = matcher.group(1);
+            String operator = matcher.group(2);
+            long value = Long.parseLong(matcher.group(3).equals("?") ? selectionArgs[arg++] : matcher.group(3));
+
+            Predicate<Instance> condition;
+            switch (operator) {
+                case ">=":
+                    condition = instance -> instance.getLong(column) >= value;
+                    break;
+                case "<=":
+                    condition = instance -> instance.getLong(column) <= value;
+                    break;
+                case ">":
+                    condition = instance -> instance.getLong(column) > value;
+                    break;
+                case "<":
+                    condition = instance -> instance.getLong(column) < value;
+                    break;
+                default:
+                    condition = instance -> instance.getLong(column) == value;
+                    break;
+            }
+            result = result.and(condition);
+        }
+        return result;
+    }
+
+    private static Comparator<Instance> parseSortOrder(String sortOrder) {
+        Comparator<Instance> result = null;
+        for (String term : sortOrder.split(",")) {
+            String[] parts = term.trim().split("\\s+");
+            if (2 < parts.length || (parts.length == 2 && !parts[1].equalsIgnoreCase("ASC")))
+                throw new IllegalArgumentException("Unsupported sort order " + sortOrder);
+
+            String column = parts[0];
+            Comparator<Instance> comparator = Comparator.comparingLong(instance -> instance.getLong(column));
+            result = result == null ? comparator : result.thenComparing(comparator);
+        }
+        return result;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("The calendar is read-only");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("The calendar is read-only");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("The calendar is read-only");
+    }
+
+}
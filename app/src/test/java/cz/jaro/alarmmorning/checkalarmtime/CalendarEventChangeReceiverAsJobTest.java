@@ -0,0 +1,137 @@
+package cz.jaro.alarmmorning.checkalarmtime;
+
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.Robolectric;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the job that checks the alarm time after the calendar changes.
+ */
+@Config(sdk = Build.VERSION_CODES.N)
+public class CalendarEventChangeReceiverAsJobTest extends FixedTimeTest {
+
+    private static final Uri EVENT_URI = Uri.parse("content://com.android.calendar/events/1");
+
+    private CalendarEventChangeReceiverAsJob job;
+    private JobScheduler jobScheduler;
+
+    @Before
+    public void before() {
+        super.before();
+
+        resetFlags();
+
+        job = Robolectric.setupService(CalendarEventChangeReceiverAsJob.class);
+
+        Context context = RuntimeEnvironment.application.getApplicationContext();
+        jobScheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        jobScheduler.cancelAll();
+    }
+
+    @After
+    public void resetFlags() {
+        getFlag("running").set(false);
+        getFlag("rerun").set(false);
+    }
+
+    private static AtomicBoolean getFlag(String name) {
+        return ReflectionHelpers.getStaticField(CalendarEventChangeReceiverAsJob.class, name);
+    }
+
+    private static JobParameters params(int triggers) {
+        Uri[] uris = new Uri[triggers];
+        for (int i = 0; i < triggers; i++) {
+            uris[i] = EVENT_URI;
+        }
+
+        JobParameters params = mock(JobParameters.class);
+        when(params.getTriggeredContentUris()).thenReturn(uris);
+        return params;
+    }
+
+    private static int collapsedTriggers() {
+        return (int) SharedPreferencesHelper.load(CalendarEventChangeReceiverAsJob.PERSIST_COLLAPSED_TRIGGERS, 0);
+    }
+
+    @Test
+    public void t10_check() {
+        assertThat(job.onStartJob(params(3)), is(true));
+
+        assertThat("Two changes are collapsed into the first one", collapsedTriggers(), is(2));
+        assertThat(Shadows.shadowOf(job).getIsJobFinished(), is(true));
+        assertThat("Rescheduled after the check", jobScheduler.getAllPendingJobs().size(), is(1));
+        assertThat(getFlag("running").get(), is(false));
+    }
+
+    @Test
+    public void t20_collapsedTriggersAreAdded() {
+        job.onStartJob(params(3));
+        job.onStartJob(params(1));
+        job.onStartJob(params(4));
+
+        assertThat(collapsedTriggers(), is(2 + 0 + 3));
+    }
+
+    @Test
+    public void t30_overlap() {
+        getFlag("running").set(true);
+
+        assertThat(job.onStartJob(params(2)), is(false));
+
+        assertThat("All changes are collapsed into the running check", collapsedTriggers(), is(2));
+        assertThat(getFlag("rerun").get(), is(true));
+        assertThat(Shadows.shadowOf(job).getIsJobFinished(), is(false));
+        assertThat("Rescheduled before returning", jobScheduler.getAllPendingJobs().size(), is(1));
+    }
+
+    @Test
+    public void t40_rerun() {
+        Context context = RuntimeEnvironment.application.getApplicationContext();
+        CheckAlarmTime checkAlarmTime = spy(CheckAlarmTime.getInstance(context));
+        ReflectionHelpers.setStaticField(CheckAlarmTime.class, "instance", checkAlarmTime);
+
+        // The job is started again during the first check
+        CalendarEventChangeReceiverAsJob overlappingJob = Robolectric.setupService(CalendarEventChangeReceiverAsJob.class);
+        AtomicBoolean overlapped = new AtomicBoolean();
+        doAnswer(invocation -> {
+            if (overlapped.compareAndSet(false, true)) {
+                assertThat(overlappingJob.onStartJob(params(1)), is(false));
+            }
+            return null;
+        }).when(checkAlarmTime).onCalendarUpdated();
+
+        assertThat(job.onStartJob(params(1)), is(true));
+
+        verify(checkAlarmTime, times(2)).onCalendarUpdated();
+        assertThat(collapsedTriggers(), is(1));
+        assertThat(getFlag("running").get(), is(false));
+        assertThat(getFlag("rerun").get(), is(false));
+        assertThat(Shadows.shadowOf(job).getIsJobFinished(), is(true));
+    }
+
+}
@@ -0,0 +1,205 @@
+package cz.jaro.alarmmorning.checkalarmtime;
+
+import android.Manifest;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.MyLog;
+import cz.jaro.alarmmorning.SettingsActivity;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
+import cz.jaro.alarmmorning.calendar.CalendarEvent;
+import cz.jaro.alarmmorning.calendar.CalendarEventFilter;
+import cz.jaro.alarmmorning.calendar.CalendarHelper;
+import cz.jaro.alarmmorning.calendar.CalendarSnapshot;
+import cz.jaro.alarmmorning.calendar.FakeCalendarProvider;
+import cz.jaro.alarmmorning.model.DayTest;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.justBeforeNoonToday;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Benchmark of the calendar path of the check alarm time on a large calendar (see {@link FakeCalendarProvider}). Measures the per-call latency and the
+ * allocated memory of the calendar queries and of {@link CheckAlarmTime#onCalendarUpdated()}.
+ * <p>
+ * The latencies and allocations are logged. Only the results and the number of queries and read rows are checked, since the latencies depend on the machine.
+ * The timing loops are run with the full number of iterations only with {@code -Pbenchmark}.
+ */
+public class CheckAlarmTimeCalendarBenchmarkTest extends FixedTimeTest {
+
+    private static final boolean BENCHMARK = Boolean.getBoolean("benchmark");
+
+    private static final int WARM_UP = BENCHMARK ? 50 : 0;
+    private static final int ITERATIONS = BENCHMARK ? 500 : 5;
+
+    /**
+     * Number of days with events.
+     */
+    private static final int DAYS = 400;
+
+    private Context context;
+    private FakeCalendarProvider provider;
+    private CalendarHelper calendarHelper;
+
+    /**
+     * The first morning of the benchmark. The calendar has events in the week before and a year after.
+     */
+    private Calendar date;
+
+    private interface Call {
+        void call(int i);
+    }
+
+    @Before
+    public void before() {
+        super.before();
+
+        context = RuntimeEnvironment.application.getApplicationContext();
+        Shadows.shadowOf(RuntimeEnvironment.application).grantPermissions(Manifest.permission.READ_CALENDAR);
+
+        date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY);
+
+        provider = FakeCalendarProvider.register();
+        provider.generate(addDaysClone(date, -7), DAYS, 0);
+
+        calendarHelper = new CalendarHelper(context);
+    }
+
+    private Calendar morning(int i) {
+        return addDaysClone(date, i % (DAYS - 2 * WeekAhead.DAYS));
+    }
+
+    /**
+     * @return bytes allocated by the current thread, or -1 if the JVM doesn't support the measurement
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean sunThreadMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+            if (sunThreadMXBean.isThreadAllocatedMemoryEnabled()) {
+                return sunThreadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    private void measure(String name, Call call) {
+        for (int i = 0; i < WARM_UP; i++) {
+            call.call(i);
+        }
+        provider.resetCounters();
+
+        long allocatedStart = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            call.call(i);
+        }
+        long nanoTime = System.nanoTime() - start;
+        long allocated = allocatedStart == -1 ? -1 : allocatedBytes() - allocatedStart;
+
+        MyLog.i(String.format("%-25s %8.1f us/call, %s, %5.1f queries/call, %6.1f rows/call", name,
+                nanoTime / 1000.0 / ITERATIONS,
+                allocated == -1 ? "allocation n/a" : String.format("%8.1f kB/call", allocated / 1024.0 / ITERATIONS),
+                provider.getQueryCount() / (double) ITERATIONS, provider.getRowsRead() / (double) ITERATIONS));
+    }
+
+    @Test
+    public void t00_calendar() {
+        assertTrue(10000 <= provider.size());
+    }
+
+    @Test
+    public void t10_find() {
+        measure("find", i -> {
+            Calendar morningStart = morning(i);
+            calendarHelper.find(morningStart, justBeforeNoonToday(morningStart), CalendarEventFilter.NOT_ALL_DAY);
+        });
+
+        // The all-day instances are skipped by the query, so only the earliest instance is read
+        assertThat(provider.getQueryCount(), is(ITERATIONS));
+        assertThat(provider.getRowsRead(), is(ITERATIONS));
+
+        for (int i = 0; i < DAYS - 2 * WeekAhead.DAYS; i++) {
+            Calendar morningStart = morning(i);
+            Calendar morningNoon = justBeforeNoonToday(morningStart);
+            CalendarEvent event = calendarHelper.find(morningStart, morningNoon, CalendarEventFilter.NOT_ALL_DAY);
+
+            Long expected = provider.findEarliestBegin(morningStart.getTimeInMillis(), morningNoon.getTimeInMillis(), false);
+            assertThat(event != null ? event.getBegin().getTimeInMillis() : null, is(expected));
+            assertThat(event == null || !event.getAllDay(), is(true));
+        }
+    }
+
+    @Test
+    public void t20_findEarliestPerMorning() {
+        measure("find (week)", i -> {
+            for (int d = 0; d < WeekAhead.DAYS; d++) {
+                Calendar morningStart = morning(i + d);
+                calendarHelper.find(morningStart, justBeforeNoonToday(morningStart), CalendarEventFilter.NOT_ALL_DAY);
+            }
+        });
+        assertThat(provider.getQueryCount(), is(WeekAhead.DAYS * ITERATIONS));
+
+        measure("findEarliestPerMorning", i -> calendarHelper.findEarliestPerMorning(morning(i), WeekAhead.DAYS, CalendarEventFilter.NOT_ALL_DAY));
+        assertThat(provider.getQueryCount(), is(ITERATIONS));
+
+        for (int i = 0; i < DAYS - 2 * WeekAhead.DAYS; i += WeekAhead.DAYS) {
+            CalendarEvent[] events = calendarHelper.findEarliestPerMorning(morning(i), WeekAhead.DAYS, CalendarEventFilter.NOT_ALL_DAY);
+
+            for (int d = 0; d < WeekAhead.DAYS; d++) {
+                Calendar morningStart = addDaysClone(morning(i), d);
+                Long expected = provider.findEarliestBegin(morningStart.getTimeInMillis(), justBeforeNoonToday(morningStart).getTimeInMillis(), false);
+                assertThat(events[d] != null ? events[d].getBegin().getTimeInMillis() : null, is(expected));
+            }
+        }
+    }
+
+    @Test
+    public void t30_snapshot() {
+        measure("snapshot", i -> {
+            Calendar morningStart = morning(i);
+            calendarHelper.snapshot(morningStart, justBeforeNoonToday(morningStart));
+        });
+        assertThat(provider.getQueryCount(), is(ITERATIONS));
+
+        Calendar morningStart = morning(0);
+        Calendar morningNoon = justBeforeNoonToday(morningStart);
+        CalendarSnapshot snapshot = calendarHelper.snapshot(morningStart, morningNoon);
+        assertThat(snapshot.size(), is(provider.countBegins(morningStart.getTimeInMillis(), morningNoon.getTimeInMillis())));
+        assertThat(snapshot, is(calendarHelper.snapshot(morningStart, morningNoon)));
+    }
+
+    @Test
+    public void t40_onCalendarUpdated() {
+        CheckAlarmTime checkAlarmTime = CheckAlarmTime.getInstance(context);
+
+        // The calendar doesn't change, only the snapshot is taken
+        measure("onCalendarUpdated", i -> checkAlarmTime.onCalendarUpdated());
+        assertThat(provider.getQueryCount(), is(ITERATIONS));
+
+        // Every update is evaluated (the change of the gap has the same effect as a change of the calendar)
+        measure("onCalendarUpdated (eval)", i -> {
+            SharedPreferencesHelper.save(SettingsActivity.PREF_CHECK_ALARM_TIME_GAP, 60 + (i + 1) % 2); // The first call differs from the default
+            checkAlarmTime.onCalendarUpdated();
+        });
+        assertThat(provider.getQueryCount(), is(2 * ITERATIONS));
+
+        // The calendar doesn't change, only the snapshot of the week is taken
+        SharedPreferencesHelper.save(SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, true);
+        measure("onCalendarUpdated (week)", i -> checkAlarmTime.onCalendarUpdated());
+        assertThat(provider.getQueryCount(), is(ITERATIONS));
+    }
+
+}
@@ -18,8 +18,11 @@ import java.util.Calendar;
 import java.util.GregorianCalendar;
 
 import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.SettingsActivity;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
 import cz.jaro.alarmmorning.app.CalendarWithDayAlarmTest;
 import cz.jaro.alarmmorning.calendar.CalendarEvent;
+import cz.jaro.alarmmorning.calendar.CalendarSnapshot;
 import cz.jaro.alarmmorning.clock.Clock;
 import cz.jaro.alarmmorning.clock.FixedClock;
 
@@ -30,9 +33,14 @@ import static cz.jaro.alarmmorning.model.DayTest.HOUR_DEFAULT;
 import static cz.jaro.alarmmorning.model.DayTest.MINUTE_DEFAULT;
 import static cz.jaro.alarmmorning.model.DayTest.MONTH;
 import static cz.jaro.alarmmorning.model.DayTest.YEAR;
+import static org.hamcrest.core.Is.is;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -168,6 +176,136 @@ public class CheckAlarmTimeTest extends FixedTimeTest {
         assertNotificationCount(0);
     }
 
+    @Test
+    public void t150_onCalendarUpdated_sameSnapshotIsNotEvaluated() {
+        // Mock calendar event
+        CalendarEvent meeting = new CalendarEvent();
+        meeting.setBegin(new GregorianCalendar(YEAR, MONTH, DAY + 1, HOUR_DEFAULT + 1, MINUTE_DEFAULT));
+        meeting.setTitle("Dentist");
+
+        MorningInfo morningInfo = spy(MorningInfo.class);
+        when(morningInfo.getEarliestEvent(anyObject(), anyObject())).thenReturn(meeting);
+        morningInfo.setContext(context);
+        morningInfo.init();
+        doReturn(morningInfo).when(checkAlarmTime).createMorningInfo();
+
+        // Mock calendar instances
+        long morning = new GregorianCalendar(YEAR, MONTH, DAY + 1).getTimeInMillis();
+        CalendarSnapshot snapshot = new CalendarSnapshot(morning, morning + 12 * 60 * 60 * 1000);
+        snapshot.add(1, meeting.getBegin().getTimeInMillis(), false, 0);
+        doReturn(snapshot).when(checkAlarmTime).takeSnapshot(anyObject(), anyObject());
+
+        // Do the action
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(1)).createMorningInfo();
+
+        // Same instances
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(1)).createMorningInfo();
+
+        // The meeting moved
+        CalendarSnapshot snapshot2 = new CalendarSnapshot(morning, morning + 12 * 60 * 60 * 1000);
+        snapshot2.add(1, meeting.getBegin().getTimeInMillis() + 60 * 60 * 1000, false, 0);
+        doReturn(snapshot2).when(checkAlarmTime).takeSnapshot(anyObject(), anyObject());
+
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(2)).createMorningInfo();
+
+        // The alarm changed
+        checkAlarmTime.onAlarmSet();
+        verify(checkAlarmTime, times(3)).createMorningInfo();
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(4)).createMorningInfo();
+    }
+
+    @Test
+    public void t160_week() {
+        SharedPreferencesHelper.save(SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, true);
+
+        // Mock calendar events: a meeting in the third morning only
+        CalendarEvent meeting = new CalendarEvent();
+        meeting.setBegin(new GregorianCalendar(YEAR, MONTH, DAY + 3, HOUR_DEFAULT, MINUTE_DEFAULT));
+        meeting.setTitle("Dentist");
+
+        CalendarEvent[] events = new CalendarEvent[WeekAhead.DAYS];
+        events[2] = meeting;
+        doReturn(events).when(checkAlarmTime).getEarliestEvents(anyObject());
+
+        // Set alarm in the third morning after the meeting
+        setAlarm(new GregorianCalendar(YEAR, MONTH, DAY + 3, HOUR_DEFAULT + 1, MINUTE_DEFAULT));
+
+        // Do the action
+        checkAlarmTime.onWeekChanged(true);
+
+        // Check
+        WeekAhead weekAhead = checkAlarmTime.getWeekAhead();
+        assertThat(weekAhead.getAttentionNeeded().size(), is(1));
+        assertThat(weekAhead.getAttentionNeeded().get(0).event, is(meeting));
+        assertThat(weekAhead.getFirstMorning().attentionNeeded, is(false));
+        verify(checkAlarmTime, times(1)).getEarliestEvents(anyObject());
+
+        assertNotificationCount(1);
+        Notification notification = shadowNotificationManager.getAllNotifications().get(0);
+        assertThat(Shadows.shadowOf(notification).getContentTitle(), is("Alarm clock is too late in the coming days"));
+
+        // Set alarm in the third morning before the meeting
+        setAlarm(new GregorianCalendar(YEAR, MONTH, DAY + 3, HOUR_DEFAULT - 1, MINUTE_DEFAULT));
+        checkAlarmTime.onAlarmSet();
+
+        assertThat(checkAlarmTime.getWeekAhead().getAttentionNeeded().size(), is(0));
+        verify(checkAlarmTime, times(2)).getEarliestEvents(anyObject());
+        assertNotificationCount(0);
+    }
+
+    @Test
+    public void t161_week_sameSnapshotIsNotEvaluated() {
+        SharedPreferencesHelper.save(SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, true);
+
+        CalendarEvent meeting = new CalendarEvent();
+        meeting.setBegin(new GregorianCalendar(YEAR, MONTH, DAY + 3, HOUR_DEFAULT, MINUTE_DEFAULT));
+        meeting.setTitle("Dentist");
+
+        CalendarEvent[] events = new CalendarEvent[WeekAhead.DAYS];
+        events[2] = meeting;
+        doReturn(events).when(checkAlarmTime).getEarliestEvents(anyObject());
+
+        // Mock calendar instances in the week
+        long morning = new GregorianCalendar(YEAR, MONTH, DAY).getTimeInMillis();
+        CalendarSnapshot snapshot = new CalendarSnapshot(morning, morning + WeekAhead.DAYS * 24 * 60 * 60 * 1000L);
+        snapshot.add(1, meeting.getBegin().getTimeInMillis(), false, 0);
+        doReturn(snapshot).when(checkAlarmTime).takeSnapshot(anyObject(), anyObject());
+
+        // Do the action
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(1)).getEarliestEvents(anyObject());
+
+        // Same instances
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(1)).getEarliestEvents(anyObject());
+
+        // The meeting moved
+        CalendarSnapshot snapshot2 = new CalendarSnapshot(morning, morning + WeekAhead.DAYS * 24 * 60 * 60 * 1000L);
+        snapshot2.add(1, meeting.getBegin().getTimeInMillis() - 60 * 60 * 1000, false, 0);
+        doReturn(snapshot2).when(checkAlarmTime).takeSnapshot(anyObject(), anyObject());
+
+        checkAlarmTime.onCalendarUpdated();
+        verify(checkAlarmTime, times(2)).getEarliestEvents(anyObject());
+    }
+
+    @Test
+    public void t162_week_onAlarmSetDuringTheDay() {
+        SharedPreferencesHelper.save(SettingsActivity.PREF_CHECK_ALARM_TIME_WEEK, true);
+        doReturn(new CalendarEvent[WeekAhead.DAYS]).when(checkAlarmTime).getEarliestEvents(anyObject());
+
+        // During the day, the week notification is not shown
+        shadowGlobalManager.setClock(new FixedClock(new GregorianCalendar(YEAR, MONTH, DAY, 14, 0)));
+
+        setAlarm(new GregorianCalendar(YEAR, MONTH, DAY + 3, HOUR_DEFAULT, MINUTE_DEFAULT));
+        checkAlarmTime.onAlarmSet();
+
+        verify(checkAlarmTime, times(0)).getEarliestEvents(anyObject());
+    }
+
 //    @Test
 //    public void t200_onCalendarUpdated() {
     // TODO Implement complex test for calendar changes
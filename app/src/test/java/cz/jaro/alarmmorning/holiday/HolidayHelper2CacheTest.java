@@ -0,0 +1,124 @@
+package cz.jaro.alarmmorning.holiday;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.SettingsActivity;
+import de.galgtonold.jollydayandroid.Holiday;
+import de.galgtonold.jollydayandroid.HolidayManager;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the holidays cached by the HolidayHelper class.
+ */
+public class HolidayHelper2CacheTest extends FixedTimeTest {
+
+    private HolidayHelper holidayHelper;
+
+    @Before
+    public void before() {
+        super.before();
+        holidayHelper = HolidayHelper.getInstance();
+    }
+
+    @Test
+    public void t10_sameAsHolidayManager() {
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+
+        HolidayManager holidayManager = HolidayManager.getInstance(HolidayHelperTest.CZ);
+
+        Calendar date = new GregorianCalendar(2016, Calendar.JANUARY, 1);
+        Calendar end = new GregorianCalendar(2020, Calendar.JANUARY, 1);
+        int count = 0;
+        for (; date.before(end); date.add(Calendar.DAY_OF_MONTH, 1)) {
+            boolean expected = holidayManager.isHoliday(date);
+            assertThat("Date " + date.getTime(), holidayHelper.isHoliday(date), is(expected));
+            if (expected) count++;
+        }
+
+        assertThat("Count of holidays", count, is(HolidayHelper1HolidaysTest.holidays_Czech.size()));
+    }
+
+    @Test
+    public void t20_description() {
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+
+        assertThat(holidayHelper.getHolidayDescription(new GregorianCalendar(2016, Calendar.JANUARY, 1)), is("New Year"));
+
+        HolidayManager holidayManager = HolidayManager.getInstance(HolidayHelperTest.CZ);
+        for (Holiday holiday : holidayManager.getHolidays(2017)) {
+            Calendar date = new GregorianCalendar(holiday.getDate().getYear(), holiday.getDate().getMonthOfYear() - 1, holiday.getDate().getDayOfMonth());
+            assertThat("Date " + date.getTime(), holidayHelper.getHolidayDescription(date), is(holiday.getDescription()));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void t21_descriptionOfWorkingDay() {
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+
+        holidayHelper.getHolidayDescription(new GregorianCalendar(2016, Calendar.DECEMBER, 23));
+    }
+
+    @Test
+    public void t30_invalidatedOnSave() {
+        Calendar date = new GregorianCalendar(2016, Calendar.NOVEMBER, 17);
+
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+        assertThat(holidayHelper.isHoliday(date), is(true));
+
+        globalManager.saveHoliday(SettingsActivity.PREF_HOLIDAY_NONE);
+        assertThat(holidayHelper.isHoliday(date), is(false));
+        assertNull(holidayHelper.getHolidayDescription(date));
+
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+        assertThat(holidayHelper.isHoliday(date), is(true));
+    }
+
+    @Test
+    public void t40_subregion() {
+        Calendar epiphany = new GregorianCalendar(2016, Calendar.JANUARY, 6);
+
+        globalManager.saveHoliday(HolidayHelperTest.DE);
+        assertThat(holidayHelper.isHoliday(epiphany), is(false));
+
+        globalManager.saveHoliday(HolidayHelperTest.DE_BY);
+        assertThat(holidayHelper.isHoliday(epiphany), is(true));
+    }
+
+    @Test
+    public void t50_sameAsListHolidays() {
+        globalManager.saveHoliday(HolidayHelperTest.DE_BY_AG);
+
+        Calendar from = new GregorianCalendar(2016, Calendar.JANUARY, 1);
+        Calendar to = new GregorianCalendar(2018, Calendar.JANUARY, 1);
+
+        List<Holiday> holidays = holidayHelper.listHolidays(HolidayHelperTest.DE_BY_AG, from, to);
+
+        int count = 0;
+        for (Calendar date = (Calendar) from.clone(); date.before(to); date.add(Calendar.DAY_OF_MONTH, 1)) {
+            boolean expected = HolidayHelper1HolidaysTest.isHoliday(date, toCalendars(holidays));
+            assertThat("Date " + date.getTime(), holidayHelper.isHoliday(date), is(expected));
+            if (expected) count++;
+        }
+
+        assertThat("There are holidays", 0 < count, is(true));
+    }
+
+    private static List<Calendar> toCalendars(List<Holiday> holidays) {
+        List<Calendar> dates = new ArrayList<>();
+        for (Holiday holiday : holidays) {
+            dates.add(new GregorianCalendar(holiday.getDate().getYear(), holiday.getDate().getMonthOfYear() - 1, holiday.getDate().getDayOfMonth()));
+        }
+        return dates;
+    }
+
+}
@@ -0,0 +1,179 @@
+package cz.jaro.alarmmorning.holiday;
+
+import android.app.AlarmManager;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowAlarmManager;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.SettingsActivity;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
+import cz.jaro.alarmmorning.clock.FixedClock;
+import cz.jaro.alarmmorning.model.AlarmDataSource;
+import cz.jaro.alarmmorning.model.DayTest;
+import cz.jaro.alarmmorning.model.Defaults;
+import cz.jaro.alarmmorning.model.StoredHolidays;
+import de.galgtonold.jollydayandroid.Holiday;
+
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.notNullValue;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the holiday table (the holidays stored in the database).
+ */
+public class HolidayHelper3TableTest extends FixedTimeTest {
+
+    private HolidayHelper holidayHelper;
+
+    @Before
+    public void before() {
+        super.before();
+        holidayHelper = HolidayHelper.getInstance();
+    }
+
+    @Test
+    public void t10_storedOnSave() {
+        globalManager.saveHoliday(HolidayHelperTest.DE_BY);
+
+        assertNotNull(globalManager.loadStoredHolidays(HolidayHelperTest.DE_BY, 2016));
+        assertNotNull(globalManager.loadStoredHolidays(HolidayHelperTest.DE_BY, 2017));
+        assertNull(globalManager.loadStoredHolidays(HolidayHelperTest.DE_BY, 2018));
+
+        globalManager.saveHoliday(SettingsActivity.PREF_HOLIDAY_NONE);
+
+        assertNull(globalManager.loadStoredHolidays(HolidayHelperTest.DE_BY, 2016));
+    }
+
+    @Test
+    public void t20_holidaysAreTakenFromTable() {
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+
+        // Replace the table by a table with one holiday on 2 February 2016
+        Calendar date = new GregorianCalendar(2016, Calendar.FEBRUARY, 2);
+        BitSet days = new BitSet();
+        days.set(date.get(Calendar.DAY_OF_YEAR));
+
+        StoredHolidays storedHolidays = new StoredHolidays();
+        storedHolidays.setPath(HolidayHelperTest.CZ);
+        storedHolidays.setYear(2016);
+        storedHolidays.setDays(days.toByteArray());
+        storedHolidays.setDescriptions("Test");
+
+        List<StoredHolidays> storedHolidaysList = new ArrayList<>();
+        storedHolidaysList.add(storedHolidays);
+        globalManager.saveHolidayTable(storedHolidaysList);
+
+        holidayHelper.invalidate();
+
+        assertThat(holidayHelper.isHoliday(date), is(true));
+        assertThat(holidayHelper.getHolidayDescription(date), is("Test"));
+        assertThat(holidayHelper.isHoliday(new GregorianCalendar(2016, Calendar.JANUARY, 1)), is(false));
+    }
+
+    @Test
+    public void t30_sameAsComputed() {
+        globalManager.saveHoliday(HolidayHelperTest.DE_BY_AG);
+
+        HolidayYear stored = new HolidayYear(globalManager.loadStoredHolidays(HolidayHelperTest.DE_BY_AG, 2016));
+
+        Calendar from = new GregorianCalendar(2016, Calendar.JANUARY, 1);
+        Calendar to = new GregorianCalendar(2017, Calendar.JANUARY, 1);
+        List<Holiday> holidays = holidayHelper.listHolidays(HolidayHelperTest.DE_BY_AG, from, to);
+
+        BitSet expected = new BitSet();
+        for (Holiday holiday : holidays) {
+            expected.set(holiday.getDate().getDayOfYear());
+            assertThat(holiday.toString(), stored.getDescription(holiday.getDate().getDayOfYear()), is(notNullValue()));
+        }
+
+        for (int dayOfYear = 1; dayOfYear <= 366; dayOfYear++) {
+            assertThat("Day of year " + dayOfYear, stored.isHoliday(dayOfYear), is(expected.get(dayOfYear)));
+        }
+    }
+
+    @Test
+    public void t40_yearRollover() {
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+        assertNull(globalManager.loadStoredHolidays(HolidayHelperTest.CZ, 2018));
+
+        shadowGlobalManager.setClock(new FixedClock(new GregorianCalendar(2017, Calendar.JANUARY, 1, 0, 0)));
+        holidayHelper.updateHolidayTable();
+
+        assertNull(globalManager.loadStoredHolidays(HolidayHelperTest.CZ, 2016));
+        assertNotNull(globalManager.loadStoredHolidays(HolidayHelperTest.CZ, 2017));
+        assertNotNull(globalManager.loadStoredHolidays(HolidayHelperTest.CZ, 2018));
+    }
+
+    @Test
+    public void t50_missingTableIsFilled() {
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+
+        // Empty the table, as after the database upgrade
+        globalManager.saveHolidayTable(new ArrayList<>());
+        holidayHelper.invalidate();
+
+        // The lookup doesn't load jollyday, but starts filling the table
+        Calendar date = new GregorianCalendar(2016, Calendar.JANUARY, 1);
+        holidayHelper.isHoliday(date);
+
+        assertNotNull(globalManager.loadStoredHolidays(HolidayHelperTest.CZ, 2016));
+        assertThat(holidayHelper.isHoliday(date), is(true));
+    }
+
+    @Test
+    public void t60_regionChangeRecomputesNextAlarm() {
+        shadowGlobalManager.setClock(new FixedClock(new GregorianCalendar(2016, Calendar.JANUARY, 5, 10, 0)));
+
+        for (int dayOfWeek : AlarmDataSource.allDaysOfWeek) {
+            Defaults defaults = new Defaults();
+            defaults.setDayOfWeek(dayOfWeek);
+            defaults.setState(Defaults.STATE_ENABLED);
+            defaults.setHour(DayTest.HOUR_DEFAULT);
+            defaults.setMinute(DayTest.MINUTE_DEFAULT);
+            globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+        }
+
+        globalManager.saveHoliday(HolidayHelperTest.CZ);
+
+        Context context = RuntimeEnvironment.application.getApplicationContext();
+        ShadowAlarmManager shadowAlarmManager = Shadows.shadowOf((AlarmManager) context.getSystemService(Context.ALARM_SERVICE));
+        while (shadowAlarmManager.getNextScheduledAlarm() != null) {
+            // Consume the system alarms
+        }
+
+        // The region changes, but the table is not filled yet (as when the background fill didn't run yet)
+        SharedPreferencesHelper.save(SettingsActivity.PREF_HOLIDAY, HolidayHelperTest.DE_BY);
+        holidayHelper.invalidate();
+
+        // The fill recomputes the next alarm, which skips the Epiphany on 6 January
+        globalManager.updateHolidayTableInBackground();
+
+        assertNotNull(globalManager.loadStoredHolidays(HolidayHelperTest.DE_BY, 2016));
+
+        Calendar alarmTime = new GregorianCalendar(2016, Calendar.JANUARY, 7, DayTest.HOUR_DEFAULT, DayTest.MINUTE_DEFAULT);
+        ShadowAlarmManager.ScheduledAlarm scheduledAlarm = shadowAlarmManager.getNextScheduledAlarm();
+        assertNotNull("The system alarm is registered again", scheduledAlarm);
+        assertThat(scheduledAlarm.triggerAtTime, is(GlobalManager.getNearFutureTime(alarmTime).getTimeInMillis()));
+
+        // The fill of the up-to-date table doesn't recompute
+        int recomputationsPerformed = globalManager.getRecomputationsPerformed();
+        globalManager.updateHolidayTableInBackground();
+        assertThat(globalManager.getRecomputationsPerformed(), is(recomputationsPerformed));
+    }
+
+}
@@ -0,0 +1,114 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.app.CalendarWithDayAlarmTest;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.onTheSameDate;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of loading a range of Days. The result must be the same as when loading the Days one by one, but with less queries.
+ */
+public class AlarmDataSource1LoadDaysTest extends FixedTimeTest {
+
+    private AlarmDataSource dataSource;
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+
+        // Default on Monday
+        Defaults defaults = new Defaults();
+        defaults.setDayOfWeek(Calendar.MONDAY);
+        defaults.setState(Defaults.STATE_ENABLED);
+        defaults.setHour(DayTest.HOUR_DEFAULT);
+        defaults.setMinute(DayTest.MINUTE_DEFAULT);
+        globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+
+        // Day alarms on the 2nd and 10th day
+        CalendarWithDayAlarmTest.setAlarm(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1, DayTest.HOUR_DAY, DayTest.MINUTE_DAY), globalManager);
+        CalendarWithDayAlarmTest.setAlarm(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 9, DayTest.HOUR_DAY, DayTest.MINUTE_DAY), globalManager);
+    }
+
+    @Test
+    public void t10_sameAsLoadDay() {
+        Calendar from = globalManager.clock().now();
+        Calendar to = addDaysClone(from, GlobalManager.HORIZON_DAYS);
+
+        List<Day> days = dataSource.loadDays(from, to);
+
+        assertThat("Number of days", days.size(), is(GlobalManager.HORIZON_DAYS));
+
+        for (int i = 0; i < GlobalManager.HORIZON_DAYS; i++) {
+            Calendar date = addDaysClone(from, i);
+            Day expected = dataSource.loadDay(date);
+            Day actual = days.get(i);
+
+            String str = " on " + date.getTime();
+            assertThat("Date" + str, onTheSameDate(actual.getDate(), expected.getDate()), is(true));
+            assertThat("Midnight" + str, actual.getDate().get(Calendar.HOUR_OF_DAY), is(0));
+            assertThat("State" + str, actual.getState(), is(expected.getState()));
+            assertThat("Enabled" + str, actual.isEnabled(), is(expected.isEnabled()));
+            assertThat("Alarm time" + str, actual.getDateTime(), is(expected.getDateTime()));
+            assertThat("Default day of week" + str, actual.getDefaults().getDayOfWeek(), is(expected.getDefaults().getDayOfWeek()));
+            assertThat("Default state" + str, actual.getDefaults().getState(), is(expected.getDefaults().getState()));
+        }
+    }
+
+    @Test
+    public void t20_emptyRange() {
+        Calendar from = globalManager.clock().now();
+
+        assertThat(dataSource.loadDays(from, from).isEmpty(), is(true));
+        assertThat(dataSource.loadDays(from, addDaysClone(from, -1)).isEmpty(), is(true));
+    }
+
+    @Test
+    public void t30_queryCount() {
+        Calendar from = globalManager.clock().now();
+
+        // Day by day
+        int countBefore = dataSource.queryCount;
+        List<Day> daysOneByOne = new ArrayList<>();
+        for (int i = 0; i < GlobalManager.HORIZON_DAYS; i++) {
+            daysOneByOne.add(dataSource.loadDay(addDaysClone(from, i)));
+        }
+        int queriesOneByOne = dataSource.queryCount - countBefore;
+
+        // Range
+        countBefore = dataSource.queryCount;
+        List<Day> daysRange = dataSource.loadDays(from, addDaysClone(from, GlobalManager.HORIZON_DAYS));
+        int queriesRange = dataSource.queryCount - countBefore;
+
+        assertThat("Number of days", daysRange.size(), is(daysOneByOne.size()));
+        assertThat("Queries when loading day by day", queriesOneByOne, is(GlobalManager.HORIZON_DAYS));
+        assertThat("Queries when loading a range", queriesRange, is(1));
+    }
+
+    @Test
+    public void t40_nextAlarmQueryCount() {
+        int countBefore = dataSource.queryCount;
+        globalManager.getNextAlarm(globalManager.clock());
+        int queries = dataSource.queryCount - countBefore;
+
+        // Days + one-time alarms (Defaults are cached)
+        assertTrue("Queries when getting next alarm", queries <= 2);
+    }
+
+}
@@ -0,0 +1,93 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the in-memory snapshot of Defaults.
+ */
+public class AlarmDataSource2DefaultsCacheTest extends FixedTimeTest {
+
+    private AlarmDataSource dataSource;
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+    }
+
+    private void setDefault(int dayOfWeek, int state, int hour, int minute) {
+        Defaults defaults = new Defaults();
+        defaults.setDayOfWeek(dayOfWeek);
+        defaults.setState(state);
+        defaults.setHour(hour);
+        defaults.setMinute(minute);
+
+        globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+    }
+
+    @Test
+    public void t10_readsDoNotQuery() {
+        dataSource.loadDefault(Calendar.MONDAY);
+
+        int countBefore = dataSource.queryCount;
+        for (int i = 0; i < 100; i++) {
+            for (int dayOfWeek : AlarmDataSource.allDaysOfWeek) {
+                dataSource.loadDefault(dayOfWeek);
+            }
+        }
+
+        assertThat("Queries", dataSource.queryCount - countBefore, is(0));
+    }
+
+    @Test
+    public void t20_saveIsVisible() {
+        setDefault(Calendar.TUESDAY, Defaults.STATE_ENABLED, DayTest.HOUR_DAY, DayTest.MINUTE_DAY);
+
+        Defaults defaults = dataSource.loadDefault(Calendar.TUESDAY);
+        assertThat("State", defaults.getState(), is(Defaults.STATE_ENABLED));
+        assertThat("Hour", defaults.getHour(), is(DayTest.HOUR_DAY));
+        assertThat("Minute", defaults.getMinute(), is(DayTest.MINUTE_DAY));
+
+        Defaults other = dataSource.loadDefault(Calendar.WEDNESDAY);
+        assertThat("Other state", other.getState(), is(Defaults.STATE_DISABLED));
+    }
+
+    @Test
+    public void t30_resetIsVisible() {
+        setDefault(Calendar.TUESDAY, Defaults.STATE_ENABLED, DayTest.HOUR_DAY, DayTest.MINUTE_DAY);
+
+        globalManager.reset();
+
+        Defaults defaults = dataSource.loadDefault(Calendar.TUESDAY);
+        assertThat("State", defaults.getState(), is(Defaults.STATE_DISABLED));
+        assertThat("Hour", defaults.getHour(), is(DayTest.HOUR_DEFAULT));
+        assertThat("Minute", defaults.getMinute(), is(DayTest.MINUTE_DEFAULT));
+    }
+
+    @Test
+    public void t40_modifyingReturnedObjectDoesNotChangeSnapshot() {
+        Defaults defaults = dataSource.loadDefault(Calendar.TUESDAY);
+        defaults.setState(Defaults.STATE_ENABLED);
+        defaults.setHour(DayTest.HOUR_DAY);
+
+        Defaults defaults2 = dataSource.loadDefault(Calendar.TUESDAY);
+        assertThat("State", defaults2.getState(), is(Defaults.STATE_DISABLED));
+        assertThat("Hour", defaults2.getHour(), is(DayTest.HOUR_DEFAULT));
+
+        Day day = dataSource.loadDay(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1)); // Tuesday
+        assertThat("Day state", day.isEnabled(), is(false));
+    }
+
+}
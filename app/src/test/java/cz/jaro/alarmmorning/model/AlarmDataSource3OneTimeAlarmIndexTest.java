@@ -0,0 +1,122 @@
+package cz.jaro.alarmmorning.model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.AppAlarm;
+import cz.jaro.alarmmorning.FixedTimeTest;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of looking up the next one-time alarm among many one-time alarms.
+ */
+public class AlarmDataSource3OneTimeAlarmIndexTest extends FixedTimeTest {
+
+    private static final int ROWS = 10000;
+
+    private AlarmDataSource dataSource;
+    private SQLiteDatabase database;
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+        database = ReflectionHelpers.getField(dataSource, "database");
+
+        // Half of the one-time alarms is in the past, the alarm times are not inserted in order
+        Calendar now = globalManager.clock().now();
+        database.beginTransaction();
+        try {
+            for (int i = 0; i < ROWS; i++) {
+                int minutes = ((i * 7919) % ROWS) - ROWS / 2;
+
+                Calendar alarmTime = (Calendar) now.clone();
+                alarmTime.add(Calendar.MINUTE, minutes);
+
+                dataSource.saveOneTimeAlarm(newOneTimeAlarm(alarmTime));
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private static OneTimeAlarm newOneTimeAlarm(Calendar alarmTime) {
+        OneTimeAlarm oneTimeAlarm = new OneTimeAlarm();
+        oneTimeAlarm.setDate(alarmTime);
+        oneTimeAlarm.setHour(alarmTime.get(Calendar.HOUR_OF_DAY));
+        oneTimeAlarm.setMinute(alarmTime.get(Calendar.MINUTE));
+        return oneTimeAlarm;
+    }
+
+    @Test
+    public void t10_nextOneTimeAlarms() {
+        Calendar now = globalManager.clock().now();
+
+        List<OneTimeAlarm> oneTimeAlarms = dataSource.loadNextOneTimeAlarms(now, 0, 3);
+
+        assertThat("Count", oneTimeAlarms.size(), is(3));
+        for (int i = 0; i < oneTimeAlarms.size(); i++) {
+            Calendar expected = (Calendar) now.clone();
+            expected.add(Calendar.MINUTE, i);
+            assertThat("Alarm time " + i, oneTimeAlarms.get(i).getDateTime().getTimeInMillis(), is(expected.getTimeInMillis()));
+        }
+
+        List<OneTimeAlarm> secondPage = dataSource.loadNextOneTimeAlarms(now, 3, 3);
+        Calendar expected = (Calendar) now.clone();
+        expected.add(Calendar.MINUTE, 3);
+        assertThat("Second page", secondPage.get(0).getDateTime().getTimeInMillis(), is(expected.getTimeInMillis()));
+
+        List<OneTimeAlarm> lastPage = dataSource.loadNextOneTimeAlarms(now, ROWS / 2 - 1, 3);
+        assertThat("Last page", lastPage.size(), is(1));
+    }
+
+    @Test
+    public void t20_nextAlarm() {
+        Calendar now = globalManager.clock().now();
+
+        int countBefore = dataSource.queryCount;
+        AppAlarm appAlarm = globalManager.getNextAlarm(globalManager.clock(), null);
+        int queries = dataSource.queryCount - countBefore;
+
+        // The alarm at now is passed, the next one is a minute later
+        Calendar expected = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY, DayTest.HOUR, 1);
+        assertThat("Next alarm", appAlarm.getDateTime().getTimeInMillis(), is(expected.getTimeInMillis()));
+        assertTrue("Next alarm is after now", now.before(appAlarm.getDateTime()));
+        assertThat("Queries", queries, is(2));
+    }
+
+    @Test
+    public void t30_queryPlanUsesIndex() {
+        Calendar now = globalManager.clock().now();
+
+        String sql = "EXPLAIN QUERY PLAN SELECT * FROM " + AlarmDbHelper.TABLE_ONETIMEALARM +
+                " WHERE ? <= " + AlarmDbHelper.COLUMN_ONETIMEALARM_ALARM_TIME +
+                " ORDER BY " + AlarmDbHelper.COLUMN_ONETIMEALARM_ALARM_TIME + ", " + AlarmDbHelper.COLUMN_ONETIMEALARM_ID +
+                " LIMIT 8";
+        OneTimeAlarm oneTimeAlarm = newOneTimeAlarm(now);
+        Cursor cursor = database.rawQuery(sql, new String[]{String.valueOf(oneTimeAlarm.getAlarmTime())});
+
+        StringBuilder plan = new StringBuilder();
+        int detailIndex = cursor.getColumnIndexOrThrow("detail");
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            plan.append(cursor.getString(detailIndex)).append('\n');
+        }
+        cursor.close();
+
+        assertTrue("Query plan uses the index: " + plan, plan.toString().contains(AlarmDbHelper.INDEX_ONETIMEALARM_ALARM_TIME));
+    }
+
+}
@@ -0,0 +1,107 @@
+package cz.jaro.alarmmorning.model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.app.CalendarWithDayAlarmTest;
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of storing the date of a Day as epoch day.
+ */
+public class AlarmDataSource4EpochDayTest extends FixedTimeTest {
+
+    @Test
+    public void t10_epochDay() {
+        assertThat(CalendarUtils.toEpochDay(new GregorianCalendar(1970, Calendar.JANUARY, 1)), is(0L));
+        assertThat(CalendarUtils.toEpochDay(new GregorianCalendar(1969, Calendar.DECEMBER, 31)), is(-1L));
+        assertThat(CalendarUtils.toEpochDay(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY, DayTest.HOUR, DayTest.MINUTE)), is(16832L));
+        assertThat(CalendarUtils.toEpochDay(new GregorianCalendar(2000, Calendar.FEBRUARY, 29, 23, 59)), is(11016L));
+    }
+
+    @Test
+    public void t20_epochDayRoundTrip() {
+        Calendar date = new GregorianCalendar(1999, Calendar.JANUARY, 1);
+        long epochDay = CalendarUtils.toEpochDay(date);
+
+        // Includes leap days and daylight saving time changes
+        for (int i = 0; i < 365 * 40; i++) {
+            Calendar expected = addDaysClone(date, i);
+
+            Calendar actual = CalendarUtils.fromEpochDay(epochDay + i);
+
+            String str = " on " + expected.getTime();
+            assertThat("Epoch day" + str, CalendarUtils.toEpochDay(expected), is(epochDay + i));
+            assertThat("Year" + str, actual.get(Calendar.YEAR), is(expected.get(Calendar.YEAR)));
+            assertThat("Month" + str, actual.get(Calendar.MONTH), is(expected.get(Calendar.MONTH)));
+            assertThat("Date" + str, actual.get(Calendar.DATE), is(expected.get(Calendar.DATE)));
+            assertThat("Midnight" + str, actual.get(Calendar.HOUR_OF_DAY), is(0));
+        }
+    }
+
+    @Test
+    public void t30_saveAndLoad() {
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1, DayTest.HOUR_DAY, DayTest.MINUTE_DAY);
+        CalendarWithDayAlarmTest.setAlarm(date, globalManager);
+
+        Day day = globalManager.loadDay(date);
+        assertThat(day.getState(), is(Day.STATE_ENABLED));
+        assertThat(CalendarUtils.onTheSameDate(day.getDate(), date), is(true));
+
+        List<Day> days = globalManager.loadDays(addDaysClone(date, -1), addDaysClone(date, 2));
+        assertThat(days.get(1).getState(), is(Day.STATE_ENABLED));
+        assertThat(days.get(0).getState(), is(Day.STATE_RULE));
+        assertThat(days.get(2).getState(), is(Day.STATE_RULE));
+    }
+
+    @Test
+    public void t40_migration() {
+        AlarmDbHelper dbHelper = new AlarmDbHelper(RuntimeEnvironment.application);
+        SQLiteDatabase database = SQLiteDatabase.create(null);
+
+        // Version 3 (the date stored as text)
+        dbHelper.onUpgrade(database, 0, 3);
+        database.execSQL("INSERT INTO day(date, state, hour, minute) VALUES ('2016-02-01', 1, 8, 1), ('2000-02-29', 2, 7, 0)");
+
+        // Upgrade
+        dbHelper.onUpgrade(database, 3, 4);
+
+        Cursor cursor = database.rawQuery("SELECT date, typeof(date), state FROM day ORDER BY date", null);
+        assertThat(cursor.getCount(), is(2));
+        cursor.moveToFirst();
+        assertThat(cursor.getLong(0), is(11016L));
+        assertThat(cursor.getString(1), is("integer"));
+        assertThat(cursor.getInt(2), is(2));
+        cursor.moveToNext();
+        assertThat(cursor.getLong(0), is(16832L));
+        assertThat(cursor.getInt(2), is(1));
+        cursor.close();
+
+        // Downgrade
+        dbHelper.onDowngrade(database, 4, 3);
+
+        cursor = database.rawQuery("SELECT date, typeof(date) FROM day ORDER BY date", null);
+        assertThat(cursor.getCount(), is(2));
+        cursor.moveToFirst();
+        assertThat(cursor.getString(0), is("2000-02-29"));
+        assertThat(cursor.getString(1), is("text"));
+        cursor.moveToNext();
+        assertThat(cursor.getString(0), is("2016-02-01"));
+        cursor.close();
+
+        database.close();
+    }
+
+}
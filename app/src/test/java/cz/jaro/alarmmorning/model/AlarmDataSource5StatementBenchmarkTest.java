@@ -0,0 +1,174 @@
+package cz.jaro.alarmmorning.model;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.MyLog;
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Micro-benchmark of the frequent queries. Compares the per-call latency of the original implementation (the SQL text built for every call, with the values
+ * inlined) with the implementation by pre-compiled statements with bound values.
+ * <p>
+ * The latencies are logged. Only the results are checked, since the latencies depend on the machine. By default, only a few iterations are run (so that the
+ * results are checked). Run the tests with {@code -Pbenchmark} to measure the latencies.
+ */
+public class AlarmDataSource5StatementBenchmarkTest extends FixedTimeTest {
+
+    private static final boolean BENCHMARK = Boolean.getBoolean("benchmark");
+
+    private static final int WARM_UP = BENCHMARK ? 200 : 0;
+    private static final int ITERATIONS = BENCHMARK ? 2000 : 20;
+
+    private AlarmDataSource dataSource;
+    private SQLiteDatabase database;
+
+    private Calendar date;
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+        database = ReflectionHelpers.getField(dataSource, "database");
+
+        date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY);
+    }
+
+    private static Day newDay(Calendar date, int i) {
+        Day day = new Day();
+        day.setDate(date);
+        day.setState(Day.STATE_ENABLED);
+        day.setHourDay(i % 24);
+        day.setMinuteDay(i % 60);
+        return day;
+    }
+
+    private void saveDayOriginal(Day day) {
+        ContentValues values = new ContentValues();
+        values.put(AlarmDbHelper.COLUMN_DAY_DATE, CalendarUtils.toEpochDay(day.getDate()));
+        values.put(AlarmDbHelper.COLUMN_DAY_STATE, day.getState());
+        values.put(AlarmDbHelper.COLUMN_DAY_HOUR, day.getHourDay());
+        values.put(AlarmDbHelper.COLUMN_DAY_MINUTE, day.getMinuteDay());
+
+        database.insertWithOnConflict(AlarmDbHelper.TABLE_DAY, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private int loadDayOriginal(Calendar date) {
+        Cursor cursor = database.query(AlarmDbHelper.TABLE_DAY, null, AlarmDbHelper.COLUMN_DAY_DATE + " = " + CalendarUtils.toEpochDay(date), null, null, null, null);
+        int count = cursor.getCount();
+        cursor.close();
+        return count;
+    }
+
+    private static void print(String name, long nanoTimeOriginal, long nanoTimeStatement) {
+        MyLog.i(String.format("%-15s original %8.1f us/call, statement %8.1f us/call", name,
+                nanoTimeOriginal / 1000.0 / ITERATIONS, nanoTimeStatement / 1000.0 / ITERATIONS));
+    }
+
+    @Test
+    public void t10_saveDay() {
+        for (int i = 0; i < WARM_UP; i++) {
+            saveDayOriginal(newDay(addDaysClone(date, i % GlobalManager.HORIZON_DAYS), i));
+            dataSource.saveDay(newDay(addDaysClone(date, i % GlobalManager.HORIZON_DAYS), i));
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            saveDayOriginal(newDay(addDaysClone(date, i % GlobalManager.HORIZON_DAYS), i));
+        }
+        long nanoTimeOriginal = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            dataSource.saveDay(newDay(addDaysClone(date, i % GlobalManager.HORIZON_DAYS), i));
+        }
+        long nanoTimeStatement = System.nanoTime() - start;
+
+        print("saveDay", nanoTimeOriginal, nanoTimeStatement);
+
+        // The last save wins (the date is unique)
+        int last = ITERATIONS - 1;
+        Day day = dataSource.loadDay(addDaysClone(date, last % GlobalManager.HORIZON_DAYS));
+        assertThat(day.getHourDay(), is(last % 24));
+        assertThat(day.getMinuteDay(), is(last % 60));
+    }
+
+    @Test
+    public void t20_loadDay() {
+        for (int i = 0; i < GlobalManager.HORIZON_DAYS; i += 2) {
+            dataSource.saveDay(newDay(addDaysClone(date, i), i));
+        }
+
+        for (int i = 0; i < WARM_UP; i++) {
+            loadDayOriginal(addDaysClone(date, i % GlobalManager.HORIZON_DAYS));
+            dataSource.loadDay(addDaysClone(date, i % GlobalManager.HORIZON_DAYS));
+        }
+
+        int found = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            found += loadDayOriginal(addDaysClone(date, i % GlobalManager.HORIZON_DAYS));
+        }
+        long nanoTimeOriginal = System.nanoTime() - start;
+
+        int enabled = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            Day day = dataSource.loadDay(addDaysClone(date, i % GlobalManager.HORIZON_DAYS));
+            if (day.getState() == Day.STATE_ENABLED) enabled++;
+        }
+        long nanoTimeStatement = System.nanoTime() - start;
+
+        print("loadDay", nanoTimeOriginal, nanoTimeStatement);
+
+        assertThat(enabled, is(found));
+    }
+
+    @Test
+    public void t30_loadOneTimeAlarm() {
+        OneTimeAlarm oneTimeAlarm = new OneTimeAlarm();
+        oneTimeAlarm.setDate(date);
+        oneTimeAlarm.setHour(DayTest.HOUR_DAY);
+        oneTimeAlarm.setMinute(DayTest.MINUTE_DAY);
+        dataSource.saveOneTimeAlarm(oneTimeAlarm);
+        long id = oneTimeAlarm.getId();
+
+        for (int i = 0; i < WARM_UP; i++) {
+            database.query(AlarmDbHelper.TABLE_ONETIMEALARM, null, AlarmDbHelper.COLUMN_ONETIMEALARM_ID + " = ?", new String[]{String.valueOf(id)}, null, null, null).close();
+            dataSource.loadOneTimeAlarm(id);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            database.query(AlarmDbHelper.TABLE_ONETIMEALARM, null, AlarmDbHelper.COLUMN_ONETIMEALARM_ID + " = ?", new String[]{String.valueOf(id)}, null, null, null).close();
+        }
+        long nanoTimeOriginal = System.nanoTime() - start;
+
+        OneTimeAlarm loaded = null;
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            loaded = dataSource.loadOneTimeAlarm(id);
+        }
+        long nanoTimeStatement = System.nanoTime() - start;
+
+        print("loadOneTimeAlarm", nanoTimeOriginal, nanoTimeStatement);
+
+        assertThat(loaded.getAlarmTime(), is(oneTimeAlarm.getAlarmTime()));
+    }
+
+}
@@ -0,0 +1,170 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests of the {@link AlarmTimeline}.
+ */
+public class AlarmTimelineTest extends FixedTimeTest {
+
+    private static final int RANGE_DAYS = 400;
+
+    private AlarmDataSource dataSource;
+    private AlarmTimeline timeline;
+
+    private final Calendar from = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY);
+    private final Calendar to = addDaysClone(from, RANGE_DAYS);
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+        timeline = new AlarmTimeline(dataSource);
+
+        // Load the Defaults in advance, so that only the Days are counted
+        dataSource.loadDefaults();
+    }
+
+    private void saveDay(int daysFromToday, int state) {
+        Day day = globalManager.loadDay(addDaysClone(from, daysFromToday));
+        day.setState(state);
+        day.setHourDay(DayTest.HOUR_DAY);
+        day.setMinuteDay(DayTest.MINUTE_DAY);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+    }
+
+    private List<Day> toList(Iterable<Day> days) {
+        List<Day> list = new ArrayList<>();
+        for (Day day : days) {
+            list.add(day);
+        }
+        return list;
+    }
+
+    @Test
+    public void t10_sameAsLoadDays() {
+        saveDay(0, Day.STATE_ENABLED);
+        saveDay(AlarmTimeline.PAGE_DAYS - 1, Day.STATE_DISABLED);
+        saveDay(AlarmTimeline.PAGE_DAYS, Day.STATE_ENABLED);
+        saveDay(RANGE_DAYS - 1, Day.STATE_ENABLED);
+
+        List<Day> expected = dataSource.loadDays(from, to);
+        List<Day> actual = toList(timeline.getDays(from, to));
+
+        assertThat("Number of days", actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat("Day " + i, CalendarUtils.toEpochDay(actual.get(i).getDate()), is(CalendarUtils.toEpochDay(expected.get(i).getDate())));
+            assertThat("Day " + i, actual.get(i).getState(), is(expected.get(i).getState()));
+            assertThat("Day " + i, actual.get(i).isEnabled(), is(expected.get(i).isEnabled()));
+        }
+    }
+
+    @Test
+    public void t20_pagesAreLoadedLazily() {
+        int queryCountBefore = dataSource.queryCount;
+        Iterable<Day> days = timeline.getDays(from, to);
+        assertThat("Nothing is loaded before iterating", dataSource.queryCount - queryCountBefore, is(0));
+
+        int count = 0;
+        for (Day ignored : days) {
+            if (++count == AlarmTimeline.PAGE_DAYS) {
+                break;
+            }
+        }
+        assertThat("Only the first page is loaded", dataSource.queryCount - queryCountBefore, is(1));
+    }
+
+    @Test
+    public void t30_emptyRange() {
+        assertThat(toList(timeline.getDays(from, from)).isEmpty(), is(true));
+        assertThat(toList(timeline.getDays(from, addDaysClone(from, -1))).isEmpty(), is(true));
+        assertNull(timeline.getNextDay(from, from, null));
+    }
+
+    @Test
+    public void t40_nextDayBeyondFirstPage() {
+        assertNull(timeline.getNextDay(from, to, null));
+
+        int daysFromToday = RANGE_DAYS - 2;
+        saveDay(daysFromToday, Day.STATE_ENABLED);
+
+        int queryCountBefore = dataSource.queryCount;
+        Day day = timeline.getNextDay(from, to, null);
+        int queries = dataSource.queryCount - queryCountBefore;
+
+        assertThat(CalendarUtils.toEpochDay(day.getDate()), is(CalendarUtils.toEpochDay(from) + daysFromToday));
+        assertThat("One query per page", queries, is((RANGE_DAYS + AlarmTimeline.PAGE_DAYS - 1) / AlarmTimeline.PAGE_DAYS));
+    }
+
+    @Test
+    public void t50_nextDayOnFirstPage() {
+        saveDay(RANGE_DAYS - 2, Day.STATE_ENABLED);
+        saveDay(1, Day.STATE_ENABLED);
+
+        int queryCountBefore = dataSource.queryCount;
+        Day day = timeline.getNextDay(from, to, null);
+        int queries = dataSource.queryCount - queryCountBefore;
+
+        assertThat(CalendarUtils.toEpochDay(day.getDate()), is(CalendarUtils.toEpochDay(from) + 1));
+        assertThat("Only the first page is loaded", queries, is(1));
+    }
+
+    @Test
+    public void t60_horizon() {
+        assertThat(globalManager.getSnapshot().getDays().size(), is(GlobalManager.HORIZON_DAYS));
+
+        saveDay(RANGE_DAYS - 2, Day.STATE_ENABLED);
+        assertNull("Beyond the default horizon", globalManager.getNextAlarm());
+
+        globalManager.saveHorizonDays(RANGE_DAYS);
+
+        assertThat(globalManager.getSnapshot().getDays().size(), is(RANGE_DAYS));
+        assertThat(CalendarUtils.toEpochDay(globalManager.getNextAlarm().getDate()), is(CalendarUtils.toEpochDay(from) + RANGE_DAYS - 2));
+    }
+
+    @Test
+    public void t70_snapshotIsLazy() {
+        saveDay(0, Day.STATE_DISABLED);
+        saveDay(RANGE_DAYS - 2, Day.STATE_ENABLED);
+        globalManager.saveHorizonDays(RANGE_DAYS);
+
+        int queryCountBefore = dataSource.queryCount;
+        AlarmSnapshot snapshot = ReflectionHelpers.callInstanceMethod(globalManager, "buildSnapshot");
+        int queries = dataSource.queryCount - queryCountBefore;
+
+        assertThat("The Days are not loaded page by page", queries <= 2, is(true));
+        assertThat(snapshot.getDayCount(), is(RANGE_DAYS));
+
+        List<Day> expected = dataSource.loadDays(from, to);
+        List<Day> actual = snapshot.getDays();
+        assertThat("Number of days", actual.size(), is(expected.size()));
+        for (int i = 0; i < expected.size(); i++) {
+            assertThat("Day " + i, CalendarUtils.toEpochDay(actual.get(i).getDate()), is(CalendarUtils.toEpochDay(expected.get(i).getDate())));
+            assertThat("Day " + i, actual.get(i).getState(), is(expected.get(i).getState()));
+            assertThat("Day " + i, actual.get(i).isEnabled(), is(expected.get(i).isEnabled()));
+        }
+
+        List<Day> page = snapshot.getDays(RANGE_DAYS - 3, RANGE_DAYS);
+        assertThat(page.size(), is(3));
+        assertThat(page.get(1).getState(), is(Day.STATE_ENABLED));
+    }
+
+}
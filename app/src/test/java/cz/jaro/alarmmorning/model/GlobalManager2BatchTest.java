@@ -0,0 +1,143 @@
+package cz.jaro.alarmmorning.model;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+
+import androidx.localbroadcastmanager.content.LocalBroadcastManager;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.AlarmMorningActivity;
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+import static org.robolectric.shadows.ShadowLooper.runUiThreadTasksIncludingDelayedTasks;
+
+/**
+ * Tests of the batch of changes. The subsequent actions are done only once per batch.
+ */
+public class GlobalManager2BatchTest extends FixedTimeTest {
+
+    private final List<String> actions = new ArrayList<>();
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            actions.add(intent.getAction());
+        }
+    };
+
+    @Before
+    public void before() {
+        super.before();
+
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(AlarmMorningActivity.ACTION_ALARM_SET);
+        intentFilter.addAction(AlarmMorningActivity.EVENT_MODIFY_DAY_ALARM);
+        LocalBroadcastManager.getInstance(RuntimeEnvironment.application).registerReceiver(receiver, intentFilter);
+    }
+
+    @After
+    public void after() {
+        LocalBroadcastManager.getInstance(RuntimeEnvironment.application).unregisterReceiver(receiver);
+
+        super.after();
+    }
+
+    private void setAlarms(int count) {
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1);
+        for (int i = 0; i < count; i++) {
+            Day day = new Day();
+            day.setDate(addDaysClone(date, i));
+            day.setState(Day.STATE_DISABLED);
+            day.setHourDay(DayTest.HOUR_DAY);
+            day.setMinuteDay(DayTest.MINUTE_DAY);
+            day.setDefaults(globalManager.loadDefault(day.getDate().get(Calendar.DAY_OF_WEEK)));
+
+            globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        }
+    }
+
+    private int count(String action) {
+        runUiThreadTasksIncludingDelayedTasks();
+
+        int count = 0;
+        for (String a : actions) {
+            if (a.equals(action)) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void t10_withoutBatch() {
+        setAlarms(7);
+
+        assertThat("Reschedules", count(AlarmMorningActivity.ACTION_ALARM_SET), is(7));
+        assertThat("Modifications", count(AlarmMorningActivity.EVENT_MODIFY_DAY_ALARM), is(7));
+    }
+
+    @Test
+    public void t20_batch() {
+        globalManager.batch(() -> setAlarms(7));
+
+        assertThat("Reschedules", count(AlarmMorningActivity.ACTION_ALARM_SET), is(1));
+        assertThat("Modifications", count(AlarmMorningActivity.EVENT_MODIFY_DAY_ALARM), is(7));
+
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1);
+        for (int i = 0; i < 7; i++) {
+            assertThat(globalManager.loadDay(addDaysClone(date, i)).getState(), is(Day.STATE_DISABLED));
+        }
+    }
+
+    @Test
+    public void t30_nestedBatch() {
+        globalManager.batch(() -> {
+            setAlarms(2);
+            globalManager.batch(() -> setAlarms(3));
+        });
+
+        assertThat("Reschedules", count(AlarmMorningActivity.ACTION_ALARM_SET), is(1));
+    }
+
+    @Test
+    public void t40_rollback() {
+        Defaults defaults = globalManager.loadDefault(Calendar.TUESDAY);
+        defaults.setState(Defaults.STATE_ENABLED);
+
+        try {
+            globalManager.batch(() -> {
+                setAlarms(3);
+                globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+                throw new IllegalStateException("Test");
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1);
+        for (int i = 0; i < 3; i++) {
+            assertThat(globalManager.loadDay(addDaysClone(date, i)).getState(), is(Day.STATE_RULE));
+        }
+        assertThat(globalManager.loadDefault(Calendar.TUESDAY).getState(), is(Defaults.STATE_DISABLED));
+
+        // The rolled back modifications are not announced, but the system alarm is set from the database
+        assertThat("Reschedules", count(AlarmMorningActivity.ACTION_ALARM_SET), is(1));
+        assertThat("Modifications", count(AlarmMorningActivity.EVENT_MODIFY_DAY_ALARM), is(0));
+    }
+
+}
@@ -0,0 +1,98 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.app.CalendarWithDayAlarmTest;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the changes submitted to the alarm engine and of the published snapshot.
+ */
+public class GlobalManager3EngineTest extends FixedTimeTest {
+
+    @Test
+    public void t10_snapshot() {
+        AlarmSnapshot snapshot = globalManager.getSnapshot();
+
+        assertThat("Days", snapshot.getDays().size(), is(GlobalManager.HORIZON_DAYS));
+        assertThat("One-time alarms", snapshot.getOneTimeAlarms().size(), is(0));
+        assertTrue("Today", snapshot.isFrom(globalManager.clock().now()));
+
+        // The snapshot is reused until the alarms change
+        assertTrue(snapshot == globalManager.getSnapshot());
+    }
+
+    @Test
+    public void t20_snapshotIsImmutable() {
+        AlarmSnapshot snapshot = globalManager.getSnapshot();
+
+        List<Day> days = snapshot.getDays();
+        days.get(0).setState(Day.STATE_ENABLED);
+        days.get(0).getDefaults().setState(Defaults.STATE_ENABLED);
+        days.clear();
+
+        assertThat(snapshot.getDays().size(), is(GlobalManager.HORIZON_DAYS));
+        assertThat(snapshot.getDays().get(0).getState(), is(Day.STATE_RULE));
+        assertThat(snapshot.getDays().get(0).getDefaults().getState(), is(Defaults.STATE_DISABLED));
+    }
+
+    @Test
+    public void t30_submit() throws Exception {
+        AlarmSnapshot snapshotBefore = globalManager.getSnapshot();
+
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1, DayTest.HOUR_DAY, DayTest.MINUTE_DAY);
+        Future<?> future = globalManager.submit(() -> CalendarWithDayAlarmTest.setAlarm(date, globalManager));
+        future.get();
+
+        AlarmSnapshot snapshotAfter = globalManager.getSnapshot();
+        assertTrue("New snapshot", snapshotBefore != snapshotAfter);
+        assertThat(snapshotBefore.getDays().get(1).getState(), is(Day.STATE_RULE));
+        assertThat(snapshotAfter.getDays().get(1).getState(), is(Day.STATE_ENABLED));
+    }
+
+    @Test
+    public void t40_submitWithCallback() {
+        OneTimeAlarm oneTimeAlarm = new OneTimeAlarm();
+        oneTimeAlarm.setDate(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1));
+        oneTimeAlarm.setHour(DayTest.HOUR_DAY);
+        oneTimeAlarm.setMinute(DayTest.MINUTE_DAY);
+
+        boolean[] called = new boolean[1];
+        globalManager.submit(() -> globalManager.createOneTimeAlarm(oneTimeAlarm, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar)),
+                () -> {
+                    called[0] = true;
+                    assertThat(globalManager.getSnapshot().getOneTimeAlarms().size(), is(1));
+                });
+        finishThreads();
+
+        assertTrue("Callback called", called[0]);
+    }
+
+    @Test
+    public void t50_snapshotIsPublishedBeforeAnnouncement() {
+        globalManager.getSnapshot();
+
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1, DayTest.HOUR_DAY, DayTest.MINUTE_DAY);
+        CalendarWithDayAlarmTest.setAlarm(date, globalManager);
+
+        // The snapshot was published by the changing thread, the UI doesn't build it
+        AlarmSnapshot published = ReflectionHelpers.getField(globalManager, "snapshot");
+        assertNotNull(published);
+        assertThat(published.getDays().get(1).getState(), is(Day.STATE_ENABLED));
+        assertTrue("Published snapshot is used", published == globalManager.getSnapshot());
+    }
+
+}
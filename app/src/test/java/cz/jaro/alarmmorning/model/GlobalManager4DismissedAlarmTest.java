@@ -0,0 +1,199 @@
+package cz.jaro.alarmmorning.model;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.JSONSharedPreferences;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the set of dismissed alarms stored in the database.
+ */
+public class GlobalManager4DismissedAlarmTest extends FixedTimeTest {
+
+    private AlarmDataSource dataSource;
+    private SQLiteDatabase database;
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+        database = ReflectionHelpers.getField(dataSource, "database");
+    }
+
+    private Day enabledDay(int daysFromToday) {
+        Day day = globalManager.loadDay(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + daysFromToday));
+        day.setState(Day.STATE_ENABLED);
+        day.setHourDay(DayTest.HOUR_DAY);
+        day.setMinuteDay(DayTest.MINUTE_DAY);
+        return day;
+    }
+
+    private String queryPlan(String sql, String[] selectionArgs) {
+        Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, selectionArgs);
+
+        StringBuilder plan = new StringBuilder();
+        int detailIndex = cursor.getColumnIndexOrThrow("detail");
+        for (cursor.moveToFirst(); !cursor.isAfterLast(); cursor.moveToNext()) {
+            plan.append(cursor.getString(detailIndex)).append('\n');
+        }
+        cursor.close();
+
+        return plan.toString();
+    }
+
+    @Test
+    public void t10_addDismissedAlarm() {
+        Day day1 = enabledDay(1);
+        Day day2 = enabledDay(2);
+
+        assertFalse(globalManager.isDismissedAlarm(day1));
+        assertNull(globalManager.getNextDismissedAlarm(globalManager.clock().now()));
+
+        globalManager.addDismissedAlarm(day2);
+        globalManager.addDismissedAlarm(day1);
+        globalManager.addDismissedAlarm(day1);
+
+        assertTrue(globalManager.isDismissedAlarm(day1));
+        assertTrue(globalManager.isDismissedAlarm(day2));
+        assertFalse(globalManager.isDismissedAlarm(enabledDay(3)));
+
+        assertThat("Each alarm is stored once", globalManager.getDismissedAlarms().size(), is(2));
+
+        AppAlarm nextDismissedAlarm = globalManager.getNextDismissedAlarm(globalManager.clock().now());
+        assertThat(nextDismissedAlarm.getDateTime().getTimeInMillis(), is(day1.getDateTime().getTimeInMillis()));
+
+        nextDismissedAlarm = globalManager.getNextDismissedAlarm(day1.getDateTime());
+        assertThat("Only the alarms after the time", nextDismissedAlarm.getDateTime().getTimeInMillis(), is(day2.getDateTime().getTimeInMillis()));
+    }
+
+    @Test
+    public void t20_pruneOldDismissedAlarms() {
+        globalManager.addDismissedAlarm(enabledDay(-2));
+        globalManager.addDismissedAlarm(enabledDay(-1));
+        assertThat(dataSource.loadDismissedAlarms(null).size(), is(1));
+
+        globalManager.addDismissedAlarm(enabledDay(0));
+
+        List<DismissedAlarm> dismissedAlarms = dataSource.loadDismissedAlarms(null);
+        assertThat("The alarms for yesterday and before are pruned", dismissedAlarms.size(), is(1));
+        assertThat(dismissedAlarms.get(0).getAlarmId(), is(enabledDay(0).getPersistenceId()));
+    }
+
+    @Test
+    public void t30_updateAlarmTime() {
+        Day day = enabledDay(1);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        globalManager.addDismissedAlarm(day);
+
+        day.setHourDay(DayTest.HOUR_DAY + 1);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+
+        List<DismissedAlarm> dismissedAlarms = dataSource.loadDismissedAlarms(null);
+        assertThat(dismissedAlarms.size(), is(1));
+        assertThat(dismissedAlarms.get(0).getAlarmTime(), is(day.getDateTime().getTimeInMillis()));
+    }
+
+    @Test
+    public void t31_updateAlarmTimeOnDefaultsChange() {
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + 1);
+        int dayOfWeek = date.get(Calendar.DAY_OF_WEEK);
+
+        Defaults defaults = globalManager.loadDefault(dayOfWeek);
+        defaults.setState(Defaults.STATE_ENABLED);
+        defaults.setHour(DayTest.HOUR_DEFAULT);
+        defaults.setMinute(DayTest.MINUTE_DEFAULT);
+        globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+        globalManager.addDismissedAlarm(globalManager.loadDay(date));
+
+        defaults.setHour(DayTest.HOUR_DEFAULT + 1);
+        globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+
+        List<DismissedAlarm> dismissedAlarms = dataSource.loadDismissedAlarms(null);
+        assertThat(dismissedAlarms.size(), is(1));
+        assertThat(dismissedAlarms.get(0).getAlarmTime(), is(globalManager.loadDay(date).getDateTime().getTimeInMillis()));
+    }
+
+    @Test
+    public void t32_updateAlarmTimeOnTimeZoneChange() {
+        Day day = enabledDay(1);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        globalManager.addDismissedAlarm(day);
+        long alarmTimeBefore = dataSource.loadDismissedAlarms(null).get(0).getAlarmTime();
+
+        TimeZone timeZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone(timeZone.getRawOffset() == 0 ? "GMT+05:00" : "GMT"));
+
+            globalManager.onTimeOrTimeZoneChange();
+
+            long alarmTimeAfter = dataSource.loadDismissedAlarms(null).get(0).getAlarmTime();
+            assertNotEquals(alarmTimeBefore, alarmTimeAfter);
+            assertThat(alarmTimeAfter, is(globalManager.loadDay(day.getDate()).getDateTime().getTimeInMillis()));
+        } finally {
+            TimeZone.setDefault(timeZone);
+        }
+    }
+
+    @Test
+    public void t40_migrateFromPreferences() throws Exception {
+        Day day = enabledDay(1);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+
+        JSONArray jsonArray = new JSONArray();
+        JSONObject obj = new JSONObject();
+        obj.put("Type", Day.class.getSimpleName());
+        obj.put("Id", day.getPersistenceId());
+        jsonArray.put(obj);
+        JSONSharedPreferences.saveJSONArray("persist_dismissed_2", jsonArray);
+
+        globalManager.migrateDismissedAlarms();
+
+        assertTrue(globalManager.isDismissedAlarm(day));
+        assertThat("The preference is removed", JSONSharedPreferences.loadJSONArray("persist_dismissed_2").length(), is(0));
+
+        // The second migration doesn't change anything
+        globalManager.migrateDismissedAlarms();
+        assertThat(dataSource.loadDismissedAlarms(null).size(), is(1));
+    }
+
+    @Test
+    public void t50_queryPlanUsesIndex() {
+        String sql = "SELECT 1 FROM " + AlarmDbHelper.TABLE_DISMISSEDALARM +
+                " WHERE " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TYPE + " = ? AND " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_ID + " = ? LIMIT 1";
+        String plan = queryPlan(sql, new String[]{Day.class.getSimpleName(), "2016-02-02"});
+        assertTrue("Membership uses the index: " + plan, plan.contains(AlarmDbHelper.INDEX_DISMISSEDALARM_ALARM));
+
+        Calendar now = globalManager.clock().now();
+        sql = "SELECT * FROM " + AlarmDbHelper.TABLE_DISMISSEDALARM +
+                " WHERE ? < " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME +
+                " ORDER BY " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME + ", " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ID;
+        plan = queryPlan(sql, new String[]{String.valueOf(now.getTimeInMillis())});
+        assertTrue("Nearest dismissed alarm uses the index: " + plan, plan.contains(AlarmDbHelper.INDEX_DISMISSEDALARM_ALARM_TIME));
+
+        sql = "DELETE FROM " + AlarmDbHelper.TABLE_DISMISSEDALARM + " WHERE " + AlarmDbHelper.COLUMN_DISMISSEDALARM_ALARM_TIME + " < ?";
+        plan = queryPlan(sql, new String[]{String.valueOf(now.getTimeInMillis())});
+        assertTrue("Pruning uses the index: " + plan, plan.contains(AlarmDbHelper.INDEX_DISMISSEDALARM_ALARM_TIME));
+    }
+
+}
@@ -0,0 +1,112 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+
+import cz.jaro.alarmmorning.AlarmStateContext;
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.SystemAlarm;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests that the states of the alarms are decided with the data loaded once per computation (and not once per alarm).
+ */
+public class GlobalManager5StateContextTest extends FixedTimeTest {
+
+    private AlarmDataSource dataSource;
+
+    @Before
+    public void before() {
+        super.before();
+
+        dataSource = ReflectionHelpers.getField(globalManager, "dataSource");
+
+        // Set alarm on every day
+        for (int dayOfWeek : AlarmDataSource.allDaysOfWeek) {
+            Defaults defaults = globalManager.loadDefault(dayOfWeek);
+            defaults.setState(Defaults.STATE_ENABLED);
+            defaults.setHour(DayTest.HOUR_DAY);
+            defaults.setMinute(DayTest.MINUTE_DAY);
+            globalManager.modifyDefault(defaults, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Defaults));
+        }
+    }
+
+    private void dismissDays(int count) {
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY);
+        List<Day> days = globalManager.loadDays(date, addDaysClone(date, count));
+        for (Day day : days) {
+            globalManager.addDismissedAlarm(day);
+        }
+    }
+
+    private int queriesOfNextAlarm() {
+        int queryCountBefore = dataSource.queryCount;
+        globalManager.getNextAlarm();
+        return dataSource.queryCount - queryCountBefore;
+    }
+
+    private int queriesOfCalcNextAction() {
+        SystemAlarm systemAlarm = SystemAlarm.getInstance(RuntimeEnvironment.application);
+
+        int queryCountBefore = dataSource.queryCount;
+        ReflectionHelpers.callInstanceMethod(systemAlarm, "calcNextAction");
+        return dataSource.queryCount - queryCountBefore;
+    }
+
+    @Test
+    public void t10_sameState() {
+        dismissDays(3);
+
+        Calendar now = globalManager.clock().now();
+        AlarmStateContext context = globalManager.newStateContext(now);
+
+        Calendar date = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY);
+        for (Day day : globalManager.loadDays(date, addDaysClone(date, 5))) {
+            assertThat(day.toString(), globalManager.getState(day, context), is(globalManager.getState(day)));
+        }
+
+        assertThat(globalManager.getState(globalManager.loadDay(date), context), is(GlobalManager.STATE_DISMISSED_BEFORE_RINGING));
+        assertThat(globalManager.getState(globalManager.loadDay(addDaysClone(date, 3)), context), is(GlobalManager.STATE_FUTURE));
+    }
+
+    @Test
+    public void t20_loadCountOfNextAlarm() {
+        dismissDays(3);
+        int queries3 = queriesOfNextAlarm();
+        assertThat(globalManager.getNextAlarm().getDate().get(Calendar.DAY_OF_MONTH), is(DayTest.DAY + 3));
+
+        dismissDays(10);
+        int queries10 = queriesOfNextAlarm();
+        assertThat(globalManager.getNextAlarm().getDate().get(Calendar.DAY_OF_MONTH), is(DayTest.DAY + 10));
+
+        assertThat("The number of loads doesn't depend on the number of checked alarms", queries10, is(queries3));
+        // Ringing alarm, dismissed alarms, Days, one-time alarms
+        assertTrue("Queries " + queries3, queries3 <= 4);
+    }
+
+    @Test
+    public void t30_loadCountOfCalcNextAction() {
+        dismissDays(3);
+        int queries3 = queriesOfCalcNextAction();
+
+        dismissDays(10);
+        int queries10 = queriesOfCalcNextAction();
+
+        assertThat("The number of loads doesn't depend on the number of checked alarms", queries10, is(queries3));
+        // Ringing alarm, dismissed alarms, Days, one-time alarms, the nearest dismissed alarm (record and the alarm)
+        assertTrue("Queries " + queries3, queries3 <= 6);
+    }
+
+}
@@ -0,0 +1,140 @@
+package cz.jaro.alarmmorning.model;
+
+import android.app.AlarmManager;
+import android.content.Context;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowAlarmManager;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.BootReceiverTest;
+import cz.jaro.alarmmorning.FixedTimeTest;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests that the next action is recomputed (and the system alarm is registered) only after the changes that may affect it.
+ */
+public class GlobalManager6IncrementalNextActionTest extends FixedTimeTest {
+
+    private ShadowAlarmManager shadowAlarmManager;
+
+    private int performed;
+    private int skipped;
+
+    @Before
+    public void before() {
+        super.before();
+
+        AlarmManager alarmManager = (AlarmManager) RuntimeEnvironment.application.getSystemService(Context.ALARM_SERVICE);
+        shadowAlarmManager = Shadows.shadowOf(alarmManager);
+
+        // The next alarm is in 2 days
+        createOneTimeAlarm(2);
+        BootReceiverTest.consumeSystemAlarms(shadowAlarmManager);
+
+        performed = globalManager.getRecomputationsPerformed();
+        skipped = globalManager.getRecomputationsSkipped();
+    }
+
+    private Calendar alarmTime(int daysFromToday) {
+        return new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + daysFromToday, DayTest.HOUR_DAY, DayTest.MINUTE_DAY);
+    }
+
+    private void setAlarmTime(OneTimeAlarm oneTimeAlarm, int daysFromToday) {
+        oneTimeAlarm.setDate(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + daysFromToday));
+        oneTimeAlarm.setHour(DayTest.HOUR_DAY);
+        oneTimeAlarm.setMinute(DayTest.MINUTE_DAY);
+    }
+
+    private OneTimeAlarm createOneTimeAlarm(int daysFromToday) {
+        OneTimeAlarm oneTimeAlarm = new OneTimeAlarm();
+        setAlarmTime(oneTimeAlarm, daysFromToday);
+        globalManager.createOneTimeAlarm(oneTimeAlarm, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        return oneTimeAlarm;
+    }
+
+    private void modifyOneTimeAlarm(OneTimeAlarm oneTimeAlarm, int daysFromToday) {
+        setAlarmTime(oneTimeAlarm, daysFromToday);
+        globalManager.modifyOneTimeAlarmDateTime(oneTimeAlarm, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+    }
+
+    private void assertRecomputations(String message, int performedDelta, int skippedDelta) {
+        assertThat(message + " - performed", globalManager.getRecomputationsPerformed() - performed, is(performedDelta));
+        assertThat(message + " - skipped", globalManager.getRecomputationsSkipped() - skipped, is(skippedDelta));
+
+        performed = globalManager.getRecomputationsPerformed();
+        skipped = globalManager.getRecomputationsSkipped();
+    }
+
+    private void assertRegisteredNextAlarm(int daysFromToday) {
+        Object nextAction = ReflectionHelpers.callInstanceMethod(globalManager, "getNextAction");
+        AppAlarm appAlarm = ReflectionHelpers.getField(nextAction, "appAlarm");
+        assertThat(appAlarm.getDateTime().getTimeInMillis(), is(alarmTime(daysFromToday).getTimeInMillis()));
+
+        assertThat(globalManager.getNextAlarm().getDateTime().getTimeInMillis(), is(alarmTime(daysFromToday).getTimeInMillis()));
+    }
+
+    @Test
+    public void t10_laterAlarmIsSkipped() {
+        OneTimeAlarm oneTimeAlarm = createOneTimeAlarm(5);
+        assertRecomputations("Create", 0, 1);
+
+        modifyOneTimeAlarm(oneTimeAlarm, 6);
+        assertRecomputations("Modify", 0, 1);
+
+        globalManager.deleteOneTimeAlarm(oneTimeAlarm, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        assertRecomputations("Delete", 0, 1);
+
+        Day day = globalManager.loadDay(addDaysClone(alarmTime(0), 4));
+        day.setState(Day.STATE_ENABLED);
+        day.setHourDay(DayTest.HOUR_DAY);
+        day.setMinuteDay(DayTest.MINUTE_DAY);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        assertRecomputations("Day", 0, 1);
+
+        assertThat("The system alarm is not touched", shadowAlarmManager.getScheduledAlarms().size(), is(0));
+        assertRegisteredNextAlarm(2);
+    }
+
+    @Test
+    public void t20_earlierAlarmIsRecomputed() {
+        OneTimeAlarm oneTimeAlarm = createOneTimeAlarm(1);
+        assertRecomputations("Create", 1, 0);
+        assertThat("The system alarm is registered", shadowAlarmManager.getScheduledAlarms().size(), is(1));
+        assertRegisteredNextAlarm(1);
+
+        BootReceiverTest.consumeSystemAlarms(shadowAlarmManager);
+
+        modifyOneTimeAlarm(oneTimeAlarm, 3);
+        assertRecomputations("Modify to later", 1, 0);
+        assertRegisteredNextAlarm(2);
+
+        BootReceiverTest.consumeSystemAlarms(shadowAlarmManager);
+
+        modifyOneTimeAlarm(oneTimeAlarm, 4);
+        assertRecomputations("Modify to even later", 0, 1);
+        assertThat("The system alarm is not touched", shadowAlarmManager.getScheduledAlarms().size(), is(0));
+        assertRegisteredNextAlarm(2);
+    }
+
+    @Test
+    public void t30_unchangedOutcomeDoesNotTouchSystemAlarm() {
+        // The alarm at the same time is not after the next alarm
+        createOneTimeAlarm(2);
+        assertRecomputations("Create", 1, 0);
+
+        assertThat("The system alarm is not touched", shadowAlarmManager.getScheduledAlarms().size(), is(0));
+        assertRegisteredNextAlarm(2);
+    }
+
+}
@@ -0,0 +1,71 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import cz.jaro.alarmmorning.Analytics;
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.GlobalManager;
+import cz.jaro.alarmmorning.SettingsActivity;
+import cz.jaro.alarmmorning.SharedPreferencesHelper;
+import cz.jaro.alarmmorning.clock.FixedClock;
+
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests that the data needed for ringing are prepared in the near future period.
+ */
+public class GlobalManager7WarmUpTest extends FixedTimeTest {
+
+    private Day day;
+    private Day otherDay;
+
+    @Before
+    public void before() {
+        super.before();
+
+        day = setDayAlarm(1);
+        otherDay = setDayAlarm(2);
+    }
+
+    private Day setDayAlarm(int daysFromToday) {
+        Day day = globalManager.loadDay(new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY + daysFromToday));
+        day.setState(Day.STATE_ENABLED);
+        day.setHourDay(DayTest.HOUR_DAY);
+        day.setMinuteDay(DayTest.MINUTE_DAY);
+        globalManager.modifyDayAlarm(day, new Analytics(Analytics.Channel.Test, Analytics.ChannelName.Calendar));
+        return day;
+    }
+
+    private void nearFuture() {
+        Calendar nearFutureTime = GlobalManager.getNearFutureTime(day.getDateTime());
+        shadowGlobalManager.setClock(new FixedClock(nearFutureTime));
+
+        globalManager.onNearFuture(day);
+    }
+
+    @Test
+    public void t10_warmUpInNearFuture() {
+        assertThat("Before near future", globalManager.isWarmedUp(day), is(false));
+
+        nearFuture();
+
+        assertThat(globalManager.isWarmedUp(day), is(true));
+        assertThat(globalManager.isWarmedUp(globalManager.loadDay(day.getDate())), is(true));
+        assertThat("Other alarm", globalManager.isWarmedUp(otherDay), is(false));
+    }
+
+    @Test
+    public void t20_disabled() {
+        SharedPreferencesHelper.save(SettingsActivity.PREF_RING_WARM_UP, false);
+
+        nearFuture();
+
+        assertThat(globalManager.isWarmedUp(day), is(false));
+    }
+
+}
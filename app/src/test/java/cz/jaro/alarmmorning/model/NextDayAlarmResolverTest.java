@@ -0,0 +1,174 @@
+package cz.jaro.alarmmorning.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+
+import cz.jaro.alarmmorning.FixedTimeTest;
+import cz.jaro.alarmmorning.calendar.CalendarUtils;
+
+import static cz.jaro.alarmmorning.calendar.CalendarUtils.addDaysClone;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests that the {@link NextDayAlarmResolver} returns the same Day as checking all the dates one by one.
+ */
+public class NextDayAlarmResolverTest extends FixedTimeTest {
+
+    private static final int RANGE_DAYS = 400;
+
+    private final Random random = new Random(1);
+
+    private final Calendar from = new GregorianCalendar(DayTest.YEAR, DayTest.MONTH, DayTest.DAY);
+    private final Calendar to = addDaysClone(from, RANGE_DAYS);
+
+    private Defaults[] randomDefaults(double enabledProbability) {
+        Defaults[] defaultsArray = new Defaults[Calendar.SATURDAY + 1];
+        for (int dayOfWeek : AlarmDataSource.allDaysOfWeek) {
+            Defaults defaults = new Defaults();
+            defaults.setDayOfWeek(dayOfWeek);
+            defaults.setState(random.nextDouble() < enabledProbability ? Defaults.STATE_ENABLED : Defaults.STATE_DISABLED);
+            defaults.setHour(DayTest.HOUR_DEFAULT);
+            defaults.setMinute(DayTest.MINUTE_DEFAULT);
+            defaultsArray[dayOfWeek] = defaults;
+        }
+        return defaultsArray;
+    }
+
+    private List<Day> randomStoredDays(Defaults[] defaultsArray, double storedProbability) {
+        List<Day> storedDays = new ArrayList<>();
+        for (int i = 0; i < RANGE_DAYS; i++) {
+            if (random.nextDouble() < storedProbability) {
+                Calendar date = addDaysClone(from, i);
+
+                Day day = new Day();
+                day.setDate(date);
+                day.setState(new int[]{Day.STATE_ENABLED, Day.STATE_DISABLED, Day.STATE_RULE}[random.nextInt(3)]);
+                day.setHourDay(DayTest.HOUR_DAY);
+                day.setMinuteDay(DayTest.MINUTE_DAY);
+                day.setDefaults(defaultsArray[date.get(Calendar.DAY_OF_WEEK)]);
+                storedDays.add(day);
+            }
+        }
+        return storedDays;
+    }
+
+    /**
+     * The original algorithm: check all the dates one by one.
+     */
+    private static Day scan(Defaults[] defaultsArray, List<Day> storedDays, Calendar from, Calendar to, AppAlarmFilter filter) {
+        int storedIndex = 0;
+        for (Calendar date = (Calendar) from.clone(); date.before(to); date = addDaysClone(date, 1)) {
+            Day day;
+            if (storedIndex < storedDays.size() && CalendarUtils.onTheSameDate(storedDays.get(storedIndex).getDate(), date)) {
+                day = storedDays.get(storedIndex);
+                storedIndex++;
+            } else {
+                day = new Day();
+                day.setDate(date);
+                day.setState(Day.STATE_RULE);
+                day.setHourDay(Day.VALUE_UNSET);
+                day.setMinuteDay(Day.VALUE_UNSET);
+                day.setDefaults(defaultsArray[date.get(Calendar.DAY_OF_WEEK)]);
+            }
+
+            if (day.isEnabled() && (filter == null || filter.match(day))) {
+                return day;
+            }
+        }
+        return null;
+    }
+
+    private void assertSameDay(Day expected, Day actual, String message) {
+        if (expected == null) {
+            assertNull(message, actual);
+        } else {
+            assertThat(message, actual.getDateTime().getTimeInMillis(), is(expected.getDateTime().getTimeInMillis()));
+            assertThat(message, actual.getState(), is(expected.getState()));
+        }
+    }
+
+    private void compare(int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            Defaults[] defaultsArray = randomDefaults(random.nextDouble());
+            List<Day> storedDays = randomStoredDays(defaultsArray, random.nextDouble() / 2);
+            int skip = random.nextInt(5);
+
+            // Reject the first few alarms (as the dismissed alarms are rejected)
+            AppAlarmFilter filter = new AppAlarmFilter() {
+                int count = 0;
+
+                @Override
+                public boolean match(AppAlarm appAlarm) {
+                    return skip < ++count;
+                }
+            };
+            AppAlarmFilter filter2 = new AppAlarmFilter() {
+                int count = 0;
+
+                @Override
+                public boolean match(AppAlarm appAlarm) {
+                    return skip < ++count;
+                }
+            };
+
+            Day expected = scan(defaultsArray, storedDays, from, to, filter);
+            Day actual = new NextDayAlarmResolver(defaultsArray, storedDays).resolve(from, to, filter2);
+
+            assertSameDay(expected, actual, "Iteration " + i);
+        }
+    }
+
+    @Test
+    public void t10_sameAsScan() {
+        compare(500);
+    }
+
+    @Test
+    public void t20_sameAsScanWithHolidays() {
+        globalManager.saveHoliday("CZ");
+
+        compare(500);
+    }
+
+    @Test
+    public void t30_allDisabled() {
+        Defaults[] defaultsArray = randomDefaults(0);
+        List<Day> storedDays = new ArrayList<>();
+
+        assertNull(new NextDayAlarmResolver(defaultsArray, storedDays).resolve(from, to, null));
+    }
+
+    @Test
+    public void t40_storedDayOverridesDefaults() {
+        Defaults[] defaultsArray = randomDefaults(1);
+        List<Day> storedDays = new ArrayList<>();
+
+        Day disabled = new Day();
+        disabled.setDate(from);
+        disabled.setState(Day.STATE_DISABLED);
+        disabled.setHourDay(DayTest.HOUR_DAY);
+        disabled.setMinuteDay(DayTest.MINUTE_DAY);
+        disabled.setDefaults(defaultsArray[from.get(Calendar.DAY_OF_WEEK)]);
+        storedDays.add(disabled);
+
+        Day day = new NextDayAlarmResolver(defaultsArray, storedDays).resolve(from, to, null);
+
+        assertThat(CalendarUtils.toEpochDay(day.getDate()), is(CalendarUtils.toEpochDay(from) + 1));
+    }
+
+    @Test
+    public void t50_dayOfWeekOfEpochDay() {
+        for (int i = -1000; i < 1000; i++) {
+            Calendar date = CalendarUtils.fromEpochDay(i);
+            assertThat("Epoch day " + i, CalendarUtils.dayOfWeekOfEpochDay(i), is(date.get(Calendar.DAY_OF_WEEK)));
+        }
+    }
+
+}
@@ -4,6 +4,8 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 
+import java.util.concurrent.Executor;
+
 import cz.jaro.alarmmorning.GlobalManager;
 import cz.jaro.alarmmorning.clock.Clock;
 import cz.jaro.alarmmorning.clock.SystemClock;
@@ -24,5 +26,21 @@ public class ShadowGlobalManager {
     public void setClock(Clock clock) {
         this.clock = clock;
     }
+
+    /**
+     * The changes are performed immediately on the calling thread, so that the tests are deterministic.
+     */
+    @Implementation
+    public Executor engine() {
+        return Runnable::run;
+    }
+
+    /**
+     * The tasks are performed immediately on the calling thread, so that the tests are deterministic.
+     */
+    @Implementation
+    public Executor background() {
+        return Runnable::run;
+    }
 }
 